@@ -0,0 +1,108 @@
+#!/usr/bin/env bash
+#
+# Время до первого ответа и RSS при старте user-service в трёх режимах:
+#   jar        - обычный запуск собранного jar
+#   aot        - бины из process-aot (-Dspring.aot.enabled=true), профиль fast-startup
+#   aot-cache  - то же с AOT-кэшем JVM из тренировочного запуска
+#   native     - native-образ GraalVM (target/user-service)
+#
+# Перед запуском: ./mvnw -Pfast-startup -DskipTests package, для native: ./mvnw -Pnative -DskipTests native:compile
+# Окружение (БД, Kafka) передаётся через APP_OPTS, например:
+#   APP_OPTS="-Dspring.datasource.url=jdbc:postgresql://localhost:5432/users -Dspring.datasource.username=app
+#             -Dspring.kafka.producer.bootstrap-servers=localhost:9092" scripts/startup-benchmark.sh
+#
+# Результат: таблица в stdout и target/startup-benchmark.csv (медиана по RUNS запускам).
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+RUNS=${RUNS:-5}
+PORT=${PORT:-18080}
+TIMEOUT_SECONDS=${TIMEOUT_SECONDS:-120}
+FIRST_REQUEST_PATH=${FIRST_REQUEST_PATH:-/api/users/1}
+JAVA=${JAVA:-java}
+APP_OPTS=${APP_OPTS:-}
+MODES=${MODES:-"jar aot aot-cache native"}
+
+JAR=$(ls target/user-service-*.jar | grep -v original | head -1)
+EXTRACTED=target/fast-startup/$(basename "$JAR")
+AOT_CACHE=target/fast-startup/user-service.aot
+NATIVE=target/user-service
+RESULTS=target/startup-benchmark.csv
+
+# Без Config Server и Eureka: замеряется старт самого сервиса, а не ожидание соседей.
+# Настройки берутся из файла тренировочного запуска вместо application.properties с обязательным
+# импортом Config Server, APP_OPTS их переопределяют
+TRAINING_CONFIG=file:src/aot-training/training.properties
+FAST_STARTUP_CONFIG=classpath:/application-fast-startup.properties,$TRAINING_CONFIG
+COMMON_OPTS="-Dserver.port=$PORT $APP_OPTS"
+
+command_for() {
+    case "$1" in
+        jar) echo "$JAVA -Dspring.config.location=$TRAINING_CONFIG $COMMON_OPTS -jar $JAR" ;;
+        aot) echo "$JAVA -Dspring.config.location=$FAST_STARTUP_CONFIG $COMMON_OPTS -Dspring.aot.enabled=true -Dspring.profiles.active=fast-startup -jar $EXTRACTED" ;;
+        aot-cache) echo "$JAVA -XX:AOTCache=$AOT_CACHE -Dspring.config.location=$FAST_STARTUP_CONFIG $COMMON_OPTS -Dspring.aot.enabled=true -Dspring.profiles.active=fast-startup -jar $EXTRACTED" ;;
+        native) echo "$NATIVE -Dspring.config.location=$FAST_STARTUP_CONFIG $COMMON_OPTS -Dspring.profiles.active=fast-startup" ;;
+        *) echo "Неизвестный режим: $1" >&2; exit 1 ;;
+    esac
+}
+
+now_millis() {
+    date +%s%3N
+}
+
+# Один запуск: печатает "<мс до первого ответа> <RSS в КБ>"
+measure() {
+    local command=$1
+    local log
+    log=$(mktemp)
+    local start
+    start=$(now_millis)
+    $command >"$log" 2>&1 &
+    local pid=$!
+    local deadline=$((start + TIMEOUT_SECONDS * 1000))
+    local code=000
+    # любой ответ приложения, кроме 5xx, считается первым обслуженным запросом
+    until [[ $code =~ ^[1-4] ]]; do
+        if ! kill -0 "$pid" 2>/dev/null || (( $(now_millis) > deadline )); then
+            echo "Приложение не ответило, лог: $log" >&2
+            tail -50 "$log" >&2
+            kill "$pid" 2>/dev/null || true
+            return 1
+        fi
+        sleep 0.02
+        code=$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:$PORT$FIRST_REQUEST_PATH" || true)
+    done
+    local elapsed=$(( $(now_millis) - start ))
+    local rss
+    rss=$(awk '/VmRSS/ {print $2}' "/proc/$pid/status")
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    rm -f "$log"
+    echo "$elapsed $rss"
+}
+
+median() {
+    sort -n | awk '{values[NR] = $1} END {print values[int((NR + 1) / 2)]}'
+}
+
+echo "mode,time_to_first_request_ms,rss_mb,runs" >"$RESULTS"
+printf '%-10s %22s %10s\n' "режим" "до первого ответа, мс" "RSS, МБ"
+for mode in $MODES; do
+    if [[ $mode == aot* && ! -f $EXTRACTED ]] || [[ $mode == aot-cache && ! -f $AOT_CACHE ]] \
+            || [[ $mode == native && ! -x $NATIVE ]]; then
+        echo "Пропущен режим $mode: нет собранного артефакта (-Pfast-startup или -Pnative)" >&2
+        continue
+    fi
+    times=()
+    rss=()
+    for ((run = 1; run <= RUNS; run++)); do
+        read -r elapsed kilobytes < <(measure "$(command_for "$mode")")
+        times+=("$elapsed")
+        rss+=("$kilobytes")
+    done
+    time_median=$(printf '%s\n' "${times[@]}" | median)
+    rss_median=$(( $(printf '%s\n' "${rss[@]}" | median) / 1024 ))
+    echo "$mode,$time_median,$rss_median,$RUNS" >>"$RESULTS"
+    printf '%-10s %22s %10s\n' "$mode" "$time_median" "$rss_median"
+done
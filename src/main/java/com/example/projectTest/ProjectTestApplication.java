@@ -1,13 +1,18 @@
 package com.example.projectTest;
 
+import com.example.projectTest.config.UserServiceRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableDiscoveryClient
 @RefreshScope
+@EnableScheduling
+@ImportRuntimeHints(UserServiceRuntimeHints.class)
 public class ProjectTestApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,76 @@
+package com.example.projectTest.actuator;
+
+import com.example.projectTest.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Статистика сессий Hibernate: число SQL-запросов, загрузок сущностей, flush и попаданий в кэш.
+ * Доступна по /actuator/hibernatestatistics, DELETE сбрасывает счётчики.
+ */
+@Component
+@Endpoint(id = "hibernatestatistics")
+@RequiredArgsConstructor
+public class HibernateStatisticsEndpoint {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    @ReadOperation
+    public Map<String, Object> statistics() {
+        Statistics statistics = getStatistics();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", statistics.isStatisticsEnabled());
+        result.put("startTime", statistics.getStartTime());
+        result.put("prepareStatementCount", statistics.getPrepareStatementCount());
+        result.put("closeStatementCount", statistics.getCloseStatementCount());
+        result.put("connectCount", statistics.getConnectCount());
+        result.put("sessionOpenCount", statistics.getSessionOpenCount());
+        result.put("transactionCount", statistics.getTransactionCount());
+        result.put("flushCount", statistics.getFlushCount());
+        result.put("entityLoadCount", statistics.getEntityLoadCount());
+        result.put("entityFetchCount", statistics.getEntityFetchCount());
+        result.put("entityInsertCount", statistics.getEntityInsertCount());
+        result.put("entityUpdateCount", statistics.getEntityUpdateCount());
+        result.put("entityDeleteCount", statistics.getEntityDeleteCount());
+        result.put("queryExecutionCount", statistics.getQueryExecutionCount());
+        result.put("queryExecutionMaxTime", statistics.getQueryExecutionMaxTime());
+        result.put("queryExecutionMaxTimeQueryString", statistics.getQueryExecutionMaxTimeQueryString());
+        result.put("secondLevelCacheHitCount", statistics.getSecondLevelCacheHitCount());
+        result.put("secondLevelCacheMissCount", statistics.getSecondLevelCacheMissCount());
+        result.put("queryCacheHitCount", statistics.getQueryCacheHitCount());
+        result.put("queryCacheMissCount", statistics.getQueryCacheMissCount());
+        result.put("optimisticFailureCount", statistics.getOptimisticFailureCount());
+        result.put("users", entityStatistics(statistics.getEntityStatistics(User.class.getName())));
+        return result;
+    }
+
+    @DeleteOperation
+    public void clear() {
+        getStatistics().clear();
+    }
+
+    private Map<String, Object> entityStatistics(EntityStatistics statistics) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("loadCount", statistics.getLoadCount());
+        result.put("fetchCount", statistics.getFetchCount());
+        result.put("insertCount", statistics.getInsertCount());
+        result.put("updateCount", statistics.getUpdateCount());
+        result.put("deleteCount", statistics.getDeleteCount());
+        result.put("optimisticFailureCount", statistics.getOptimisticFailureCount());
+        return result;
+    }
+
+    private Statistics getStatistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
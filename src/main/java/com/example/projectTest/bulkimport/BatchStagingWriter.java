@@ -0,0 +1,57 @@
+package com.example.projectTest.bulkimport;
+
+import com.example.projectTest.dto.CreateUserDto;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Запись в staging JDBC batch-ами для СУБД без COPY (H2 в тестах и локальном запуске).
+ */
+class BatchStagingWriter implements StagingWriter {
+
+    private static final String INSERT =
+            "insert into user_import_staging (job_id, line, email, name, age) values (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final UUID jobId;
+
+    private final int batchSize;
+
+    private final List<Object[]> rows;
+
+    BatchStagingWriter(JdbcTemplate jdbcTemplate, UUID jobId, int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jobId = jobId;
+        this.batchSize = batchSize;
+        this.rows = new ArrayList<>(batchSize);
+    }
+
+    @Override
+    public void add(long line, CreateUserDto row) {
+        rows.add(new Object[]{jobId, line, row.getEmail(), row.getName(), row.getAge()});
+        if (rows.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public void finish() {
+        flush();
+    }
+
+    @Override
+    public void close() {
+        rows.clear();
+    }
+
+    private void flush() {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT, rows);
+            rows.clear();
+        }
+    }
+}
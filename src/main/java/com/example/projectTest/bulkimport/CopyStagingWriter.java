@@ -0,0 +1,95 @@
+package com.example.projectTest.bulkimport;
+
+import com.example.projectTest.dto.CreateUserDto;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * Запись в staging протоколом COPY PostgreSQL: строки уходят в открытый COPY FROM STDIN
+ * кусками по {@link #FLUSH_BYTES}, без построчных INSERT и без накопления файла в памяти.
+ * Весь файл загружается одной командой COPY и фиксируется в {@link #finish()}.
+ */
+@Slf4j
+class CopyStagingWriter implements StagingWriter {
+
+    static final String COPY = "COPY user_import_staging (job_id, line, email, name, age) FROM STDIN WITH (FORMAT csv)";
+
+    private static final int FLUSH_BYTES = 256 * 1024;
+
+    private final DataSource dataSource;
+
+    private final Connection connection;
+
+    private final CopyIn copyIn;
+
+    private final String jobId;
+
+    private final StringBuilder buffer = new StringBuilder(FLUSH_BYTES + 1024);
+
+    private boolean finished;
+
+    CopyStagingWriter(DataSource dataSource, Connection connection, UUID jobId) throws SQLException {
+        this.dataSource = dataSource;
+        this.connection = connection;
+        this.copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY);
+        this.jobId = jobId.toString();
+    }
+
+    @Override
+    public void add(long line, CreateUserDto row) {
+        buffer.append(jobId).append(',').append(line).append(',');
+        CsvLineParser.appendQuoted(buffer, row.getEmail());
+        buffer.append(',');
+        CsvLineParser.appendQuoted(buffer, row.getName());
+        buffer.append(',').append(row.getAge()).append('\n');
+        if (buffer.length() >= FLUSH_BYTES) {
+            flush();
+        }
+    }
+
+    @Override
+    public void finish() {
+        flush();
+        try {
+            long rows = copyIn.endCopy();
+            finished = true;
+            log.debug("COPY в user_import_staging завершён, строк: {}", rows);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось завершить COPY в user_import_staging", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (!finished && copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        } catch (SQLException e) {
+            log.warn("Не удалось отменить COPY в user_import_staging: {}", e.getMessage());
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private void flush() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось записать строки в COPY user_import_staging", e);
+        }
+        buffer.setLength(0);
+    }
+}
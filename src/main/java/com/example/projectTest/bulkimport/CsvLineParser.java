@@ -0,0 +1,54 @@
+package com.example.projectTest.bulkimport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбор строки CSV по RFC 4180 без переводов строк внутри кавычек.
+ */
+final class CsvLineParser {
+
+    private CsvLineParser() {
+    }
+
+    /**
+     * Поля строки или null, если кавычки не закрыты. Поля без кавычек обрезаются по краям.
+     */
+    static List<String> parse(String line) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    inQuotes = false;
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(quoted ? field.toString() : field.toString().trim());
+                field.setLength(0);
+                quoted = false;
+            } else {
+                field.append(c);
+            }
+        }
+        if (inQuotes) {
+            return null;
+        }
+        fields.add(quoted ? field.toString() : field.toString().trim());
+        return fields;
+    }
+
+    static void appendQuoted(StringBuilder target, String value) {
+        target.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
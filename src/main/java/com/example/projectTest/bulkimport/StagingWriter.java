@@ -0,0 +1,18 @@
+package com.example.projectTest.bulkimport;
+
+import com.example.projectTest.dto.CreateUserDto;
+
+/**
+ * Потоковая запись проверенных строк импорта в user_import_staging.
+ * Строки, записанные до {@link #finish()}, при закрытии без него отбрасываются или остаются
+ * в staging до очистки задания.
+ */
+interface StagingWriter extends AutoCloseable {
+
+    void add(long line, CreateUserDto row);
+
+    void finish();
+
+    @Override
+    void close();
+}
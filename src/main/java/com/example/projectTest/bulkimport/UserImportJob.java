@@ -0,0 +1,64 @@
+package com.example.projectTest.bulkimport;
+
+import com.example.projectTest.dto.UserImportReport;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Состояние одного импорта. Счётчики меняет поток импорта, читают запросы прогресса.
+ */
+@Getter
+class UserImportJob {
+
+    enum Phase {
+        LOADING, MERGING, DONE, FAILED
+    }
+
+    private final UUID id = UUID.randomUUID();
+
+    private final Instant startedAt = Instant.now();
+
+    private final AtomicLong rowsRead = new AtomicLong();
+
+    private final AtomicLong rowsStaged = new AtomicLong();
+
+    private final AtomicLong rowsRejected = new AtomicLong();
+
+    private final AtomicLong rowsImported = new AtomicLong();
+
+    private final AtomicLong eventsPublished = new AtomicLong();
+
+    private volatile Phase phase = Phase.LOADING;
+
+    private volatile Instant finishedAt;
+
+    private volatile String error;
+
+    void startMerging() {
+        phase = Phase.MERGING;
+    }
+
+    void finish(String failure) {
+        error = failure;
+        finishedAt = Instant.now();
+        phase = failure == null ? Phase.DONE : Phase.FAILED;
+    }
+
+    UserImportReport report() {
+        return UserImportReport.builder()
+                .id(id)
+                .phase(phase.name())
+                .rowsRead(rowsRead.get())
+                .rowsStaged(rowsStaged.get())
+                .rowsRejected(rowsRejected.get())
+                .rowsImported(rowsImported.get())
+                .eventsPublished(eventsPublished.get())
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .error(error)
+                .build();
+    }
+}
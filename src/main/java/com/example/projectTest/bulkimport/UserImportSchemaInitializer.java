@@ -0,0 +1,50 @@
+package com.example.projectTest.bulkimport;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Служебные таблицы импорта CSV. Сущностей JPA у них нет: staging в PostgreSQL создаётся
+ * UNLOGGED - его строки живут только до конца импорта, и WAL на них не тратится.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class UserImportSchemaInitializer implements ApplicationRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            String unlogged = isPostgres() ? "UNLOGGED " : "";
+            jdbcTemplate.execute("CREATE " + unlogged + "TABLE IF NOT EXISTS user_import_staging (" +
+                    "job_id UUID NOT NULL, line BIGINT NOT NULL, email VARCHAR(255) NOT NULL, " +
+                    "name VARCHAR(255) NOT NULL, age INTEGER NOT NULL)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_user_import_staging_line " +
+                    "ON user_import_staging (job_id, line)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_user_import_staging_email " +
+                    "ON user_import_staging (job_id, email, line)");
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS user_import_rejects (" +
+                    "job_id UUID NOT NULL, line BIGINT NOT NULL, email VARCHAR(255), reason VARCHAR(1000) NOT NULL)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_user_import_rejects_line " +
+                    "ON user_import_rejects (job_id, line)");
+        } catch (DataAccessException e) {
+            log.warn("Не удалось создать таблицы импорта пользователей: {}", e.getMessage());
+        }
+    }
+
+    private boolean isPostgres() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equalsIgnoreCase(product);
+    }
+}
@@ -0,0 +1,355 @@
+package com.example.projectTest.bulkimport;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UserImportReport;
+import com.example.projectTest.entity.User;
+import com.example.projectTest.kafka.UserEvent;
+import com.example.projectTest.mapper.UserMapper;
+import com.example.projectTest.service.UserEventPublisher;
+import com.example.projectTest.statistics.UserStatistics;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Массовый импорт пользователей из CSV (email,name,age; строка заголовка необязательна).
+ * <p>
+ * Файл читается потоком: каждая строка проверяется ограничениями CreateUserDto и сразу уходит
+ * в user_import_staging - в PostgreSQL через COPY, в остальных СУБД JDBC batch-ами. Отклонённые
+ * строки с причиной пишутся в user_import_rejects. Затем staging вливается в users
+ * диапазонами строк по users.import.merge-chunk-lines: дубликаты email (уже существующие
+ * и повторы внутри файла, кроме первого вхождения) отбираются одним запросом на диапазон,
+ * остальные строки вставляются одним INSERT ... SELECT. На каждый диапазон - одна транзакция
+ * и одна пачка событий CREATED через UserEventPublisher.publishAll.
+ * <p>
+ * Пользователи создаются мимо UserService: групповой commit, bulkhead и построчная проверка
+ * уникальности для миллионов строк не нужны. Счётчики UserStatistics обновляются здесь же,
+ * после коммита диапазона. При шардировании импорт недоступен.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class UserImportService {
+
+    private static final int MAX_JOBS = 100;
+
+    private static final int MAX_VALUE_LENGTH = 255;
+
+    private static final int LOG_EVERY_ROWS = 1_000_000;
+
+    private static final List<String> DEFAULT_COLUMNS = List.of("email", "name", "age");
+
+    private static final String DUPLICATE_CONDITION = """
+            (exists (select 1 from users u where u.email = s.email)
+             or exists (select 1 from user_import_staging d
+                        where d.job_id = s.job_id and d.email = s.email and d.line < s.line))""";
+
+    private static final String REJECT_DUPLICATES = """
+            insert into user_import_rejects (job_id, line, email, reason)
+            select s.job_id, s.line, s.email, 'Пользователь с таким email уже существует'
+            from user_import_staging s
+            where s.job_id = ? and s.line between ? and ? and""" + DUPLICATE_CONDITION;
+
+    private static final String INSERT_USERS = """
+            insert into users (name, email, age, created_at, version)
+            select s.name, s.email, s.age, ?, 0
+            from user_import_staging s
+            where s.job_id = ? and s.line between ? and ? and not""" + DUPLICATE_CONDITION + """
+
+            order by s.line""";
+
+    private static final String SELECT_CREATED = """
+            select u.id, u.name, u.email, u.age, u.created_at, u.version
+            from user_import_staging s join users u on u.email = s.email
+            where s.job_id = ? and s.line between ? and ?
+              and not exists (select 1 from user_import_rejects r where r.job_id = s.job_id and r.line = s.line)
+            order by s.line""";
+
+    private static final String INSERT_REJECT =
+            "insert into user_import_rejects (job_id, line, email, reason) values (?, ?, ?, ?)";
+
+    private static final RowMapper<User> USER_ROW_MAPPER = (rs, rowNum) -> User.builder()
+            .id(rs.getLong(1))
+            .name(rs.getString(2))
+            .email(rs.getString(3))
+            .age(rs.getInt(4))
+            .createdAt(rs.getTimestamp(5).toInstant())
+            .version(rs.getLong(6))
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Validator validator;
+
+    private final UserMapper userMapper;
+
+    private final UserEventPublisher userEventPublisher;
+
+    private final UserStatistics userStatistics;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<UUID, UserImportJob> jobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, UserImportJob> eldest) {
+            return size() > MAX_JOBS;
+        }
+    };
+
+    @Value("${users.import.merge-chunk-lines:50000}")
+    private int mergeChunkLines;
+
+    @Value("${users.import.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${users.import.merge-attempts:3}")
+    private int mergeAttempts;
+
+    public UserImportService(JdbcTemplate jdbcTemplate,
+                             Validator validator,
+                             UserMapper userMapper,
+                             UserEventPublisher userEventPublisher,
+                             UserStatistics userStatistics,
+                             PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.validator = validator;
+        this.userMapper = userMapper;
+        this.userEventPublisher = userEventPublisher;
+        this.userStatistics = userStatistics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Импортирует CSV целиком и возвращает итог. Ход импорта виден через {@link #report(UUID)}.
+     */
+    public UserImportReport importCsv(InputStream csv) {
+        UserImportJob job = new UserImportJob();
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+        }
+        log.info("Импорт пользователей {} начат", job.getId());
+        try {
+            long lastLine = load(job, csv);
+            job.startMerging();
+            merge(job, lastLine);
+            job.finish(null);
+            log.info("Импорт пользователей {} завершён: прочитано {}, создано {}, отклонено {}",
+                    job.getId(), job.getRowsRead().get(), job.getRowsImported().get(), job.getRowsRejected().get());
+        } catch (IOException | RuntimeException e) {
+            job.finish(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            log.error("Импорт пользователей {} прерван: ", job.getId(), e);
+        } finally {
+            jdbcTemplate.update("delete from user_import_staging where job_id = ?", job.getId());
+        }
+        return job.report();
+    }
+
+    public Optional<UserImportReport> report(UUID id) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(id)).map(UserImportJob::report);
+        }
+    }
+
+    public List<UserImportReport> reports() {
+        synchronized (jobs) {
+            return jobs.values().stream().map(UserImportJob::report).toList();
+        }
+    }
+
+    /**
+     * Отклонённые строки задания по возрастанию номера строки, начиная после afterLine.
+     */
+    public List<Reject> rejects(UUID id, long afterLine, int limit) {
+        return jdbcTemplate.query("select line, email, reason from user_import_rejects " +
+                        "where job_id = ? and line > ? order by line limit ?",
+                (rs, rowNum) -> new Reject(rs.getLong(1), rs.getString(2), rs.getString(3)),
+                id, afterLine, limit);
+    }
+
+    private long load(UserImportJob job, InputStream csv) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8), 64 * 1024);
+        List<Object[]> rejects = new ArrayList<>();
+        long line = 0;
+        try (StagingWriter staging = openStagingWriter(job.getId())) {
+            List<String> columns = DEFAULT_COLUMNS;
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                List<String> fields = CsvLineParser.parse(text);
+                if (line == 1 && fields != null && isHeader(fields)) {
+                    columns = fields.stream().map(field -> field.toLowerCase(Locale.ROOT)).toList();
+                    continue;
+                }
+                job.getRowsRead().incrementAndGet();
+                ParsedRow parsed = parse(fields, columns);
+                if (parsed.reason() == null) {
+                    staging.add(line, parsed.row());
+                    job.getRowsStaged().incrementAndGet();
+                } else {
+                    rejects.add(new Object[]{job.getId(), line, truncate(parsed.email()), parsed.reason()});
+                    job.getRowsRejected().incrementAndGet();
+                    if (rejects.size() >= batchSize) {
+                        flushRejects(rejects);
+                    }
+                }
+                if (job.getRowsRead().get() % LOG_EVERY_ROWS == 0) {
+                    log.info("Импорт {}: прочитано строк {}", job.getId(), job.getRowsRead().get());
+                }
+            }
+            staging.finish();
+        }
+        flushRejects(rejects);
+        return line;
+    }
+
+    private StagingWriter openStagingWriter(UUID jobId) {
+        DataSource dataSource = jdbcTemplate.getDataSource();
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            if (connection.isWrapperFor(PGConnection.class)) {
+                return new CopyStagingWriter(dataSource, connection, jobId);
+            }
+        } catch (SQLException e) {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+            throw new IllegalStateException("Не удалось начать COPY в user_import_staging", e);
+        }
+        DataSourceUtils.releaseConnection(connection, dataSource);
+        return new BatchStagingWriter(jdbcTemplate, jobId, batchSize);
+    }
+
+    private void merge(UserImportJob job, long lastLine) {
+        for (long from = 1; from <= lastLine; from += mergeChunkLines) {
+            long to = Math.min(from + mergeChunkLines - 1, lastLine);
+            MergedChunk chunk = mergeChunk(job.getId(), from, to);
+            job.getRowsImported().addAndGet(chunk.created().size());
+            job.getRowsRejected().addAndGet(chunk.rejected());
+            if (!chunk.created().isEmpty()) {
+                List<UserEvent> events = chunk.created().stream()
+                        .map(user -> userMapper.toUserEvent(user, "CREATED", 0))
+                        .toList();
+                userEventPublisher.publishAll(events);
+                job.getEventsPublished().addAndGet(events.size());
+            }
+        }
+    }
+
+    private MergedChunk mergeChunk(UUID jobId, long from, long to) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    Timestamp createdAt = Timestamp.from(Instant.now().truncatedTo(ChronoUnit.MICROS));
+                    int rejected = jdbcTemplate.update(REJECT_DUPLICATES, jobId, from, to);
+                    jdbcTemplate.update(INSERT_USERS, createdAt, jobId, from, to);
+                    List<User> created = jdbcTemplate.query(SELECT_CREATED, USER_ROW_MAPPER, jobId, from, to);
+                    created.forEach(user -> userStatistics.recordCreated(user.getAge(), user.getCreatedAt()));
+                    return new MergedChunk(created, rejected);
+                });
+            } catch (DataIntegrityViolationException e) {
+                // email заняли между проверкой и вставкой (создание через API) - диапазон откатился целиком
+                if (attempt >= mergeAttempts) {
+                    throw e;
+                }
+                log.warn("Импорт {}: конкурентная вставка в строках {}..{}, повтор", jobId, from, to);
+            }
+        }
+    }
+
+    private ParsedRow parse(List<String> fields, List<String> columns) {
+        if (fields == null) {
+            return new ParsedRow(null, null, "Незакрытые кавычки");
+        }
+        if (fields.size() != columns.size()) {
+            return new ParsedRow(null, null, "Ожидается полей: " + columns.size() + ", получено: " + fields.size());
+        }
+        String email = field(fields, columns, "email");
+        String name = field(fields, columns, "name");
+        String age = field(fields, columns, "age");
+        if ((email != null && email.length() > MAX_VALUE_LENGTH) || (name != null && name.length() > MAX_VALUE_LENGTH)) {
+            return new ParsedRow(null, email, "Значение длиннее " + MAX_VALUE_LENGTH + " символов");
+        }
+        CreateUserDto row = new CreateUserDto(blankToNull(email), blankToNull(name), null);
+        if (age != null && !age.isEmpty()) {
+            try {
+                row.setAge(Integer.parseInt(age));
+            } catch (NumberFormatException e) {
+                return new ParsedRow(null, email, "Возраст должен быть целым числом");
+            }
+        }
+        Set<ConstraintViolation<CreateUserDto>> violations = validator.validate(row);
+        if (!violations.isEmpty()) {
+            return new ParsedRow(null, email, violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+        return new ParsedRow(row, email, null);
+    }
+
+    private void flushRejects(List<Object[]> rejects) {
+        if (!rejects.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_REJECT, rejects);
+            rejects.clear();
+        }
+    }
+
+    private static boolean isHeader(List<String> fields) {
+        return fields.stream().map(field -> field.toLowerCase(Locale.ROOT)).collect(Collectors.toSet())
+                .containsAll(DEFAULT_COLUMNS);
+    }
+
+    private static String field(List<String> fields, List<String> columns, String column) {
+        int index = columns.indexOf(column);
+        return index < 0 ? null : fields.get(index);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static String truncate(String value) {
+        return value == null || value.length() <= MAX_VALUE_LENGTH ? value : value.substring(0, MAX_VALUE_LENGTH);
+    }
+
+    public record Reject(long line, String email, String reason) {
+    }
+
+    private record ParsedRow(CreateUserDto row, String email, String reason) {
+    }
+
+    private record MergedChunk(List<User> created, int rejected) {
+    }
+}
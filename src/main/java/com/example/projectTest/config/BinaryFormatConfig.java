@@ -0,0 +1,34 @@
+package com.example.projectTest.config;
+
+import org.springframework.boot.http.converter.autoconfigure.ServerHttpMessageConvertersCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.JacksonCborHttpMessageConverter;
+import org.springframework.http.converter.smile.JacksonSmileHttpMessageConverter;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+/**
+ * Бинарные форматы для внутренних клиентов: application/cbor и application/x-jackson-smile.
+ * <p>
+ * Формат выбирается по Accept (ответ) и Content-Type (тело запроса), без них остаётся JSON:
+ * JSON-конвертеры стоят в списке раньше. Конвертеры строятся на тех же мапперах, которыми
+ * ErrorResponseWriter пишет ошибки из фильтров, поэтому тела из контроллеров и из фильтров
+ * в одном формате совпадают. CBORMapper настраивает Spring Boot, SmileMapper - этот класс.
+ */
+@Configuration
+public class BinaryFormatConfig {
+
+    @Bean
+    public SmileMapper smileMapper() {
+        return SmileMapper.builder().findAndAddModules().build();
+    }
+
+    @Bean
+    public ServerHttpMessageConvertersCustomizer binaryFormatConvertersCustomizer(CBORMapper cborMapper,
+                                                                                 SmileMapper smileMapper) {
+        return builder -> builder
+                .withCborConverter(new JacksonCborHttpMessageConverter(cborMapper))
+                .withSmileConverter(new JacksonSmileHttpMessageConverter(smileMapper));
+    }
+}
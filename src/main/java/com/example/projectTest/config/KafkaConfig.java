@@ -1,18 +1,40 @@
 package com.example.projectTest.config;
 
+import com.example.projectTest.kafka.UserCommand;
+import com.example.projectTest.kafka.UserCommandResult;
 import com.example.projectTest.kafka.UserEvent;
+import com.example.projectTest.kafka.UserEventBinaryDeserializer;
+import com.example.projectTest.kafka.UserEventBinarySerializer;
+import com.example.projectTest.kafka.UserIdPartitioner;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.DelegatingByTopicSerialization;
+import org.springframework.kafka.support.serializer.DelegatingByTopicSerializer;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JacksonJsonDeserializer;
+import org.springframework.kafka.support.serializer.JacksonJsonSerializer;
+import org.springframework.util.StringUtils;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Configuration
 public class KafkaConfig {
@@ -44,6 +66,52 @@ public class KafkaConfig {
     @Value("${spring.kafka.producer.properties.request.timeout.ms}")
     private String requestTimeoutMs;
 
+    // Топики, в которые UserEvent пишется в бинарном формате, остальные остаются в JSON
+    @Value("${user-events-binary-topics:}")
+    private String binaryTopics;
+
+    @Value("${user-events-topic-name:user-events-topic}")
+    private String userEventsTopicName;
+
+    @Value("${user-events-topic-partitions:12}")
+    private int userEventsTopicPartitions;
+
+    @Value("${user-events-topic-replicas:1}")
+    private int userEventsTopicReplicas;
+
+    // transactional.id должен быть постоянным для экземпляра сервиса: после перезапуска брокер
+    // по нему отменяет незавершённую транзакцию и отсекает "зомби"-продюсер старого процесса
+    @Value("${pending-events.transactional-id-prefix:${spring.application.name}-${HOSTNAME:local}-outbox-}")
+    private String outboxTransactionalIdPrefix;
+
+    @Value("${user-commands.topic:user-commands}")
+    private String userCommandsTopicName;
+
+    @Value("${user-commands.reply-topic:user-command-results}")
+    private String userCommandsReplyTopicName;
+
+    // Одна цифра и для топика, и для числа потоков потребителя: поток на партицию
+    @Value("${user-commands.partitions:12}")
+    private int userCommandsTopicPartitions;
+
+    @Value("${user-commands.group-id:${spring.application.name}-commands}")
+    private String userCommandsGroupId;
+
+    @Value("${user-commands.max-poll-records:500}")
+    private int userCommandsMaxPollRecords;
+
+    @Value("${spring.kafka.consumer.bootstrap-servers:${spring.kafka.producer.bootstrap-servers}}")
+    private String consumerBootstrapServers;
+
+    @Value("${user-snapshots.topic:user-snapshots}")
+    private String userSnapshotsTopicName;
+
+    @Value("${user-snapshots.partitions:12}")
+    private int userSnapshotsTopicPartitions;
+
+    @Value("${user-snapshots.max-poll-records:5000}")
+    private int userSnapshotsMaxPollRecords;
+
     Map<String, Object> producerConfigs() {
         Map<String, Object> config = new HashMap<>();
 
@@ -56,25 +124,152 @@ public class KafkaConfig {
         config.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, deliveryTimeoutMs);
         config.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
         config.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, requestTimeoutMs);
+        config.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, UserIdPartitioner.class);
+
+        Set<String> topics = StringUtils.commaDelimitedListToSet(StringUtils.trimAllWhitespace(binaryTopics));
+        if (!topics.isEmpty()) {
+            config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, DelegatingByTopicSerializer.class);
+            config.put(DelegatingByTopicSerialization.VALUE_SERIALIZATION_TOPIC_CONFIG, topics.stream()
+                    .map(topic -> topic + ":" + UserEventBinarySerializer.class.getName())
+                    .collect(Collectors.joining(",")));
+            config.put(DelegatingByTopicSerialization.VALUE_SERIALIZATION_TOPIC_DEFAULT, valueSerializer);
+        }
 
         return config;
     }
 
     @Bean
+    @Primary
     public ProducerFactory<String, UserEvent> producerFactory() {
         return new DefaultKafkaProducerFactory<>(producerConfigs());
     }
 
     @Bean
+    @Primary
     public KafkaTemplate<String, UserEvent> kafkaTemplate() {
         return new KafkaTemplate<>(producerFactory());
     }
 
+    /**
+     * Отдельный транзакционный продюсер для повторной отправки отложенных событий.
+     * Основной продюсер остаётся нетранзакционным, чтобы обычные отправки не платили за транзакции.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "pending-events.transactional-relay", havingValue = "true")
+    public ProducerFactory<String, UserEvent> outboxProducerFactory() {
+        DefaultKafkaProducerFactory<String, UserEvent> factory = new DefaultKafkaProducerFactory<>(producerConfigs());
+        factory.setTransactionIdPrefix(outboxTransactionalIdPrefix);
+        return factory;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "pending-events.transactional-relay", havingValue = "true")
+    public KafkaTemplate<String, UserEvent> outboxKafkaTemplate() {
+        return new KafkaTemplate<>(outboxProducerFactory());
+    }
+
+    /**
+     * Потребитель команд: пачка до max-poll-records записей за poll. Нераспознанная запись
+     * не останавливает партицию, а приходит в пачке как null и получает ответ INVALID.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "user-commands.enabled", havingValue = "true")
+    public ConsumerFactory<String, UserCommand> userCommandConsumerFactory() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, consumerBootstrapServers);
+        config.put(ConsumerConfig.GROUP_ID_CONFIG, userCommandsGroupId);
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, userCommandsMaxPollRecords);
+
+        JacksonJsonDeserializer<UserCommand> valueDeserializer = new JacksonJsonDeserializer<>(UserCommand.class)
+                .ignoreTypeHeaders();
+        return new DefaultKafkaConsumerFactory<>(config, new StringDeserializer(),
+                new ErrorHandlingDeserializer<>(valueDeserializer));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "user-commands.enabled", havingValue = "true")
+    public ConcurrentKafkaListenerContainerFactory<String, UserCommand> userCommandListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, UserCommand> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(userCommandConsumerFactory());
+        factory.setBatchListener(true);
+        // лишние потоки простаивали бы без партиций, а с меньшим числом часть партиций читалась бы последовательно
+        factory.setConcurrency(userCommandsTopicPartitions);
+        return factory;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "user-commands.enabled", havingValue = "true")
+    public ProducerFactory<String, UserCommandResult> userCommandResultProducerFactory() {
+        return new DefaultKafkaProducerFactory<>(producerConfigs(), new StringSerializer(),
+                new JacksonJsonSerializer<UserCommandResult>().noTypeInfo());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "user-commands.enabled", havingValue = "true")
+    public KafkaTemplate<String, UserCommandResult> userCommandResultKafkaTemplate() {
+        return new KafkaTemplate<>(userCommandResultProducerFactory());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "user-commands.enabled", havingValue = "true")
+    NewTopic userCommandsTopic() {
+        return TopicBuilder.name(userCommandsTopicName)
+                .partitions(userCommandsTopicPartitions)
+                .replicas(userEventsTopicReplicas)
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "user-commands.enabled", havingValue = "true")
+    NewTopic userCommandResultsTopic() {
+        return TopicBuilder.name(userCommandsReplyTopicName)
+                .partitions(userCommandsTopicPartitions)
+                .replicas(userEventsTopicReplicas)
+                .build();
+    }
+
+    /**
+     * Потребители снимков читают партиции напрямую (assign) без группы и без фиксации смещений:
+     * каждый узел при старте читает топик с начала. Формат значения тот же, что при отправке.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "user-snapshots.cache.enabled", havingValue = "true")
+    public ConsumerFactory<String, UserEvent> userSnapshotConsumerFactory() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, consumerBootstrapServers);
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, userSnapshotsMaxPollRecords);
+        // прогрев читает партицию целиком: крупные выборки вместо 1 МБ по умолчанию
+        config.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, 8 * 1024 * 1024);
+
+        boolean binary = StringUtils.commaDelimitedListToSet(StringUtils.trimAllWhitespace(binaryTopics))
+                .contains(userSnapshotsTopicName);
+        return new DefaultKafkaConsumerFactory<>(config, StringDeserializer::new, () -> {
+            Deserializer<UserEvent> valueDeserializer = binary
+                    ? new UserEventBinaryDeserializer()
+                    : new JacksonJsonDeserializer<>(UserEvent.class).ignoreTypeHeaders();
+            return new ErrorHandlingDeserializer<>(valueDeserializer);
+        });
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "user-snapshots.enabled", havingValue = "true")
+    NewTopic userSnapshotsTopic() {
+        return TopicBuilder.name(userSnapshotsTopicName)
+                .partitions(userSnapshotsTopicPartitions)
+                .replicas(userEventsTopicReplicas)
+                .compact()
+                .build();
+    }
+
     @Bean
     NewTopic createTopic() {
-        return TopicBuilder.name("user-events-topic")
-                .partitions(1)
-                .replicas(1)
+        return TopicBuilder.name(userEventsTopicName)
+                .partitions(userEventsTopicPartitions)
+                .replicas(userEventsTopicReplicas)
                 .build();
     }
 }
@@ -0,0 +1,68 @@
+package com.example.projectTest.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Индексы таблицы отложенных событий, которые нельзя описать аннотациями JPA.
+ * <p>
+ * В PostgreSQL индекс частичный: в него попадают только необработанные строки вне dead letter,
+ * поэтому он остаётся маленьким, сколько бы обработанных событий ни накопилось, а выборка готовых
+ * к отправке строк читает только их. Другие СУБД частичные индексы не поддерживают - там составной индекс.
+ * Выполняется после PendingEventRetentionManager, который может пересоздать таблицу секционированной.
+ */
+@Component
+@Slf4j
+@Order(1)
+@RequiredArgsConstructor
+public class PendingEventIndexInitializer implements ApplicationRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            // Строки, сохранённые до появления next_attempt_at, готовы к отправке сразу
+            jdbcTemplate.update("UPDATE pending_kafka_events SET next_attempt_at = created_at WHERE next_attempt_at IS NULL");
+            if (isPostgres()) {
+                // Секционированную таблицу нельзя индексировать CONCURRENTLY, индекс создаётся в каждой секции
+                boolean partitioned = isPartitioned();
+                String concurrently = partitioned ? "" : "CONCURRENTLY ";
+                jdbcTemplate.execute("CREATE INDEX " + concurrently + "IF NOT EXISTS idx_pending_kafka_events_due " +
+                        "ON pending_kafka_events (next_attempt_at) WHERE processed = false AND dead_letter = false");
+                jdbcTemplate.execute("CREATE INDEX " + concurrently + "IF NOT EXISTS idx_pending_kafka_events_dead_letter " +
+                        "ON pending_kafka_events (id) WHERE dead_letter = true");
+                jdbcTemplate.execute("CREATE UNIQUE INDEX " + concurrently + "IF NOT EXISTS uk_pending_kafka_events_event_id " +
+                        "ON pending_kafka_events " + (partitioned ? "(event_id, created_at)" : "(event_id)"));
+            } else {
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_pending_kafka_events_due " +
+                        "ON pending_kafka_events (processed, dead_letter, next_attempt_at)");
+                jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS uk_pending_kafka_events_event_id " +
+                        "ON pending_kafka_events (event_id)");
+            }
+        } catch (DataAccessException e) {
+            log.warn("Не удалось создать индексы таблицы pending_kafka_events: {}", e.getMessage());
+        }
+    }
+
+    private boolean isPartitioned() {
+        List<String> kinds = jdbcTemplate.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE relname = 'pending_kafka_events'", String.class);
+        return kinds.contains("p");
+    }
+
+    private boolean isPostgres() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equalsIgnoreCase(product);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.projectTest.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.JacksonJsonHttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Потоковая выдача UserDto в application/x-ndjson для /api/reactive/users.
+ * <p>
+ * Spring HATEOAS регистрирует в JSON-конвертере отдельные мапперы для RepresentationModel,
+ * только под application/json и hal+json, и NDJSON без маппера падает с "No ObjectMapper".
+ * Регистрация делается после того, как HATEOAS дополнил конвертеры, чтобы каждая строка
+ * NDJSON совпадала с ответом в application/json.
+ */
+@Configuration
+@ConditionalOnProperty(name = "reactive-lookup.enabled", havingValue = "true")
+public class ReactiveLookupConfig {
+
+    @Bean
+    public SmartInitializingSingleton ndjsonRepresentationModelMapper(
+            ObjectProvider<RequestMappingHandlerAdapter> handlerAdapters) {
+        return () -> handlerAdapters.forEach(adapter -> adapter.getMessageConverters().stream()
+                .filter(JacksonJsonHttpMessageConverter.class::isInstance)
+                .map(JacksonJsonHttpMessageConverter.class::cast)
+                .filter(converter -> !converter.getMappersForType(RepresentationModel.class).isEmpty())
+                .forEach(converter -> converter.registerMappersForType(RepresentationModel.class, mappers -> {
+                    JsonMapper mapper = mappers.get(MediaType.APPLICATION_JSON);
+                    if (mapper != null) {
+                        mappers.putIfAbsent(MediaType.APPLICATION_NDJSON, mapper);
+                    }
+                })));
+    }
+}
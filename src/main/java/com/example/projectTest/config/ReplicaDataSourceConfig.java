@@ -0,0 +1,65 @@
+package com.example.projectTest.config;
+
+import com.example.projectTest.replica.ReplicaDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Чтение с реплики для транзакций {@code @Transactional(readOnly = true)}.
+ * <p>
+ * Основной DataSource - LazyConnectionDataSourceProxy над primary: физическое соединение
+ * берётся только на первом запросе, когда признак read-only транзакции уже известен,
+ * и для read-only соединений берётся из ReplicaDataSource. У реплики свой пул
+ * (replica.datasource.hikari.*), так что тяжёлые чтения не занимают соединения записи.
+ */
+@Configuration
+@ConditionalOnProperty(name = "replica.enabled", havingValue = "true")
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("replica.datasource.hikari")
+    public HikariDataSource replicaPoolDataSource(@Value("${replica.datasource.url}") String url,
+                                                  @Value("${replica.datasource.username:${spring.datasource.username:}}") String username,
+                                                  @Value("${replica.datasource.password:${spring.datasource.password:}}") String password) {
+        return DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+    }
+
+    @Bean
+    public ReplicaDataSource replicaDataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                               @Qualifier("replicaPoolDataSource") DataSource replicaPoolDataSource,
+                                               @Value("${replica.validation-timeout-seconds:2}") int validationTimeoutSeconds) {
+        return new ReplicaDataSource(primaryDataSource, replicaPoolDataSource, validationTimeoutSeconds);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 ReplicaDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+}
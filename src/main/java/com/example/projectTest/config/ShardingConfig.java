@@ -0,0 +1,78 @@
+package com.example.projectTest.config;
+
+import com.example.projectTest.sharding.ShardDirectory;
+import com.example.projectTest.sharding.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Шардирование таблицы users.
+ * <p>
+ * Шард 0 - основная БД из spring.datasource.*, на нём же остаются все остальные таблицы
+ * и карта бакетов. sharding.urls перечисляет дополнительные шарды по порядку номеров.
+ * Основной DataSource - LazyConnectionDataSourceProxy над ShardRoutingDataSource:
+ * соединение берётся на первом запросе транзакции, когда шард уже выбран ShardRouter-ом.
+ * Несовместимо с replica.enabled.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    public ShardDirectory shardDirectory(DataSourceProperties properties,
+                                         @Value("${sharding.urls}") List<String> urls,
+                                         @Value("${sharding.username:${spring.datasource.username:}}") String username,
+                                         @Value("${sharding.password:${spring.datasource.password:}}") String password,
+                                         @Value("${sharding.pool-size:10}") int poolSize,
+                                         @Value("${sharding.map-refresh-ms:5000}") long mapRefreshMs) {
+        List<DataSource> shards = new ArrayList<>();
+        HikariDataSource catalog = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        catalog.setMaximumPoolSize(poolSize);
+        catalog.setPoolName("shard-0");
+        shards.add(catalog);
+        for (String url : urls) {
+            HikariDataSource shard = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url)
+                    .username(username)
+                    .password(password)
+                    .build();
+            shard.setMaximumPoolSize(poolSize);
+            shard.setPoolName("shard-" + shards.size());
+            shards.add(shard);
+        }
+        ShardDirectory directory = new ShardDirectory(shards);
+        directory.initialize();
+        directory.startRefresh(Duration.ofMillis(mapRefreshMs));
+        return directory;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardDirectory shardDirectory) {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shardDirectory.shardCount(); shard++) {
+            targets.put(shard, shardDirectory.dataSource(shard));
+        }
+        ShardRoutingDataSource routing = new ShardRoutingDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(shardDirectory.dataSource(0));
+        routing.setLenientFallback(false);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
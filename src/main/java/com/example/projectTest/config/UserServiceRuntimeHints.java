@@ -0,0 +1,53 @@
+package com.example.projectTest.config;
+
+import com.example.projectTest.controllerAdvice.ErrorResponse;
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UpdateUserDto;
+import com.example.projectTest.dto.UserDto;
+import com.example.projectTest.dto.UserImportReport;
+import com.example.projectTest.kafka.UserCommand;
+import com.example.projectTest.kafka.UserCommandResult;
+import com.example.projectTest.kafka.UserEvent;
+import com.example.projectTest.kafka.UserEventBinaryDeserializer;
+import com.example.projectTest.kafka.UserEventBinarySerializer;
+import com.example.projectTest.kafka.UserIdPartitioner;
+import com.example.projectTest.service.UserEventPublisher;
+import com.example.projectTest.service.UserService;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import java.util.List;
+
+/**
+ * Подсказки для native-образа о том, что AOT-обработка Spring не выводит сама.
+ * <p>
+ * Типы контроллеров Spring регистрирует сам, здесь - JSON вне контроллеров: события и команды
+ * в Kafka и ErrorResponse, который фильтры пишут напрямую через ErrorResponseWriter. Lombok-билдеры
+ * подсказок не требуют: это обычный код, а Jackson создаёт объекты через конструктор без
+ * аргументов и сеттеры, для них и нужны подсказки привязки.
+ * Kafka создаёт партиционер и сериализаторы по имени класса. Resilience4j читает свои
+ * аннотации с методов бинов и вызывает fallback-методы через reflection.
+ */
+public class UserServiceRuntimeHints implements RuntimeHintsRegistrar {
+
+    static final List<Class<?>> JSON_TYPES = List.of(UserDto.class, CreateUserDto.class, UpdateUserDto.class,
+            UserImportReport.class, ErrorResponse.class, UserEvent.class, UserCommand.class, UserCommandResult.class);
+
+    static final List<Class<?>> KAFKA_PLUGINS = List.of(UserIdPartitioner.class, UserEventBinarySerializer.class,
+            UserEventBinaryDeserializer.class);
+
+    static final List<Class<?>> RESILIENCE_BEANS = List.of(UserService.class, UserEventPublisher.class);
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        BindingReflectionHintsRegistrar bindings = new BindingReflectionHintsRegistrar();
+        JSON_TYPES.forEach(type -> bindings.registerReflectionHints(hints.reflection(), type));
+
+        KAFKA_PLUGINS.forEach(type -> hints.reflection().registerType(type, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS));
+
+        RESILIENCE_BEANS.forEach(type -> hints.reflection().registerType(type,
+                MemberCategory.INVOKE_DECLARED_METHODS, MemberCategory.INVOKE_PUBLIC_METHODS));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.projectTest.controller;
+
+import com.example.projectTest.service.PendingEventProcessor;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RequiredArgsConstructor
+@RestController
+@RequestMapping(path = "/api/pending-events")
+@Tag(name = "Pending Events", description = "API для управления отложенными событиями Kafka")
+public class PendingEventController {
+
+    private static final int MAX_REPLAY_LIMIT = 10_000;
+
+    private final PendingEventProcessor pendingEventProcessor;
+
+    @GetMapping("/dead-letter/count")
+    @Operation(summary = "Количество событий в dead letter")
+    public Map<String, Long> countDeadLetters() {
+        return Map.of("deadLetters", pendingEventProcessor.countDeadLetters());
+    }
+
+    @PostMapping("/dead-letter/replay")
+    @Operation(summary = "Повторно поставить события из dead letter в очередь отправки")
+    public Map<String, Integer> replayDeadLetters(
+            @Parameter(description = "Максимальное число событий (не более 10000)", example = "1000")
+            @RequestParam(defaultValue = "1000") int limit) {
+        int replayed = pendingEventProcessor.replayDeadLetters(Math.clamp(limit, 0, MAX_REPLAY_LIMIT));
+        return Map.of("replayed", replayed);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.projectTest.controller;
+
+import com.example.projectTest.sharding.ShardDirectory;
+import com.example.projectTest.sharding.ShardRebalancer;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+@RestController
+@RequestMapping(path = "/api/shards")
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+@Tag(name = "Shards", description = "API для управления шардами пользователей")
+public class ShardController {
+
+    private final ShardDirectory shardDirectory;
+
+    private final ShardRebalancer shardRebalancer;
+
+    @GetMapping
+    @Operation(summary = "Карта бакетов по шардам")
+    public List<ShardDirectory.BucketRange> ranges() {
+        return shardDirectory.ranges();
+    }
+
+    @PostMapping("/move")
+    @Operation(summary = "Перенести диапазон бакетов на другой шард")
+    public ShardRebalancer.MoveResult move(
+            @Parameter(description = "Первый бакет диапазона", example = "0") @RequestParam int fromBucket,
+            @Parameter(description = "Последний бакет диапазона", example = "127") @RequestParam int toBucket,
+            @Parameter(description = "Номер целевого шарда", example = "1") @RequestParam int targetShard) {
+        return shardRebalancer.move(fromBucket, toBucket, targetShard);
+    }
+}
@@ -3,7 +3,11 @@ package com.example.projectTest.controller;
 import com.example.projectTest.dto.CreateUserDto;
 import com.example.projectTest.dto.UpdateUserDto;
 import com.example.projectTest.dto.UserDto;
+import com.example.projectTest.dto.UserStatisticsDto;
+import com.example.projectTest.exception.UserNotFoundException;
+import com.example.projectTest.exception.UserVersionMismatchException;
 import com.example.projectTest.service.UserService;
+import com.example.projectTest.statistics.UserStatistics;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,10 +18,16 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 @RequiredArgsConstructor
 @RestController
@@ -27,6 +37,8 @@ public class UserController {
 
     private final UserService userService;
 
+    private final UserStatistics userStatistics;
+
     @GetMapping
     @Operation(
             summary = "Получить всех пользователей",
@@ -46,48 +58,116 @@ public class UserController {
         return CollectionModel.of(users);
     }
 
+    @GetMapping("/statistics")
+    @Operation(
+            summary = "Статистика пользователей",
+            description = "Число пользователей, распределение по возрасту и регистрации по дням. "
+                    + "Отдаётся из счётчиков в памяти без запросов к БД; изменения с других узлов "
+                    + "и импорт учитываются при периодической сверке"
+    )
+    public UserStatisticsDto getStatistics() {
+        return userStatistics.snapshot();
+    }
+
+    /**
+     * С If-None-Match сначала сверяется только версия (кэш снимков или одна колонка),
+     * и при совпадении 304 отдаётся без загрузки, маппинга и сериализации пользователя.
+     */
     @GetMapping("{id}")
     @Operation(summary = "Получить пользователя по ID")
-    public EntityModel<UserDto> getUser(
+    public ResponseEntity<EntityModel<UserDto>> getUser(
             @Parameter(description = "ID пользователя", example = "1")
-            @PathVariable Long id) {
+            @PathVariable Long id,
+            WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Optional<Long> version = userService.findVersion(id);
+            if (version.isPresent() && request.checkNotModified(eTag(version.get()))) {
+                return null;
+            }
+        }
         UserDto user = userService.findById(id);
-        return EntityModel.of(user);
+        return withETag(ResponseEntity.ok(), user);
     }
 
     @GetMapping("/findByEmail")
     @Operation(summary = "Найти пользователя по email")
-    public EntityModel<UserDto> getUserByEmail(
+    public ResponseEntity<EntityModel<UserDto>> getUserByEmail(
             @Parameter(description = "Email пользователя", example = "user@example.com")
             @RequestParam String email) {
         UserDto user = userService.findByEmail(email);
-        return EntityModel.of(user);
+        return withETag(ResponseEntity.ok(), user);
     }
 
     @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
     @Operation(summary = "Создать нового пользователя")
-    public EntityModel<UserDto> createUser(@RequestBody @Valid CreateUserDto createUserDto) {
+    public ResponseEntity<EntityModel<UserDto>> createUser(@RequestBody @Valid CreateUserDto createUserDto) {
         UserDto createdUser = userService.create(createUserDto);
-        return EntityModel.of(createdUser);
+        return withETag(ResponseEntity.status(HttpStatus.CREATED), createdUser);
     }
 
     @DeleteMapping("{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    @Operation(summary = "Удалить пользователя по ID")
+    @Operation(summary = "Удалить пользователя по ID",
+            description = "С If-Match удаляет, только если версия не изменилась, иначе 412")
     public void deleteUser(
             @Parameter(description = "ID пользователя для удаления", example = "1")
-            @PathVariable Long id) {
-        userService.delete(id);
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        userService.delete(id, expectedVersion(id, ifMatch));
     }
 
     @PutMapping("{id}")
-    @Operation(summary = "Обновить данные пользователя")
-    public EntityModel<UserDto> updateUser(
+    @Operation(summary = "Обновить данные пользователя",
+            description = "С If-Match обновляет, только если версия не изменилась, иначе 412")
+    public ResponseEntity<EntityModel<UserDto>> updateUser(
             @Parameter(description = "ID пользователя для обновления", example = "1")
             @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody @Valid UpdateUserDto updateUserDto) {
-        UserDto updatedUser = userService.update(id, updateUserDto);
-        return EntityModel.of(updatedUser);
+        UserDto updatedUser = userService.update(id, updateUserDto, expectedVersion(id, ifMatch));
+        return withETag(ResponseEntity.ok(), updatedUser);
+    }
+
+    private static ResponseEntity<EntityModel<UserDto>> withETag(ResponseEntity.BodyBuilder response, UserDto user) {
+        if (user.getVersion() != null) {
+            response.eTag(eTag(user.getVersion()));
+        }
+        return response.body(EntityModel.of(user));
+    }
+
+    private static String eTag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Версия из If-Match, с которой сверится UserService; null - проверять не нужно.
+     * If-Match сравнивается строго: слабые теги не совпадают ни с какой версией.
+     */
+    private Long expectedVersion(Long id, String ifMatch) {
+        if (ifMatch == null) {
+            return null;
+        }
+        List<Long> versions = new ArrayList<>();
+        for (ETag tag : ETag.parse(ifMatch)) {
+            if (tag.isWildcard()) {
+                return null;
+            }
+            if (!tag.weak()) {
+                try {
+                    versions.add(Long.parseLong(tag.tag()));
+                } catch (NumberFormatException ignored) {
+                    // чужой тег не совпадает ни с одной версией
+                }
+            }
+        }
+        if (versions.size() == 1) {
+            return versions.getFirst();
+        }
+        // несколько тегов: подходит любой, сверяем текущую версию, а сервис повторит проверку под записью
+        Long current = userService.findVersion(id).orElseThrow(UserNotFoundException::new);
+        if (!versions.contains(current)) {
+            throw new UserVersionMismatchException();
+        }
+        return current;
     }
 }
\ No newline at end of file
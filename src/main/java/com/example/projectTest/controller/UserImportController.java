@@ -0,0 +1,65 @@
+package com.example.projectTest.controller;
+
+import com.example.projectTest.bulkimport.UserImportService;
+import com.example.projectTest.dto.UserImportReport;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Импорт вынесен из /api/users: многоминутная загрузка не должна занимать слоты
+ * адаптивного лимита и читаться целиком в память фильтром идемпотентности.
+ */
+@RequiredArgsConstructor
+@RestController
+@RequestMapping(path = "/api/user-imports")
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "false", matchIfMissing = true)
+@Tag(name = "User Import", description = "API для массового импорта пользователей из CSV")
+public class UserImportController {
+
+    private static final String TEXT_CSV = "text/csv";
+
+    private final UserImportService userImportService;
+
+    @PostMapping(consumes = {TEXT_CSV, MediaType.TEXT_PLAIN_VALUE})
+    @Operation(summary = "Импортировать пользователей из CSV (email,name,age)",
+            description = "Тело запроса читается потоком. Ответ - итог импорта, ход виден в GET /api/user-imports/{id}")
+    public ResponseEntity<UserImportReport> importUsers(InputStream csv) {
+        UserImportReport report = userImportService.importCsv(csv);
+        HttpStatus status = "FAILED".equals(report.getPhase()) ? HttpStatus.INTERNAL_SERVER_ERROR : HttpStatus.OK;
+        return ResponseEntity.status(status).body(report);
+    }
+
+    @GetMapping
+    @Operation(summary = "Последние задания импорта с ходом выполнения")
+    public List<UserImportReport> reports() {
+        return userImportService.reports();
+    }
+
+    @GetMapping("{id}")
+    @Operation(summary = "Ход выполнения задания импорта")
+    public ResponseEntity<UserImportReport> report(@PathVariable UUID id) {
+        return ResponseEntity.of(userImportService.report(id));
+    }
+
+    @GetMapping("{id}/rejects")
+    @Operation(summary = "Отклонённые строки задания импорта")
+    public List<UserImportService.Reject> rejects(
+            @PathVariable UUID id,
+            @Parameter(description = "Вернуть строки после этого номера", example = "0")
+            @RequestParam(defaultValue = "0") long afterLine,
+            @Parameter(description = "Сколько строк вернуть", example = "1000")
+            @RequestParam(defaultValue = "1000") int limit) {
+        return userImportService.rejects(id, afterLine, Math.min(limit, 10_000));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.projectTest.controllerAdvice;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Запись ErrorResponse из фильтров, которые отвечают до DispatcherServlet.
+ * <p>
+ * Формат выбирается по Accept так же, как для ответов GlobalExceptionHandler:
+ * CBOR или Smile, если клиент их запросил, иначе JSON.
+ */
+@Component
+@RequiredArgsConstructor
+public class ErrorResponseWriter {
+
+    private static final MediaType APPLICATION_SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    private final JsonMapper jsonMapper;
+
+    private final CBORMapper cborMapper;
+
+    private final SmileMapper smileMapper;
+
+    public void write(HttpServletRequest request, HttpServletResponse response, HttpStatus status, String message)
+            throws IOException {
+        ErrorResponse body = new ErrorResponse(status.value(), status.name(), message);
+        response.setStatus(status.value());
+        MediaType format = negotiate(request);
+        if (MediaType.APPLICATION_CBOR.equals(format)) {
+            response.setContentType(MediaType.APPLICATION_CBOR_VALUE);
+            cborMapper.writeValue(response.getOutputStream(), body);
+        } else if (APPLICATION_SMILE.equals(format)) {
+            response.setContentType(APPLICATION_SMILE.toString());
+            smileMapper.writeValue(response.getOutputStream(), body);
+        } else {
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            jsonMapper.writeValue(response.getOutputStream(), body);
+        }
+    }
+
+    private static MediaType negotiate(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MimeTypeUtils.sortBySpecificity(accepted);
+        for (MediaType mediaType : accepted) {
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            }
+            // */* и application/* - JSON: бинарный формат только по явному запросу
+            if (mediaType.isWildcardSubtype() || mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return MediaType.APPLICATION_JSON;
+            }
+            if (mediaType.isCompatibleWith(MediaType.APPLICATION_CBOR)) {
+                return MediaType.APPLICATION_CBOR;
+            }
+            if (mediaType.isCompatibleWith(APPLICATION_SMILE)) {
+                return APPLICATION_SMILE;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+}
@@ -2,7 +2,12 @@ package com.example.projectTest.controllerAdvice;
 
 import com.example.projectTest.exception.DuplicateEmailException;
 import com.example.projectTest.exception.EmptyListException;
+import com.example.projectTest.exception.ShardMovingException;
 import com.example.projectTest.exception.UserNotFoundException;
+import com.example.projectTest.exception.UserVersionMismatchException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -43,6 +48,25 @@ public class GlobalExceptionHandler {
         );
         return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
     }
+    @ExceptionHandler(UserVersionMismatchException.class)
+    public ResponseEntity<ErrorResponse> handleUserVersionMismatchException(UserVersionMismatchException ex) {
+        ErrorResponse response = new ErrorResponse(
+                HttpStatus.PRECONDITION_FAILED.value(),
+                "PRECONDITION_FAILED",
+                ex.getMessage()
+        );
+        return new ResponseEntity<>(response, HttpStatus.PRECONDITION_FAILED);
+    }
+    // параллельное изменение без If-Match: запрос не перезаписывает чужие данные, клиент перечитывает и повторяет
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+        ErrorResponse response = new ErrorResponse(
+                HttpStatus.CONFLICT.value(),
+                "CONFLICT",
+                "Пользователь был изменён параллельным запросом, повторите запрос."
+        );
+        return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+    }
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponse> handleMethodArgumentNotValidException(MethodArgumentNotValidException ex) {
         BindingResult bindingResult = ex.getBindingResult();
@@ -60,6 +84,28 @@ public class GlobalExceptionHandler {
         );
         return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
     }
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<ErrorResponse> handleBulkheadFullException(BulkheadFullException ex) {
+        ErrorResponse response = new ErrorResponse(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "SERVICE_UNAVAILABLE",
+                ex.getMessage()
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response);
+    }
+    @ExceptionHandler(ShardMovingException.class)
+    public ResponseEntity<ErrorResponse> handleShardMovingException(ShardMovingException ex) {
+        ErrorResponse response = new ErrorResponse(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "SERVICE_UNAVAILABLE",
+                ex.getMessage()
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response);
+    }
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleException(Exception ex) {
         ErrorResponse response = new ErrorResponse(
@@ -1,5 +1,6 @@
 package com.example.projectTest.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.*;
 import org.springframework.hateoas.RepresentationModel;
@@ -47,4 +48,9 @@ public class UserDto extends RepresentationModel<UserDto> {
             accessMode = Schema.AccessMode.READ_ONLY
     )
     private Instant createdAt;
+
+    // Отдаётся в заголовке ETag, а не в теле
+    @JsonIgnore
+    @Schema(hidden = true)
+    private Long version;
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.example.projectTest.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Ход и итог импорта пользователей из CSV")
+public class UserImportReport {
+
+    @Schema(description = "Идентификатор задания импорта")
+    private UUID id;
+
+    @Schema(description = "Этап: LOADING, MERGING, DONE или FAILED", example = "MERGING")
+    private String phase;
+
+    @Schema(description = "Прочитано строк данных")
+    private long rowsRead;
+
+    @Schema(description = "Строк прошло проверку и загружено в staging")
+    private long rowsStaged;
+
+    @Schema(description = "Строк отклонено (ошибки формата, проверки и дубликаты email)")
+    private long rowsRejected;
+
+    @Schema(description = "Создано пользователей")
+    private long rowsImported;
+
+    @Schema(description = "Отправлено событий CREATED")
+    private long eventsPublished;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    @Schema(description = "Причина остановки для FAILED")
+    private String error;
+}
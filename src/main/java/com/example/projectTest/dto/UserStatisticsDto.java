@@ -0,0 +1,38 @@
+package com.example.projectTest.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Агрегаты по пользователям, поддерживаемые инкрементально")
+public class UserStatisticsDto {
+
+    @Schema(description = "Всего пользователей", example = "1250")
+    private long totalUsers;
+
+    @Schema(description = "Средний возраст, null при отсутствии пользователей", example = "34.7")
+    private Double averageAge;
+
+    @Schema(description = "Число пользователей по возрасту: 0-9, 10-19, ..., 90-99, 100+")
+    private Map<String, Long> ageHistogram;
+
+    @Schema(description = "Регистрации по дням (UTC) за последние user-statistics.signup-days дней, "
+            + "без удалённых пользователей")
+    private Map<LocalDate, Long> signupsPerDay;
+
+    @Schema(description = "Время последней сверки с БД, null до первой сверки")
+    private Instant reconciledAt;
+
+    @Schema(description = "Расхождение счётчиков с пересчётом на последней сверке", example = "0")
+    private long lastDrift;
+}
@@ -0,0 +1,64 @@
+package com.example.projectTest.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * Сохранённый ответ на запрос с заголовком Idempotency-Key.
+ * Пока запрос выполняется, status пустой - запись служит блокировкой ключа для других узлов.
+ */
+@Entity
+@Table(name = "idempotency_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord implements Persistable<String> {
+
+    @Id
+    @Column(name = "idempotency_key", length = 255)
+    private String key;
+
+    // SHA-256 от метода, пути и тела запроса: повтор ключа с другим запросом отклоняется
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    @Column
+    private Integer status;
+
+    @Column
+    private String contentType;
+
+    @Column(length = 65536)
+    private byte[] body;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    // Новая запись всегда вставляется через persist: повторный ключ даёт ошибку уникальности, а не update
+    @Transient
+    private boolean isNew = true;
+
+    @Override
+    public String getId() {
+        return key;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
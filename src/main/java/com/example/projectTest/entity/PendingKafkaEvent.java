@@ -4,8 +4,10 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Entity
 @Table(name = "pending_kafka_events")
@@ -18,12 +20,24 @@ public class PendingKafkaEvent {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Уникальный индекс создаётся PendingEventIndexInitializer: в секционированной таблице
+    // он обязан включать created_at, поэтому не описывается здесь
+    @Column
+    private UUID eventId;
+
+    @Column
+    private Long userId;
+
     @Column(nullable = false)
     private String title;
 
     @Column(nullable = false)
     private String email;
 
+    // Полный снимок события в формате UserEventBinaryCodec, у старых записей отсутствует
+    @Column(length = 4096)
+    private byte[] payload;
+
     @Column(updatable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
@@ -32,5 +46,14 @@ public class PendingKafkaEvent {
 
     @Column
     private boolean processed = false;
+
+    // Время следующей попытки отправки, сдвигается экспоненциально после каждой неудачи
+    @Column
+    private LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+    // Исчерпаны все попытки, событие ждёт ручного повтора через API
+    @ColumnDefault("false")
+    @Column(nullable = false)
+    private boolean deadLetter = false;
 }
 
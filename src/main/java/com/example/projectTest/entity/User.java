@@ -1,10 +1,12 @@
 package com.example.projectTest.entity;
 
+import com.example.projectTest.sharding.ShardedIdentity;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.Instant;
@@ -17,8 +19,9 @@ import java.time.Instant;
 @Table(name = "users")
 public class User {
 
+    // identity-колонка; при шардировании id с номером бакета назначается до вставки
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @ShardedIdentity
     private Long id;
 
     @Column(nullable = false)
@@ -33,4 +36,10 @@ public class User {
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private Instant createdAt;
+
+    // Растёт с каждым изменением, передаётся потребителям в UserEvent
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.example.projectTest.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Email пользователя, живущего в другом бакете.
+ * <p>
+ * При шардировании пользователь остаётся в бакете, вычисленном по email при создании
+ * (он записан в id). Если email потом сменился на адрес из другого бакета, на шарде этого
+ * бакета хранится запись-заявка: по ней находится пользователь и проверяется уникальность email.
+ */
+@Entity
+@Table(name = "user_email_claims")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserEmailClaim {
+
+    @Id
+    private String email;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    // бакет email, по нему заявки переносятся вместе с бакетом
+    @Column(nullable = false)
+    private Integer bucket;
+}
@@ -0,0 +1,11 @@
+package com.example.projectTest.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Данные пользователя переносятся на другой шард.")
+public class ShardMovingException extends RuntimeException {
+    public ShardMovingException() {
+        super("Данные пользователя переносятся на другой шард, повторите запрос позже.");
+    }
+}
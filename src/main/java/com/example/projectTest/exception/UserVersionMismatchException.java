@@ -0,0 +1,11 @@
+package com.example.projectTest.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.PRECONDITION_FAILED, reason = "Версия пользователя не совпадает с If-Match.")
+public class UserVersionMismatchException extends RuntimeException {
+    public UserVersionMismatchException() {
+        super("Пользователь был изменён после чтения, получите актуальную версию и повторите запрос.");
+    }
+}
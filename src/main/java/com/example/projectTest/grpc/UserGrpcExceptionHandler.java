@@ -0,0 +1,44 @@
+package com.example.projectTest.grpc;
+
+import com.example.projectTest.exception.DuplicateEmailException;
+import com.example.projectTest.exception.ShardMovingException;
+import com.example.projectTest.exception.UserNotFoundException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.grpc.Status;
+import io.grpc.StatusException;
+import io.grpc.StatusRuntimeException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.grpc.server.exception.GrpcExceptionHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.Collectors;
+
+/**
+ * Статусы gRPC для исключений сервиса - те же случаи, что GlobalExceptionHandler переводит в HTTP-коды.
+ */
+@Component
+@Slf4j
+public class UserGrpcExceptionHandler implements GrpcExceptionHandler {
+    @Override
+    public StatusException handleException(Throwable exception) {
+        Status status = switch (exception) {
+            case StatusRuntimeException statusException -> statusException.getStatus();
+            case UserNotFoundException e -> Status.NOT_FOUND.withDescription(e.getMessage());
+            case DuplicateEmailException e -> Status.ALREADY_EXISTS.withDescription(e.getMessage());
+            case ConstraintViolationException e -> Status.INVALID_ARGUMENT.withDescription(e.getConstraintViolations()
+                    .stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+            case BulkheadFullException e -> Status.UNAVAILABLE.withDescription(e.getMessage());
+            case ShardMovingException e -> Status.UNAVAILABLE.withDescription(e.getMessage());
+            default -> {
+                log.error("Ошибка при обработке gRPC-вызова", exception);
+                yield Status.INTERNAL.withDescription(exception.getMessage());
+            }
+        };
+        return status.asException();
+    }
+}
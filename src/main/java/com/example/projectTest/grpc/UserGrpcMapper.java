@@ -0,0 +1,33 @@
+package com.example.projectTest.grpc;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UserDto;
+import com.example.projectTest.grpc.proto.CreateUserRequest;
+import com.example.projectTest.grpc.proto.User;
+import com.google.protobuf.Timestamp;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserGrpcMapper {
+    public User toUser(UserDto userDto) {
+        User.Builder user = User.newBuilder()
+                .setId(userDto.getId())
+                .setEmail(userDto.getEmail())
+                .setName(userDto.getName())
+                .setAge(userDto.getAge());
+        if (userDto.getCreatedAt() != null) {
+            user.setCreatedAt(Timestamp.newBuilder()
+                    .setSeconds(userDto.getCreatedAt().getEpochSecond())
+                    .setNanos(userDto.getCreatedAt().getNano()));
+        }
+        return user.build();
+    }
+
+    public CreateUserDto toCreateUserDto(CreateUserRequest request) {
+        return CreateUserDto.builder()
+                .email(request.getEmail())
+                .name(request.getName())
+                .age(request.hasAge() ? request.getAge() : null)
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.projectTest.grpc;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UserDto;
+import com.example.projectTest.exception.UserNotFoundException;
+import com.example.projectTest.grpc.proto.CreateUserRequest;
+import com.example.projectTest.grpc.proto.GetUserByEmailRequest;
+import com.example.projectTest.grpc.proto.GetUserByIdRequest;
+import com.example.projectTest.grpc.proto.User;
+import com.example.projectTest.grpc.proto.UserLookup;
+import com.example.projectTest.grpc.proto.UserLookupResult;
+import com.example.projectTest.grpc.proto.UsersGrpc;
+import com.example.projectTest.service.UserService;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.grpc.server.service.GrpcService;
+
+import java.util.Set;
+
+/**
+ * gRPC API для сервисов с большим объёмом поиска: по id, по email, потоковый
+ * multi-get и создание. Работает поверх того же UserService, что и UserController,
+ * поэтому bulkhead, кэш снимков, шардирование и события те же.
+ * <p>
+ * Сервер - Netty на spring.grpc.server.port, HTTP/2: один канал клиента мультиплексирует
+ * любое число одновременных вызовов. Исключения сервиса переводит в статусы gRPC
+ * UserGrpcExceptionHandler.
+ */
+@GrpcService
+@Slf4j
+@RequiredArgsConstructor
+public class UserGrpcService extends UsersGrpc.UsersImplBase {
+
+    private final UserService userService;
+
+    private final UserGrpcMapper userGrpcMapper;
+
+    private final Validator validator;
+
+    @Override
+    public void getById(GetUserByIdRequest request, StreamObserver<User> responseObserver) {
+        responseObserver.onNext(userGrpcMapper.toUser(userService.findById(request.getId())));
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getByEmail(GetUserByEmailRequest request, StreamObserver<User> responseObserver) {
+        responseObserver.onNext(userGrpcMapper.toUser(userService.findByEmail(request.getEmail())));
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public StreamObserver<UserLookup> getMany(StreamObserver<UserLookupResult> responseObserver) {
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(UserLookup lookup) {
+                responseObserver.onNext(lookup(lookup));
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.warn("Клиент прервал поток GetMany: {}", Status.fromThrowable(t));
+            }
+
+            @Override
+            public void onCompleted() {
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
+    @Override
+    public void create(CreateUserRequest request, StreamObserver<User> responseObserver) {
+        CreateUserDto createUserDto = userGrpcMapper.toCreateUserDto(request);
+        Set<ConstraintViolation<CreateUserDto>> violations = validator.validate(createUserDto);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+        responseObserver.onNext(userGrpcMapper.toUser(userService.create(createUserDto)));
+        responseObserver.onCompleted();
+    }
+
+    private UserLookupResult lookup(UserLookup lookup) {
+        UserLookupResult.Builder result = UserLookupResult.newBuilder().setLookup(lookup);
+        try {
+            UserDto user = switch (lookup.getKeyCase()) {
+                case ID -> userService.findById(lookup.getId());
+                case EMAIL -> userService.findByEmail(lookup.getEmail());
+                case KEY_NOT_SET -> throw Status.INVALID_ARGUMENT
+                        .withDescription("В запросе не указан ни id, ни email")
+                        .asRuntimeException();
+            };
+            return result.setFound(true).setUser(userGrpcMapper.toUser(user)).build();
+        } catch (UserNotFoundException e) {
+            return result.setFound(false).build();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.projectTest.idempotency;
+
+import com.example.projectTest.entity.IdempotencyRecord;
+import com.example.projectTest.repository.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Хранилище ответов по ключу Idempotency-Key: ограниченный по размеру LRU-кэш в памяти поверх таблицы
+ * idempotency_keys. Записи живут idempotency.ttl.
+ * <p>
+ * Первый запрос с ключом захватывает его - в памяти узла и строкой в БД для остальных узлов.
+ * Параллельные запросы с тем же ключом ждут его завершения не дольше idempotency.wait-timeout
+ * и получают сохранённый ответ. Захват, не завершённый за idempotency.claim-timeout
+ * (узел упал посреди запроса), считается брошенным и перехватывается.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    private static final long DB_POLL_INTERVAL_MS = 50;
+
+    private final IdempotencyRecordRepository repository;
+
+    private final Map<String, StoredResponse> cache;
+
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${idempotency.ttl:PT24H}")
+    private Duration ttl;
+
+    @Value("${idempotency.wait-timeout:PT10S}")
+    private Duration waitTimeout;
+
+    @Value("${idempotency.claim-timeout:PT1M}")
+    private Duration claimTimeout;
+
+    public IdempotencyStore(IdempotencyRecordRepository repository,
+                            @Value("${idempotency.max-entries:10000}") int maxEntries) {
+        this.repository = repository;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    public sealed interface Claim {
+    }
+
+    // Ключ захвачен: запрос нужно выполнить и вызвать complete или release
+    public record Owner() implements Claim {
+    }
+
+    public record Replay(StoredResponse response) implements Claim {
+    }
+
+    // Ключ уже использован с другим запросом
+    public record Mismatch() implements Claim {
+    }
+
+    // Запрос с этим ключом ещё выполняется и не завершился за время ожидания
+    public record Busy() implements Claim {
+    }
+
+    public Claim begin(String key, String requestHash) throws InterruptedException {
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        while (true) {
+            StoredResponse cached = cache.get(key);
+            if (cached != null && !cached.isExpired(Instant.now())) {
+                return replayOrMismatch(cached, requestHash);
+            }
+
+            CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(key, new CompletableFuture<>());
+            if (running != null) {
+                StoredResponse response = awaitLocal(running, deadline);
+                if (response != null) {
+                    return replayOrMismatch(response, requestHash);
+                }
+                if (System.nanoTime() >= deadline) {
+                    return new Busy();
+                }
+                continue;
+            }
+
+            Claim claim;
+            try {
+                claim = claimInDatabase(key, requestHash, deadline);
+            } catch (RuntimeException | InterruptedException e) {
+                // иначе ключ остаётся занятым навсегда, и ожидающие на этом узле получают Busy до таймаута
+                inFlight.remove(key).complete(null);
+                throw e;
+            }
+            if (!(claim instanceof Owner)) {
+                StoredResponse response = claim instanceof Replay replay ? replay.response() : null;
+                inFlight.remove(key).complete(response);
+            }
+            return claim;
+        }
+    }
+
+    public void complete(String key, StoredResponse response) {
+        try {
+            IdempotencyRecord record = repository.findById(key).orElseThrow();
+            record.setStatus(response.status());
+            record.setContentType(response.contentType());
+            record.setBody(response.body());
+            record.setExpiresAt(response.expiresAt());
+            repository.save(record);
+            cache.put(key, response);
+        } finally {
+            CompletableFuture<StoredResponse> future = inFlight.remove(key);
+            if (future != null) {
+                future.complete(response);
+            }
+        }
+    }
+
+    /**
+     * Освобождает ключ без сохранения ответа (ошибка сервера): повтор запроса выполнится заново.
+     */
+    public void release(String key) {
+        try {
+            repository.deleteById(key);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось освободить ключ идемпотентности {}: {}", key, e.getMessage());
+        } finally {
+            CompletableFuture<StoredResponse> future = inFlight.remove(key);
+            if (future != null) {
+                future.complete(null);
+            }
+        }
+    }
+
+    public StoredResponse response(String requestHash, int status, String contentType, byte[] body) {
+        return new StoredResponse(requestHash, status, contentType, body, Instant.now().plus(ttl));
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-interval-ms:3600000}")
+    public void cleanupExpired() {
+        int deleted = repository.deleteExpired(Instant.now());
+        log.info("Удалено просроченных ключей идемпотентности: {}", deleted);
+    }
+
+    private Claim claimInDatabase(String key, String requestHash, long deadline) throws InterruptedException {
+        while (true) {
+            Optional<IdempotencyRecord> existing = repository.findById(key);
+            Instant now = Instant.now();
+            if (existing.isEmpty()) {
+                if (tryInsert(key, requestHash, now)) {
+                    return new Owner();
+                }
+                continue;
+            }
+
+            IdempotencyRecord record = existing.get();
+            boolean abandoned = record.getStatus() == null
+                    && record.getCreatedAt().plus(claimTimeout).isBefore(now);
+            if (record.getExpiresAt().isBefore(now) || abandoned) {
+                repository.delete(record);
+                continue;
+            }
+            if (record.getStatus() != null) {
+                StoredResponse response = new StoredResponse(record.getRequestHash(), record.getStatus(),
+                        record.getContentType(), record.getBody(), record.getExpiresAt());
+                cache.put(key, response);
+                return replayOrMismatch(response, requestHash);
+            }
+            if (!record.getRequestHash().equals(requestHash)) {
+                return new Mismatch();
+            }
+            // Ключ захвачен другим узлом - ждём, пока он сохранит ответ
+            if (System.nanoTime() >= deadline) {
+                return new Busy();
+            }
+            Thread.sleep(DB_POLL_INTERVAL_MS);
+        }
+    }
+
+    private boolean tryInsert(String key, String requestHash, Instant now) {
+        try {
+            repository.saveAndFlush(new IdempotencyRecord(key, requestHash, null, null, null,
+                    now, now.plus(ttl), true));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private StoredResponse awaitLocal(CompletableFuture<StoredResponse> running, long deadline)
+            throws InterruptedException {
+        try {
+            return running.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return null;
+        }
+    }
+
+    private static Claim replayOrMismatch(StoredResponse response, String requestHash) {
+        return response.requestHash().equals(requestHash) ? new Replay(response) : new Mismatch();
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.projectTest.idempotency;
+
+import java.time.Instant;
+
+/**
+ * Ответ, сохранённый под ключом идемпотентности и отдаваемый при повторе запроса.
+ */
+public record StoredResponse(String requestHash, int status, String contentType, byte[] body, Instant expiresAt) {
+
+    boolean isExpired(Instant now) {
+        return expiresAt.isBefore(now);
+    }
+}
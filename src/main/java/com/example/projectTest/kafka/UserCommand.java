@@ -0,0 +1,33 @@
+package com.example.projectTest.kafka;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Команда над пользователем из топика user-commands.
+ * <p>
+ * CREATE - email, name и age обязательны; UPDATE - userId и изменяемые поля (null - не менять);
+ * DELETE - только userId. commandId возвращается в результате, по нему отправитель
+ * сопоставляет ответы со своими командами.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserCommand {
+
+    public enum Type {
+        CREATE, UPDATE, DELETE
+    }
+
+    private UUID commandId;
+    private Type type;
+    private Long userId;
+    private String email;
+    private String name;
+    private Integer age;
+}
@@ -0,0 +1,48 @@
+package com.example.projectTest.kafka;
+
+import com.example.projectTest.service.UserCommandProcessor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Потребитель топика user-commands для массовых операций над пользователями.
+ * <p>
+ * Каждый poll обрабатывается целиком как одна пачка, результат каждой команды уходит
+ * в топик ответов с ключом исходной записи. Смещения фиксируются после того, как брокер
+ * подтвердил все ответы пачки: при сбое пачка будет прочитана повторно (at-least-once),
+ * отправитель сопоставляет ответы по commandId.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "user-commands.enabled", havingValue = "true")
+public class UserCommandListener {
+
+    private final UserCommandProcessor userCommandProcessor;
+
+    private final KafkaTemplate<String, UserCommandResult> userCommandResultKafkaTemplate;
+
+    @Value("${user-commands.reply-topic:user-command-results}")
+    private String replyTopic;
+
+    @KafkaListener(topics = "${user-commands.topic:user-commands}", containerFactory = "userCommandListenerContainerFactory")
+    public void onCommands(List<ConsumerRecord<String, UserCommand>> records) {
+        List<UserCommandResult> results = userCommandProcessor.apply(records.stream().map(ConsumerRecord::value).toList());
+
+        CompletableFuture<?>[] replies = new CompletableFuture<?>[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            replies[i] = userCommandResultKafkaTemplate.send(replyTopic, records.get(i).key(), results.get(i));
+        }
+        CompletableFuture.allOf(replies).join();
+        log.debug("Обработана пачка команд: {}", records.size());
+    }
+}
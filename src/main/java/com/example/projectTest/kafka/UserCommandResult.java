@@ -0,0 +1,39 @@
+package com.example.projectTest.kafka;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Результат одной команды, публикуется в топик ответов с ключом исходной записи.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserCommandResult {
+
+    public enum Status {
+        OK, NOT_FOUND, DUPLICATE_EMAIL, INVALID, FAILED
+    }
+
+    private UUID commandId;
+    private UserCommand.Type type;
+    private Status status;
+    private Long userId;
+    private String message;
+
+    public static UserCommandResult ok(UserCommand command, Long userId) {
+        return new UserCommandResult(command.getCommandId(), command.getType(), Status.OK, userId, null);
+    }
+
+    public static UserCommandResult rejected(UserCommand command, Status status, String message) {
+        if (command == null) {
+            return new UserCommandResult(null, null, status, null, message);
+        }
+        return new UserCommandResult(command.getCommandId(), command.getType(), status, command.getUserId(), message);
+    }
+}
@@ -5,12 +5,36 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Событие об изменении пользователя с полным снимком его данных.
+ * <p>
+ * version - версия сущности User, монотонно растёт с каждым изменением,
+ * по ней потребители отбрасывают устаревшие события при ведении локальной копии.
+ * changedFields - битовая маска изменённых полей, заполняется для UPDATED.
+ * eventId - постоянный идентификатор события, передаётся в заголовке event-id
+ * и не меняется при повторных отправках, по нему потребители отбрасывают дубликаты.
+ */
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class UserEvent {
 
+    public static final int EMAIL_CHANGED = 1;
+    public static final int NAME_CHANGED = 1 << 1;
+    public static final int AGE_CHANGED = 1 << 2;
+
+    private UUID eventId;
     private String title;
     private String email;
+    private Long userId;
+    private String name;
+    private Integer age;
+    private Instant createdAt;
+    private Long version;
+    private Instant timestamp;
+    private int changedFields;
 }
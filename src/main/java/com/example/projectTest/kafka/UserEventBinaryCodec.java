@@ -0,0 +1,216 @@
+package com.example.projectTest.kafka;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+/**
+ * Компактный бинарный формат UserEvent.
+ * <p>
+ * Первый байт - версия схемы, далее поля в фиксированном порядке без имён.
+ * Тип события кодируется одним байтом, строки - длиной в varint и байтами UTF-8
+ * (длина хранится со сдвигом на 1, 0 означает null), числа и время (микросекунды epoch) -
+ * zigzag-varint со сдвигом на 1.
+ * <p>
+ * Версия 1: тип события и email. Версия 2 добавляет полный снимок пользователя:
+ * id, имя, возраст, дату создания, версию сущности, время события и маску изменённых полей.
+ * Записываем всегда последнюю версию, читаем обе.
+ * eventId в формат не входит: он передаётся заголовком event-id и хранится отдельной колонкой.
+ */
+public final class UserEventBinaryCodec {
+
+    public static final byte SCHEMA_VERSION_1 = 1;
+    public static final byte SCHEMA_VERSION_2 = 2;
+
+    private static final String[] KNOWN_TITLES = {null, "CREATED", "UPDATED", "DELETED"};
+    private static final int CUSTOM_TITLE = 0;
+
+    private UserEventBinaryCodec() {
+    }
+
+    public static byte[] encode(UserEvent event) {
+        Writer writer = new Writer(64);
+        writer.writeByte(SCHEMA_VERSION_2);
+        int titleCode = titleCode(event.getTitle());
+        writer.writeByte(titleCode);
+        if (titleCode == CUSTOM_TITLE) {
+            writer.writeString(event.getTitle());
+        }
+        writer.writeString(event.getEmail());
+        writer.writeOptionalLong(event.getUserId());
+        writer.writeString(event.getName());
+        writer.writeOptionalLong(event.getAge() == null ? null : event.getAge().longValue());
+        writer.writeInstant(event.getCreatedAt());
+        writer.writeOptionalLong(event.getVersion());
+        writer.writeInstant(event.getTimestamp());
+        writer.writeVarint(event.getChangedFields());
+        return writer.toByteArray();
+    }
+
+    public static UserEvent decode(byte[] data) {
+        Reader reader = new Reader(data);
+        byte version = reader.readByte();
+        if (version != SCHEMA_VERSION_1 && version != SCHEMA_VERSION_2) {
+            throw new SerializationException("Неподдерживаемая версия схемы UserEvent: " + version);
+        }
+        int titleCode = reader.readByte();
+        UserEvent event = UserEvent.builder()
+                .title(titleCode == CUSTOM_TITLE ? reader.readString() : knownTitle(titleCode))
+                .email(reader.readString())
+                .build();
+        if (version == SCHEMA_VERSION_2) {
+            event.setUserId(reader.readOptionalLong());
+            event.setName(reader.readString());
+            Long age = reader.readOptionalLong();
+            event.setAge(age == null ? null : Math.toIntExact(age));
+            event.setCreatedAt(reader.readInstant());
+            event.setVersion(reader.readOptionalLong());
+            event.setTimestamp(reader.readInstant());
+            event.setChangedFields(Math.toIntExact(reader.readVarint()));
+        }
+        return event;
+    }
+
+    private static int titleCode(String title) {
+        for (int code = 1; code < KNOWN_TITLES.length; code++) {
+            if (KNOWN_TITLES[code].equals(title)) {
+                return code;
+            }
+        }
+        return CUSTOM_TITLE;
+    }
+
+    private static String knownTitle(int code) {
+        if (code <= 0 || code >= KNOWN_TITLES.length) {
+            throw new SerializationException("Неизвестный код типа события: " + code);
+        }
+        return KNOWN_TITLES[code];
+    }
+
+    static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static final class Writer {
+        private byte[] buffer;
+        private int position;
+
+        Writer(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(varintSize(value));
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeOptionalLong(Long value) {
+            writeVarint(value == null ? 0 : zigzag(value) + 1);
+        }
+
+        void writeInstant(Instant value) {
+            writeOptionalLong(value == null ? null : ChronoUnit.MICROS.between(Instant.EPOCH, value));
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1L);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensureCapacity(int size) {
+            if (position + size > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + size));
+            }
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    static final class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        byte readByte() {
+            ensureAvailable(1);
+            return buffer[position++];
+        }
+
+        long readVarint() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new SerializationException("Некорректное varint-значение в UserEvent");
+        }
+
+        Long readOptionalLong() {
+            long value = readVarint();
+            if (value == 0) {
+                return null;
+            }
+            long zigzag = value - 1;
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        Instant readInstant() {
+            Long micros = readOptionalLong();
+            return micros == null ? null : Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+        }
+
+        String readString() {
+            long length = readVarint();
+            if (length == 0) {
+                return null;
+            }
+            int size = Math.toIntExact(length - 1);
+            ensureAvailable(size);
+            String value = new String(buffer, position, size, StandardCharsets.UTF_8);
+            position += size;
+            return value;
+        }
+
+        private void ensureAvailable(int size) {
+            if (size < 0 || position + size > buffer.length) {
+                throw new SerializationException("Неожиданный конец данных UserEvent");
+            }
+        }
+    }
+}
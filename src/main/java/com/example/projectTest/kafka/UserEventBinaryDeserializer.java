@@ -0,0 +1,14 @@
+package com.example.projectTest.kafka;
+
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Десериализатор UserEvent из бинарного формата {@link UserEventBinaryCodec} для потребителей.
+ */
+public class UserEventBinaryDeserializer implements Deserializer<UserEvent> {
+
+    @Override
+    public UserEvent deserialize(String topic, byte[] data) {
+        return data == null ? null : UserEventBinaryCodec.decode(data);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.projectTest.kafka;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Сериализатор UserEvent в компактный бинарный формат {@link UserEventBinaryCodec}.
+ */
+public class UserEventBinarySerializer implements Serializer<UserEvent> {
+
+    @Override
+    public byte[] serialize(String topic, UserEvent data) {
+        return data == null ? null : UserEventBinaryCodec.encode(data);
+    }
+}
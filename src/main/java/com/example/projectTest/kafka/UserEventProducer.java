@@ -2,31 +2,120 @@ package com.example.projectTest.kafka;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class UserEventProducer {
 
+    // Заголовок с постоянным id события, по нему потребители отбрасывают повторные доставки
+    public static final String EVENT_ID_HEADER = "event-id";
+
     private final KafkaTemplate<String, UserEvent> kafkaTemplate;
 
+    @Value("${user-events-topic-name:user-events-topic}")
+    private String topicName;
+
+    // Отправленные, но ещё не подтверждённые брокером события
+    private final Map<CompletableFuture<SendResult<String, UserEvent>>, UserEvent> inFlight = new ConcurrentHashMap<>();
+
+    // После начала остановки неудачные отправки не забываются, а возвращаются из awaitInFlight
+    private volatile boolean draining;
+
+    /**
+     * Ключ записи - id пользователя: все события пользователя попадают в одну партицию
+     * и сохраняют порядок, даже если email изменился. Для старых событий без id ключом остаётся email.
+     */
+    public void send(UserEvent event) {
+        log.info("Отправка пользовательского события: {}", event.getTitle());
+        CompletableFuture<SendResult<String, UserEvent>> future = kafkaTemplate.send(toRecord(topicName, event));
+        inFlight.put(future, event);
+        future.whenComplete((result, exception) -> {
+            if (exception != null) {
+                log.error("Не удалось отправить сообщение : {}", exception.getMessage());
+                if (!draining) {
+                    inFlight.remove(future);
+                }
+            } else {
+                inFlight.remove(future);
+                log.info("Сообщение успешно отправлено offset : {}", result.getRecordMetadata().offset());
+            }
+        });
+    }
+
+    /**
+     * Ожидание подтверждений при остановке узла: буфер KafkaTemplate сбрасывается, и до timeout
+     * ждутся ack всех отправленных событий. Возвращает события без подтверждения (не дождались
+     * или брокер ответил ошибкой), чтобы их можно было сохранить для повторной отправки.
+     * Вызывается, когда источники новых событий уже остановлены.
+     */
+    public InFlightSends awaitInFlight(Duration timeout) {
+        draining = true;
+        List<CompletableFuture<SendResult<String, UserEvent>>> pending = List.copyOf(inFlight.keySet());
+        if (!pending.isEmpty()) {
+            // flush() ждёт без ограничения по времени, поэтому срок отсчитывается по самим подтверждениям
+            Thread.ofVirtual().name("user-events-flush").start(() -> {
+                try {
+                    kafkaTemplate.flush();
+                } catch (Exception e) {
+                    log.warn("Не удалось сбросить буфер отправки событий: {}", e.getMessage());
+                }
+            });
+            try {
+                CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new))
+                        .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                // неподтверждённые остаются в inFlight
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<UserEvent> unacknowledged = new ArrayList<>(inFlight.values());
+        inFlight.clear();
+        return new InFlightSends(pending.size() - unacknowledged.size(), unacknowledged);
+    }
+
+    /**
+     * Отправка с ожиданием подтверждения брокера. Используется при повторной отправке
+     * отложенных событий: запись помечается обработанной только после ack.
+     */
+    public SendResult<String, UserEvent> sendAndAwait(UserEvent event, Duration timeout)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        SendResult<String, UserEvent> result = kafkaTemplate.send(toRecord(topicName, event))
+                .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Событие {} подтверждено брокером, offset : {}",
+                event.getEventId(), result.getRecordMetadata().offset());
+        return result;
+    }
+
+    public static ProducerRecord<String, UserEvent> toRecord(String topic, UserEvent event) {
+        String key = event.getUserId() != null ? String.valueOf(event.getUserId()) : event.getEmail();
+        ProducerRecord<String, UserEvent> record = new ProducerRecord<>(topic, key, event);
+        if (event.getEventId() != null) {
+            record.headers().add(EVENT_ID_HEADER, event.getEventId().toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return record;
+    }
 
-    public void send(String title, String email) {
-        log.info("Отправка пользовательского события: {}", title);
-        UserEvent event = UserEvent.builder()
-                .title(title)
-                .email(email)
-                .build();
-
-        kafkaTemplate.send("user-events-topic", email, event)
-                .whenComplete((result, exception) -> {
-                    if (exception != null) {
-                        log.error("Не удалось отправить сообщение : {}", exception.getMessage());
-                    } else {
-                        log.info("Сообщение успешно отправлено offset : {}", result.getRecordMetadata().offset());
-                    }
-                });
+    /**
+     * Итог ожидания отправок при остановке: сколько событий подтверждено и какие остались без ack.
+     */
+    public record InFlightSends(int acknowledged, List<UserEvent> unacknowledged) {
     }
 }
@@ -0,0 +1,53 @@
+package com.example.projectTest.kafka;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Распределяет события по партициям по id пользователя.
+ * <p>
+ * Все события одного пользователя попадают в одну партицию, поэтому их порядок сохраняется,
+ * даже если у пользователя меняется email. Последовательные id распределяются равномерно.
+ * Нечисловые ключи (старые события, ключом которых был email) хэшируются как в стандартном партиционере.
+ */
+public class UserIdPartitioner implements Partitioner {
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+        int partitions = cluster.partitionCountForTopic(topic);
+        if (keyBytes == null) {
+            return ThreadLocalRandom.current().nextInt(partitions);
+        }
+        Long userId = parseUserId(key);
+        if (userId != null) {
+            return (int) Math.floorMod(userId, (long) partitions);
+        }
+        return Utils.toPositive(Utils.murmur2(keyBytes)) % partitions;
+    }
+
+    private Long parseUserId(Object key) {
+        if (key instanceof Long id) {
+            return id;
+        }
+        if (key instanceof String value && !value.isEmpty() && value.chars().allMatch(Character::isDigit)) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.projectTest.limiter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Адаптивный лимит одновременных запросов в стиле TCP Vegas.
+ * <p>
+ * По времени ответа без нагрузки (rttNoLoad) и текущему оценивается, сколько запросов стоит в очереди
+ * (потоки Tomcat, пул Hikari): queue = limit * (1 - rttNoLoad / rtt). Пока очередь меньше alpha,
+ * лимит растёт, когда больше beta - уменьшается; alpha и beta растут логарифмически от лимита.
+ * <p>
+ * rttNoLoad - минимальное время ответа. Вверх оно пересчитывается только когда лимит выбран меньше
+ * чем наполовину: под постоянной перегрузкой задержка очереди не становится новой нормой.
+ * Если лимит не выбран наполовину, он не меняется - по такой нагрузке нельзя судить о пропускной способности.
+ * Отброшенные запросы (ошибки перегрузки) уменьшают лимит.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double NO_LOAD_RTT_ALPHA = 0.05;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile double limit;
+    private double rttNoLoad;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Некорректные границы лимита: " + minLimit + " <= " + initialLimit + " <= " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void onSuccess(long rttNanos) {
+        int inflightAtCompletion = inflight.getAndDecrement();
+        update(rttNanos, inflightAtCompletion);
+    }
+
+    public void onDropped() {
+        inflight.decrementAndGet();
+        synchronized (this) {
+            limit = Math.max(minLimit, limit - Math.max(1, Math.log10(limit)));
+        }
+    }
+
+    private synchronized void update(long rttNanos, int inflightAtCompletion) {
+        if (rttNanos <= 0) {
+            return;
+        }
+        boolean appLimited = inflightAtCompletion * 2 < limit;
+        if (rttNoLoad == 0 || rttNanos < rttNoLoad) {
+            rttNoLoad = rttNanos;
+        } else if (appLimited) {
+            rttNoLoad += (rttNanos - rttNoLoad) * NO_LOAD_RTT_ALPHA;
+        }
+        if (appLimited) {
+            return;
+        }
+
+        double log = Math.max(1, Math.log10(limit));
+        double alpha = 3 * log;
+        double beta = 6 * log;
+        double queue = limit * (1 - rttNoLoad / rttNanos);
+
+        double newLimit = limit;
+        if (queue <= log) {
+            newLimit = limit + beta;
+        } else if (queue < alpha) {
+            newLimit = limit + log;
+        } else if (queue > beta) {
+            newLimit = limit - log;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
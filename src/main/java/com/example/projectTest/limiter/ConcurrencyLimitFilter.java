@@ -0,0 +1,111 @@
+package com.example.projectTest.limiter;
+
+import com.example.projectTest.controllerAdvice.ErrorResponseWriter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Ограничение одновременных запросов к /api/users с отдельными лимитами для чтения и записи.
+ * <p>
+ * Сверх лимита запрос сразу получает 503 с Retry-After, не занимая поток и соединение с БД,
+ * поэтому время ответа принятых запросов остаётся ограниченным и при перегрузке.
+ * Стоит перед остальными фильтрами, чтобы отказ был максимально дешёвым.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(name = "concurrency-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final String PATH_PREFIX = "/api/users";
+
+    private final AdaptiveConcurrencyLimiter readLimiter;
+    private final AdaptiveConcurrencyLimiter writeLimiter;
+    private final ErrorResponseWriter errorResponseWriter;
+    private final String retryAfterSeconds;
+
+    public ConcurrencyLimitFilter(MeterRegistry meterRegistry,
+                                  ErrorResponseWriter errorResponseWriter,
+                                  @Value("${concurrency-limit.read.initial:50}") int readInitial,
+                                  @Value("${concurrency-limit.read.min:10}") int readMin,
+                                  @Value("${concurrency-limit.read.max:500}") int readMax,
+                                  @Value("${concurrency-limit.write.initial:20}") int writeInitial,
+                                  @Value("${concurrency-limit.write.min:5}") int writeMin,
+                                  @Value("${concurrency-limit.write.max:200}") int writeMax,
+                                  @Value("${concurrency-limit.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.errorResponseWriter = errorResponseWriter;
+        this.readLimiter = new AdaptiveConcurrencyLimiter(readInitial, readMin, readMax);
+        this.writeLimiter = new AdaptiveConcurrencyLimiter(writeInitial, writeMin, writeMax);
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+        registerMetrics(meterRegistry, "read", readLimiter);
+        registerMetrics(meterRegistry, "write", writeLimiter);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(PATH_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        AdaptiveConcurrencyLimiter limiter = isRead(request) ? readLimiter : writeLimiter;
+        if (!limiter.tryAcquire()) {
+            reject(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean dropped = true;
+        try {
+            filterChain.doFilter(request, response);
+            // 503 ниже по цепочке (переполненный bulkhead, недоступная БД) - признак перегрузки
+            dropped = response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value();
+        } finally {
+            if (dropped) {
+                limiter.onDropped();
+            } else {
+                limiter.onSuccess(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        errorResponseWriter.write(request, response, HttpStatus.SERVICE_UNAVAILABLE,
+                "Сервис перегружен, повторите запрос позже");
+    }
+
+    private static void registerMetrics(MeterRegistry registry, String workload, AdaptiveConcurrencyLimiter limiter) {
+        Gauge.builder("users.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("workload", workload)
+                .description("Текущий адаптивный лимит одновременных запросов")
+                .register(registry);
+        Gauge.builder("users.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInflight)
+                .tag("workload", workload)
+                .description("Выполняющиеся запросы")
+                .register(registry);
+        FunctionCounter.builder("users.concurrency.rejected", limiter, AdaptiveConcurrencyLimiter::getRejected)
+                .tag("workload", workload)
+                .description("Запросы, отклонённые с 503")
+                .register(registry);
+    }
+}
@@ -3,8 +3,12 @@ package com.example.projectTest.mapper;
 import com.example.projectTest.dto.CreateUserDto;
 import com.example.projectTest.dto.UserDto;
 import com.example.projectTest.entity.User;
+import com.example.projectTest.kafka.UserEvent;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+import java.util.UUID;
+
 @Component
 public class UserMapper {
     public UserDto toUserDto(User user) {
@@ -14,6 +18,7 @@ public class UserMapper {
                 .name(user.getName())
                 .age(user.getAge())
                 .createdAt(user.getCreatedAt())
+                .version(user.getVersion())
                 .build();
     }
 
@@ -24,4 +29,26 @@ public class UserMapper {
                 .age(createUserDto.getAge())
                 .build();
     }
+
+    public UserEvent toUserEvent(User user, String title, int changedFields) {
+        return UserEvent.builder()
+                .eventId(UUID.randomUUID())
+                .title(title)
+                .userId(user.getId())
+                .email(user.getEmail())
+                .name(user.getName())
+                .age(user.getAge())
+                .createdAt(user.getCreatedAt())
+                .version(user.getVersion())
+                .timestamp(Instant.now())
+                .changedFields(changedFields)
+                .build();
+    }
+
+    // Удаление - тоже изменение: версия события больше последней версии сущности
+    public UserEvent toDeletedUserEvent(User user) {
+        UserEvent event = toUserEvent(user, "DELETED", 0);
+        event.setVersion(user.getVersion() == null ? null : user.getVersion() + 1);
+        return event;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.example.projectTest.reactive;
+
+import com.example.projectTest.dto.UserDto;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Неблокирующие аналоги поиска из UserController.
+ * <p>
+ * Mono и Flux Spring MVC обрабатывает асинхронно: поток Tomcat освобождается сразу после
+ * вызова метода, ответ пишется, когда R2DBC вернёт строку. Список в application/x-ndjson
+ * отдаётся потоком по мере чтения, в application/json - одним массивом.
+ */
+@RequiredArgsConstructor
+@RestController
+@RequestMapping(path = "/api/reactive/users")
+@ConditionalOnProperty(name = "reactive-lookup.enabled", havingValue = "true")
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "false", matchIfMissing = true)
+@Tag(name = "Reactive User Lookup", description = "Неблокирующий поиск пользователей через R2DBC")
+public class ReactiveUserController {
+
+    private final ReactiveUserService reactiveUserService;
+
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Получить всех пользователей")
+    public Flux<UserDto> getUsers() {
+        return reactiveUserService.findAll();
+    }
+
+    @GetMapping("{id}")
+    @Operation(summary = "Получить пользователя по ID")
+    public Mono<UserDto> getUser(
+            @Parameter(description = "ID пользователя", example = "1")
+            @PathVariable Long id) {
+        return reactiveUserService.findById(id);
+    }
+
+    @GetMapping("/findByEmail")
+    @Operation(summary = "Найти пользователя по email")
+    public Mono<UserDto> getUserByEmail(
+            @Parameter(description = "Email пользователя", example = "user@example.com")
+            @RequestParam String email) {
+        return reactiveUserService.findByEmail(email);
+    }
+}
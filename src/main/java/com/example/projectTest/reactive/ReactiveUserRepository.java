@@ -0,0 +1,96 @@
+package com.example.projectTest.reactive;
+
+import com.example.projectTest.dto.UserDto;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Readable;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+/**
+ * Чтение users через R2DBC для неблокирующего пути поиска.
+ * <p>
+ * Запись по-прежнему идёт через JPA в UserService, здесь только читаются закоммиченные строки,
+ * поэтому результаты двух стеков совпадают. Строка сразу превращается в UserDto, без сущности
+ * и контекста персистентности. Пул R2DBC свой и не отнимает соединения у Hikari; бином
+ * ConnectionFactory он не публикуется, иначе Spring Boot не создаст DataSource для JPA.
+ * С шардированием не включается: маршрутизация по шардам есть только у JPA-пути.
+ */
+@Repository
+@ConditionalOnProperty(name = "reactive-lookup.enabled", havingValue = "true")
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class ReactiveUserRepository {
+
+    private static final String SELECT = "select id, email, name, age, created_at, version from users";
+
+    private final ConnectionPool connectionPool;
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveUserRepository(@Value("${reactive-lookup.url}") String url,
+                                  @Value("${reactive-lookup.username:${spring.datasource.username:}}") String username,
+                                  @Value("${reactive-lookup.password:${spring.datasource.password:}}") String password,
+                                  @Value("${reactive-lookup.pool.initial-size:2}") int initialSize,
+                                  @Value("${reactive-lookup.pool.max-size:20}") int maxSize,
+                                  @Value("${reactive-lookup.pool.max-acquire-ms:5000}") long maxAcquireMillis) {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+        if (!username.isEmpty()) {
+            options.option(ConnectionFactoryOptions.USER, username);
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .name("reactive-lookup")
+                .initialSize(initialSize)
+                .maxSize(maxSize)
+                .maxAcquireTime(Duration.ofMillis(maxAcquireMillis))
+                .build());
+        this.databaseClient = DatabaseClient.create(connectionPool);
+    }
+
+    public Mono<UserDto> findById(Long id) {
+        return databaseClient.sql(SELECT + " where id = :id")
+                .bind("id", id)
+                .map(ReactiveUserRepository::toUserDto)
+                .one();
+    }
+
+    public Mono<UserDto> findByEmail(String email) {
+        return databaseClient.sql(SELECT + " where email = :email")
+                .bind("email", email)
+                .map(ReactiveUserRepository::toUserDto)
+                .one();
+    }
+
+    public Flux<UserDto> findAll() {
+        return databaseClient.sql(SELECT + " order by id")
+                .map(ReactiveUserRepository::toUserDto)
+                .all();
+    }
+
+    @PreDestroy
+    public void close() {
+        connectionPool.dispose();
+    }
+
+    private static UserDto toUserDto(Readable row) {
+        OffsetDateTime createdAt = row.get("created_at", OffsetDateTime.class);
+        return UserDto.builder()
+                .id(row.get("id", Long.class))
+                .email(row.get("email", String.class))
+                .name(row.get("name", String.class))
+                .age(row.get("age", Integer.class))
+                .createdAt(createdAt == null ? null : createdAt.toInstant())
+                .version(row.get("version", Long.class))
+                .build();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.projectTest.reactive;
+
+import com.example.projectTest.dto.UserDto;
+import com.example.projectTest.exception.EmptyListException;
+import com.example.projectTest.exception.UserNotFoundException;
+import com.example.projectTest.snapshot.UserSnapshotCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Поиск пользователей без блокировки потоков: те же правила, что в UserService
+ * (сначала прогретый UserSnapshotCache, те же исключения при отсутствии), но запрос к БД
+ * идёт через R2DBC и не занимает ни поток Tomcat, ни соединение Hikari на время ожидания.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "reactive-lookup.enabled", havingValue = "true")
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class ReactiveUserService {
+
+    private final ReactiveUserRepository reactiveUserRepository;
+
+    private final UserSnapshotCache userSnapshotCache;
+
+    public Mono<UserDto> findById(Long id) {
+        return Mono.justOrEmpty(userSnapshotCache.findById(id))
+                .switchIfEmpty(Mono.defer(() -> reactiveUserRepository.findById(id)))
+                .switchIfEmpty(Mono.defer(() -> {
+                    log.error("Пользователь с id = {} не найден", id);
+                    return Mono.error(new UserNotFoundException());
+                }));
+    }
+
+    public Mono<UserDto> findByEmail(String email) {
+        return Mono.justOrEmpty(userSnapshotCache.findByEmail(email))
+                .switchIfEmpty(Mono.defer(() -> reactiveUserRepository.findByEmail(email)))
+                .switchIfEmpty(Mono.defer(() -> {
+                    log.error("Пользователь с email = {} не найден", email);
+                    return Mono.error(new UserNotFoundException());
+                }));
+    }
+
+    public Flux<UserDto> findAll() {
+        return reactiveUserRepository.findAll()
+                .switchIfEmpty(Flux.defer(() -> {
+                    log.error("Метод findAll вернул пустой список");
+                    return Flux.error(new EmptyListException());
+                }));
+    }
+}
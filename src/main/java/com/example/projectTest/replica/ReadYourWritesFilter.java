@@ -0,0 +1,93 @@
+package com.example.projectTest.replica;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Read-your-writes для клиентов API при чтении с реплики.
+ * <p>
+ * Изменяющий запрос выставляет cookie со сроком закрепления за primary, и пока срок
+ * не истёк, чтения этого клиента идут на primary и видят только что записанные данные
+ * независимо от отставания реплики. Cookie ставится до обработки запроса, потому что после
+ * неё ответ может быть уже отправлен; закрепление после неудачной записи безвредно.
+ * Состояние хранится у клиента, поэтому работает при любом числе экземпляров сервиса.
+ */
+@Component
+@ConditionalOnProperty(name = {"replica.enabled", "replica.read-your-writes.enabled"}, havingValue = "true")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE_NAME = "primary-pin";
+
+    private static final String PATH_PREFIX = "/api/";
+
+    private final Duration window;
+
+    public ReadYourWritesFilter(@Value("${replica.read-your-writes.window-ms:5000}") long windowMs) {
+        this.window = Duration.ofMillis(windowMs);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(PATH_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (isMutating(request.getMethod())) {
+            long pinnedUntil = System.currentTimeMillis() + window.toMillis();
+            ResponseCookie cookie = ResponseCookie.from(COOKIE_NAME, Long.toString(pinnedUntil))
+                    .path("/")
+                    .maxAge(window.toSeconds() + 1)
+                    .httpOnly(true)
+                    .sameSite("Lax")
+                    .build();
+            response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+        } else if (!isPinned(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        ReplicaDataSource.pinToPrimary();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaDataSource.unpin();
+        }
+    }
+
+    private boolean isPinned(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isMutating(String method) {
+        return switch (method) {
+            case "POST", "PUT", "PATCH", "DELETE" -> true;
+            default -> false;
+        };
+    }
+}
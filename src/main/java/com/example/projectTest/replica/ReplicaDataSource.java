@@ -0,0 +1,97 @@
+package com.example.projectTest.replica;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Источник соединений для read-only транзакций.
+ * <p>
+ * Отдаёт соединение реплики, пока она здорова и текущий поток не закреплён за primary
+ * (read-your-writes после записи клиента). Если реплика не выдала соединение,
+ * она помечается недоступной и запрос уходит на primary; обратно реплика
+ * возвращается только после успешной проверки checkHealth.
+ */
+@Slf4j
+public class ReplicaDataSource extends AbstractDataSource {
+
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+
+    private final DataSource primary;
+
+    private final DataSource replica;
+
+    private final int validationTimeoutSeconds;
+
+    private volatile boolean replicaHealthy = true;
+
+    public ReplicaDataSource(DataSource primary, DataSource replica, int validationTimeoutSeconds) {
+        this.primary = primary;
+        this.replica = replica;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    /**
+     * Закрепляет чтения текущего потока за primary, пока не будет вызван {@link #unpin()}.
+     */
+    public static void pinToPrimary() {
+        PINNED_TO_PRIMARY.set(Boolean.TRUE);
+    }
+
+    public static void unpin() {
+        PINNED_TO_PRIMARY.remove();
+    }
+
+    public static boolean isPinnedToPrimary() {
+        return PINNED_TO_PRIMARY.get() != null;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (replicaHealthy && !isPinnedToPrimary()) {
+            try {
+                return replica.getConnection();
+            } catch (SQLException e) {
+                markReplicaDown(e);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("Учётные данные задаются в настройках пулов primary и реплики");
+    }
+
+    public boolean isReplicaHealthy() {
+        return replicaHealthy;
+    }
+
+    @Scheduled(fixedDelayString = "${replica.health-check-interval-ms:5000}")
+    public void checkHealth() {
+        boolean healthy;
+        try (Connection connection = replica.getConnection()) {
+            healthy = connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            healthy = false;
+        }
+        if (healthy && !replicaHealthy) {
+            log.info("Реплика снова доступна, read-only запросы возвращаются на неё");
+        } else if (!healthy && replicaHealthy) {
+            log.warn("Реплика не прошла проверку, read-only запросы переключены на primary");
+        }
+        replicaHealthy = healthy;
+    }
+
+    private void markReplicaDown(SQLException e) {
+        if (replicaHealthy) {
+            log.warn("Не удалось получить соединение реплики, read-only запросы переключены на primary: {}",
+                    e.getMessage());
+        }
+        replicaHealthy = false;
+    }
+}
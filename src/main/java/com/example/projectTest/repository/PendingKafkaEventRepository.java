@@ -1,6 +1,7 @@
 package com.example.projectTest.repository;
 
 import com.example.projectTest.entity.PendingKafkaEvent;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -13,10 +14,28 @@ import java.util.List;
 
 @Repository
 public interface PendingKafkaEventRepository extends JpaRepository<PendingKafkaEvent, Long> {
-    List<PendingKafkaEvent> findByProcessedFalseAndRetryCountLessThan(int maxRetries);
+
+    // Условие совпадает с частичным индексом idx_pending_kafka_events_due, поэтому читаются только готовые строки
+    @Query("SELECT e FROM PendingKafkaEvent e " +
+            "WHERE e.processed = false AND e.deadLetter = false AND e.nextAttemptAt <= :now " +
+            "ORDER BY e.nextAttemptAt")
+    List<PendingKafkaEvent> findDue(@Param("now") LocalDateTime now, Limit limit);
+
+    @Query("SELECT MIN(e.nextAttemptAt) FROM PendingKafkaEvent e WHERE e.processed = false AND e.deadLetter = false")
+    LocalDateTime findNextAttemptAt();
+
+    @Query("SELECT e.id FROM PendingKafkaEvent e WHERE e.deadLetter = true ORDER BY e.id")
+    List<Long> findDeadLetterIds(Limit limit);
+
+    long countByDeadLetterTrue();
 
     @Modifying
     @Transactional
-    @Query("DELETE FROM PendingKafkaEvent e WHERE e.createdAt < :cutoffDate")
-    void deleteByCreatedAtBefore(@Param("cutoffDate") LocalDateTime cutoffDate);
+    @Query("UPDATE PendingKafkaEvent e SET e.deadLetter = false, e.retryCount = 0, e.nextAttemptAt = :now " +
+            "WHERE e.id IN :ids")
+    int resubmit(@Param("ids") List<Long> ids, @Param("now") LocalDateTime now);
+
+    // Необработанные и dead letter события при очистке не удаляются, иначе они будут потеряны
+    @Query("SELECT e.id FROM PendingKafkaEvent e WHERE e.processed = true AND e.createdAt < :cutoffDate ORDER BY e.id")
+    List<Long> findProcessedIdsBefore(@Param("cutoffDate") LocalDateTime cutoffDate, Limit limit);
 }
@@ -0,0 +1,17 @@
+package com.example.projectTest.repository;
+
+import com.example.projectTest.entity.User;
+
+import java.util.List;
+
+/**
+ * Пакетные операции над users, которых нет у JpaRepository.
+ */
+public interface UserBatchRepository {
+
+    /**
+     * Вставляет пользователей одним JDBC batch и проставляет им id, createdAt и version.
+     * Hibernate не группирует вставки в identity-таблицу, поэтому вставка идёт мимо него.
+     */
+    void insertAll(List<User> users);
+}
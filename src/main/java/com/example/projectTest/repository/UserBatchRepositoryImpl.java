@@ -0,0 +1,60 @@
+package com.example.projectTest.repository;
+
+import com.example.projectTest.entity.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class UserBatchRepositoryImpl implements UserBatchRepository {
+
+    private static final String INSERT = "insert into users (name, email, age, created_at, version) values (?, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        // та же точность, что у timestamp(6) в БД: сущность не отличается от перечитанной
+        Timestamp createdAt = Timestamp.from(Instant.now().truncatedTo(ChronoUnit.MICROS));
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        User user = users.get(i);
+                        ps.setString(1, user.getName());
+                        ps.setString(2, user.getEmail());
+                        ps.setInt(3, user.getAge());
+                        ps.setTimestamp(4, createdAt);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return users.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            // имя колонки ключа зависит от драйвера (ID в H2, id в PostgreSQL)
+            user.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            user.setCreatedAt(createdAt.toInstant());
+            user.setVersion(0L);
+        }
+    }
+}
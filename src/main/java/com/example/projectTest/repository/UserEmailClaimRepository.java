@@ -0,0 +1,9 @@
+package com.example.projectTest.repository;
+
+import com.example.projectTest.entity.UserEmailClaim;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserEmailClaimRepository extends JpaRepository<UserEmailClaim, String> {
+}
@@ -0,0 +1,34 @@
+package com.example.projectTest.service;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Когда circuit breaker отправки в Kafka закрывается, брокер снова доступен -
+ * будим PendingEventProcessor, чтобы накопленные события ушли сразу, а не при следующем опросе.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class KafkaCircuitBreakerListener {
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+
+    private final PendingEventProcessor pendingEventProcessor;
+
+    @PostConstruct
+    void subscribe() {
+        circuitBreakerRegistry.circuitBreaker(UserEventPublisher.CIRCUIT_BREAKER).getEventPublisher()
+                .onStateTransition(event -> {
+                    if (event.getStateTransition().getToState() == CircuitBreaker.State.CLOSED) {
+                        log.info("Circuit breaker {} закрыт, запускаем отправку отложенных событий",
+                                event.getCircuitBreakerName());
+                        pendingEventProcessor.wakeUp();
+                    }
+                });
+    }
+}
@@ -1,48 +1,318 @@
 package com.example.projectTest.service;
 
 import com.example.projectTest.entity.PendingKafkaEvent;
+import com.example.projectTest.kafka.UserEvent;
+import com.example.projectTest.kafka.UserEventBinaryCodec;
 import com.example.projectTest.kafka.UserEventProducer;
 import com.example.projectTest.repository.PendingKafkaEventRepository;
+import com.example.projectTest.snapshot.UserSnapshotPublisher;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class PendingEventProcessor {
 
+    private static final long MIN_WAKE_UP_DELAY_MS = 100;
+
     private final PendingKafkaEventRepository repository;
     private final UserEventProducer eventProducer;
+    private final ObjectProvider<TransactionalPendingEventRelay> transactionalRelay;
+    private final UserSnapshotPublisher userSnapshotPublisher;
+
+    @Value("${pending-events.ack-timeout-ms:10000}")
+    private long ackTimeoutMs;
+
+    @Value("${pending-events.batch-size:100}")
+    private int batchSize;
+
+    @Value("${pending-events.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${pending-events.backoff.initial-ms:5000}")
+    private long backoffInitialMs;
+
+    @Value("${pending-events.backoff.max-ms:1800000}")
+    private long backoffMaxMs;
+
+    @Value("${pending-events.replay-batch-size:100}")
+    private int replayBatchSize;
+
+    // Вся отправка идёт в одном потоке: пробуждения не выполняются параллельно и схлопываются
+    private final ScheduledExecutorService relayExecutor = createRelayExecutor();
+
+    private final AtomicBoolean wakeUpRequested = new AtomicBoolean();
+
+    // Узел останавливается: новые пачки не берутся, недоработанные строки отпускаются
+    private volatile boolean stopping;
+
+    private final AtomicInteger releasedOnStop = new AtomicInteger();
+
+    // Отложенное пробуждение к ближайшему next_attempt_at, меняется только в потоке отправки
+    private ScheduledFuture<?> delayedWakeUp;
+
+    /**
+     * Запускает отправку отложенных событий в фоне. Повторные вызовы до начала обработки схлопываются в один.
+     */
+    public void wakeUp() {
+        if (stopping) {
+            return;
+        }
+        if (wakeUpRequested.compareAndSet(false, true)) {
+            relayExecutor.execute(this::relay);
+        }
+    }
+
+    // Отложенное событие записано: отправляем после commit, чтобы поток отправки его увидел
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPendingEventSaved(PendingEventSavedEvent event) {
+        wakeUp();
+    }
+
+    // Страховочный опрос: подбирает события, записанные другими экземплярами сервиса
+    @Scheduled(fixedDelayString = "${pending-events.poll-interval-ms:60000}")
+    public void pollPendingEvents() {
+        wakeUp();
+    }
+
+    /**
+     * Остановка отправки при выключении узла. Новые пробуждения не принимаются, текущая пачка
+     * дожидается ack события, которое уже отправлено, а её оставшиеся строки не трогаются
+     * и сразу доступны другим узлам. Если отправка не завершилась за три четверти timeout,
+     * поток прерывается, и остаток срока отводится на выход из прерванной отправки;
+     * прерванное событие тоже возвращается в очередь без учёта попытки. Весь вызов укладывается в timeout.
+     * Возвращает число строк, отпущенных без отправки.
+     */
+    public int drain(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        stopping = true;
+        relayExecutor.shutdown();
+        try {
+            if (!relayExecutor.awaitTermination(timeout.toNanos() * 3 / 4, TimeUnit.NANOSECONDS)) {
+                log.warn("Отправка отложенных событий не завершилась за {} мс, прерываем", timeout.toMillis() * 3 / 4);
+                relayExecutor.shutdownNow();
+                if (!relayExecutor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    log.warn("Поток отправки отложенных событий не остановился за {} мс", timeout.toMillis());
+                }
+            }
+        } catch (InterruptedException e) {
+            relayExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        return releasedOnStop.get();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        relayExecutor.shutdownNow();
+    }
+
+    private static ScheduledExecutorService createRelayExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                Thread.ofPlatform().name("pending-events-relay").daemon().factory());
+        // отложенное пробуждение к next_attempt_at не должно задерживать остановку
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        return executor;
+    }
+
+    private void relay() {
+        wakeUpRequested.set(false);
+        if (stopping) {
+            return;
+        }
+        try {
+            processPendingEvents();
+            scheduleNextWakeUp();
+        } catch (Exception e) {
+            log.error("Ошибка при обработке отложенных событий Kafka", e);
+        }
+    }
+
+    private void scheduleNextWakeUp() {
+        if (delayedWakeUp != null) {
+            delayedWakeUp.cancel(false);
+            delayedWakeUp = null;
+        }
+        if (stopping) {
+            return;
+        }
+        LocalDateTime nextAttemptAt = repository.findNextAttemptAt();
+        if (nextAttemptAt == null) {
+            return;
+        }
+        long delayMs = Math.max(MIN_WAKE_UP_DELAY_MS, Duration.between(LocalDateTime.now(), nextAttemptAt).toMillis());
+        delayedWakeUp = relayExecutor.schedule(this::wakeUp, delayMs, TimeUnit.MILLISECONDS);
+    }
 
-    @Scheduled(fixedDelay = 30000) // Каждые 30 секунд
+    /**
+     * Читаются только строки, время следующей попытки которых наступило, пачками по batch-size.
+     * Неудачные попытки откладываются экспоненциально, после max-attempts событие уходит в dead letter.
+     */
     public void processPendingEvents() {
         log.info("Начинаем обработку отложенных событий Kafka");
 
-        List<PendingKafkaEvent> pendingEvents = repository.findByProcessedFalseAndRetryCountLessThan(5);
+        List<PendingKafkaEvent> pendingEvents;
+        do {
+            pendingEvents = repository.findDue(LocalDateTime.now(), Limit.of(batchSize));
+            if (pendingEvents.isEmpty()) {
+                return;
+            }
+            processBatch(pendingEvents);
+        } while (pendingEvents.size() >= batchSize && !stopping);
+    }
+
+    private void processBatch(List<PendingKafkaEvent> pendingEvents) {
+        assignEventIds(pendingEvents);
+
+        TransactionalPendingEventRelay relay = transactionalRelay.getIfAvailable();
+        if (relay != null) {
+            relayInTransaction(relay, pendingEvents);
+            return;
+        }
 
-        for (PendingKafkaEvent event : pendingEvents) {
+        for (int i = 0; i < pendingEvents.size(); i++) {
+            PendingKafkaEvent event = pendingEvents.get(i);
+            if (stopping) {
+                releasedOnStop.addAndGet(pendingEvents.size() - i);
+                log.info("Остановка: {} отложенных событий пачки оставлены другим узлам", pendingEvents.size() - i);
+                return;
+            }
             try {
-                eventProducer.send(event.getTitle(), event.getEmail());
+                // Ждём подтверждения брокера: без него запись нельзя считать доставленной
+                eventProducer.sendAndAwait(toUserEvent(event), Duration.ofMillis(ackTimeoutMs));
                 event.setProcessed(true);
                 repository.save(event);
                 log.info("Событие успешно отправлено в Kafka. ID: {}", event.getId());
+                refreshSnapshot(event.getUserId());
+            } catch (InterruptedException e) {
+                // прервано остановкой узла: это не неудача брокера, попытка не засчитывается
+                Thread.currentThread().interrupt();
+                releasedOnStop.addAndGet(pendingEvents.size() - i);
+                return;
             } catch (Exception e) {
                 log.warn("Повторная отправка события ID {} не удалась. Попытка №{}",
                         event.getId(), event.getRetryCount() + 1, e);
-                event.setRetryCount(event.getRetryCount() + 1);
+                scheduleRetry(event);
                 repository.save(event);
             }
         }
     }
 
-    @Scheduled(cron = "0 0 2 * * ?") // Каждый день в 02:00
-    public void cleanupOldEvents() {
-        repository.deleteByCreatedAtBefore(LocalDateTime.now().minusDays(7));
-        log.info("Удалены старые события (старше 7 дней)");
+    private void relayInTransaction(TransactionalPendingEventRelay relay, List<PendingKafkaEvent> pendingEvents) {
+        try {
+            relay.relay(pendingEvents, this::toUserEvent);
+        } catch (Exception e) {
+            if (stopping) {
+                // транзакция Kafka откачена, строки не менялись и достанутся другим узлам
+                releasedOnStop.addAndGet(pendingEvents.size());
+                return;
+            }
+            log.warn("Транзакционная отправка {} отложенных событий не удалась, пачка будет отправлена заново",
+                    pendingEvents.size(), e);
+            pendingEvents.forEach(this::scheduleRetry);
+            repository.saveAll(pendingEvents);
+            return;
+        }
+        pendingEvents.stream().map(PendingKafkaEvent::getUserId).distinct().forEach(this::refreshSnapshot);
+    }
+
+    // Снимок берётся из БД, а не из события: пока событие лежало в очереди, пользователь мог измениться
+    private void refreshSnapshot(Long userId) {
+        try {
+            userSnapshotPublisher.refresh(userId);
+        } catch (Exception e) {
+            log.warn("Не удалось обновить снимок пользователя {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private void scheduleRetry(PendingKafkaEvent event) {
+        int attempt = event.getRetryCount() + 1;
+        event.setRetryCount(attempt);
+        if (attempt >= maxAttempts) {
+            event.setDeadLetter(true);
+            log.error("Событие ID {} не отправлено за {} попыток и перемещено в dead letter", event.getId(), attempt);
+            return;
+        }
+        event.setNextAttemptAt(LocalDateTime.now().plus(backoff(attempt)));
+    }
+
+    // Задержка удваивается с каждой попыткой до backoff.max-ms. Половина задержки случайна,
+    // чтобы после восстановления брокера события и узлы не повторяли отправку одновременно
+    Duration backoff(int attempt) {
+        long delay = backoffMaxMs;
+        if (attempt - 1 < Long.numberOfLeadingZeros(backoffInitialMs) - 1) {
+            delay = Math.min(backoffMaxMs, backoffInitialMs << (attempt - 1));
+        }
+        long half = delay / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(delay - half + 1));
+    }
+
+    /**
+     * Возвращает события из dead letter в очередь отправки пачками по replay-batch-size,
+     * чтобы не держать долгую транзакцию и не отправлять весь накопленный хвост разом.
+     */
+    public int replayDeadLetters(int limit) {
+        int replayed = 0;
+        while (replayed < limit) {
+            List<Long> ids = repository.findDeadLetterIds(Limit.of(Math.min(replayBatchSize, limit - replayed)));
+            if (ids.isEmpty()) {
+                break;
+            }
+            replayed += repository.resubmit(ids, LocalDateTime.now());
+        }
+        log.info("Из dead letter повторно поставлено в очередь событий: {}", replayed);
+        if (replayed > 0) {
+            wakeUp();
+        }
+        return replayed;
+    }
+
+    public long countDeadLetters() {
+        return repository.countByDeadLetterTrue();
+    }
+
+    // У записей, сохранённых до появления event-id, id назначается один раз и сохраняется,
+    // чтобы повторные отправки шли с тем же идентификатором
+    private void assignEventIds(List<PendingKafkaEvent> pendingEvents) {
+        List<PendingKafkaEvent> withoutId = pendingEvents.stream()
+                .filter(event -> event.getEventId() == null)
+                .toList();
+        if (withoutId.isEmpty()) {
+            return;
+        }
+        withoutId.forEach(event -> event.setEventId(UUID.randomUUID()));
+        repository.saveAll(withoutId);
+    }
+
+    private UserEvent toUserEvent(PendingKafkaEvent event) {
+        UserEvent userEvent = event.getPayload() != null
+                ? UserEventBinaryCodec.decode(event.getPayload())
+                : UserEvent.builder()
+                        .title(event.getTitle())
+                        .email(event.getEmail())
+                        .userId(event.getUserId())
+                        .build();
+        userEvent.setEventId(event.getEventId());
+        return userEvent;
     }
 }
@@ -0,0 +1,229 @@
+package com.example.projectTest.service;
+
+import com.example.projectTest.repository.PendingKafkaEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Хранение таблицы pending_kafka_events.
+ * <p>
+ * При pending-events.partitioning.enabled=true в PostgreSQL таблица секционируется по дням на created_at:
+ * секции создаются на partitioning.days-ahead дней вперёд, а секции старше retention-days отсоединяются
+ * и удаляются целиком, без построчного DELETE. Секция, в которой остались необработанные или dead letter
+ * события, не удаляется - из неё чистятся только обработанные строки.
+ * <p>
+ * Без секционирования (другие СУБД или выключенная настройка) обработанные строки удаляются
+ * пачками по cleanup.chunk-size с паузой cleanup.pause-ms, каждая пачка в своей транзакции,
+ * чтобы не держать долгих блокировок и не мешать отправке событий.
+ */
+@Service
+@Slf4j
+@Order(0)
+public class PendingEventRetentionManager implements ApplicationRunner {
+
+    static final String TABLE = "pending_kafka_events";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PendingKafkaEventRepository repository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${pending-events.partitioning.enabled:false}")
+    private boolean partitioningEnabled;
+
+    @Value("${pending-events.partitioning.days-ahead:7}")
+    private int daysAhead;
+
+    // false - старые секции только отсоединяются и остаются отдельными таблицами для архивации
+    @Value("${pending-events.partitioning.drop-detached:true}")
+    private boolean dropDetached;
+
+    @Value("${pending-events.retention-days:7}")
+    private int retentionDays;
+
+    @Value("${pending-events.cleanup.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${pending-events.cleanup.pause-ms:100}")
+    private long pauseMs;
+
+    public PendingEventRetentionManager(JdbcTemplate jdbcTemplate,
+                                        PendingKafkaEventRepository repository,
+                                        PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!usePartitions()) {
+            return;
+        }
+        try {
+            if (!isPartitioned()) {
+                migrateToPartitioned();
+            }
+            createUpcomingPartitions(LocalDate.now());
+        } catch (DataAccessException e) {
+            log.error("Не удалось подготовить секции таблицы {}: {}", TABLE, e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "0 0 2 * * ?") // Каждый день в 02:00
+    public void cleanupOldEvents() {
+        LocalDate today = LocalDate.now();
+        LocalDateTime cutoff = today.minusDays(retentionDays).atStartOfDay();
+        if (usePartitions() && isPartitioned()) {
+            createUpcomingPartitions(today);
+            dropExpiredPartitions(cutoff.toLocalDate());
+        }
+        // Строки, оставшиеся в несекционированной таблице или в секциях с живыми событиями
+        int deleted = deleteProcessedInChunks(cutoff);
+        log.info("Удалено старых обработанных событий (старше {} дней): {}", retentionDays, deleted);
+    }
+
+    int deleteProcessedInChunks(LocalDateTime cutoff) {
+        int deleted = 0;
+        while (true) {
+            List<Long> ids = repository.findProcessedIdsBefore(cutoff, Limit.of(chunkSize));
+            if (ids.isEmpty()) {
+                return deleted;
+            }
+            repository.deleteAllByIdInBatch(ids);
+            deleted += ids.size();
+            if (ids.size() < chunkSize) {
+                return deleted;
+            }
+            try {
+                Thread.sleep(pauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return deleted;
+            }
+        }
+    }
+
+    void createUpcomingPartitions(LocalDate today) {
+        for (LocalDate day = today; !day.isAfter(today.plusDays(daysAhead)); day = day.plusDays(1)) {
+            createPartition(day);
+        }
+    }
+
+    void dropExpiredPartitions(LocalDate cutoff) {
+        for (String partition : listPartitions()) {
+            LocalDate day = partitionDay(partition);
+            if (day == null || !day.isBefore(cutoff)) {
+                continue;
+            }
+            Boolean hasLiveEvents = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + partition + " WHERE processed = false OR dead_letter = true)",
+                    Boolean.class);
+            if (Boolean.TRUE.equals(hasLiveEvents)) {
+                log.warn("Секция {} содержит неотправленные события и не будет удалена", partition);
+                continue;
+            }
+            // CONCURRENTLY не блокирует запись в остальные секции на время отсоединения
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + partition + " CONCURRENTLY");
+            if (dropDetached) {
+                jdbcTemplate.execute("DROP TABLE " + partition);
+            }
+            log.info("Секция {} {}", partition, dropDetached ? "удалена" : "отсоединена");
+        }
+    }
+
+    /**
+     * Переносит существующую таблицу в секционированную. Выполняется один раз в одной транзакции:
+     * старая таблица переименовывается, данные копируются в секции, последовательность id продолжается.
+     * Первичный ключ включает created_at - этого требует секционирование. Индексы после переноса
+     * создаёт PendingEventIndexInitializer.
+     */
+    private void migrateToPartitioned() {
+        log.info("Перевод таблицы {} на секционирование по дням", TABLE);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + TABLE + "_legacy");
+            jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + TABLE + "_legacy INCLUDING DEFAULTS INCLUDING IDENTITY) " +
+                    "PARTITION BY RANGE (created_at)");
+            jdbcTemplate.execute("UPDATE " + TABLE + "_legacy SET created_at = now() WHERE created_at IS NULL");
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ALTER COLUMN created_at SET NOT NULL");
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD PRIMARY KEY (id, created_at)");
+
+            LocalDate first = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(MIN(created_at), now())::date FROM " + TABLE + "_legacy", LocalDate.class);
+            LocalDate today = LocalDate.now();
+            for (LocalDate day = first.isBefore(today) ? first : today; day.isBefore(today); day = day.plusDays(1)) {
+                createPartition(day);
+            }
+            createUpcomingPartitions(today);
+
+            jdbcTemplate.execute("INSERT INTO " + TABLE + " OVERRIDING SYSTEM VALUE SELECT * FROM " + TABLE + "_legacy");
+            jdbcTemplate.execute("SELECT setval(pg_get_serial_sequence('" + TABLE + "', 'id'), " +
+                    "(SELECT COALESCE(MAX(id), 0) + 1 FROM " + TABLE + "), false)");
+            jdbcTemplate.execute("DROP TABLE " + TABLE + "_legacy");
+        });
+    }
+
+    private void createPartition(LocalDate day) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(day) + " PARTITION OF " + TABLE +
+                " FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')");
+    }
+
+    private List<String> listPartitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent " +
+                "WHERE p.relname = ?", String.class, TABLE);
+    }
+
+    private boolean isPartitioned() {
+        List<String> kinds = jdbcTemplate.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE relname = ? AND relkind IN ('r', 'p')", String.class, TABLE);
+        return kinds.contains("p");
+    }
+
+    private boolean usePartitions() {
+        if (!partitioningEnabled) {
+            return false;
+        }
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equalsIgnoreCase(product)) {
+            log.warn("Секционирование {} поддерживается только в PostgreSQL, используется удаление пачками", TABLE);
+            return false;
+        }
+        return true;
+    }
+
+    static String partitionName(LocalDate day) {
+        return TABLE + "_p" + day.format(PARTITION_SUFFIX);
+    }
+
+    static LocalDate partitionDay(String partition) {
+        String prefix = TABLE + "_p";
+        if (!partition.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(partition.substring(prefix.length()), PARTITION_SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
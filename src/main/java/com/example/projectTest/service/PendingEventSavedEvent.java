@@ -0,0 +1,7 @@
+package com.example.projectTest.service;
+
+/**
+ * Отложенное событие записано в БД, PendingEventProcessor может отправить его не дожидаясь опроса.
+ */
+public record PendingEventSavedEvent(Long pendingEventId) {
+}
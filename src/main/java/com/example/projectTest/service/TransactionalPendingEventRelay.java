@@ -0,0 +1,58 @@
+package com.example.projectTest.service;
+
+import com.example.projectTest.entity.PendingKafkaEvent;
+import com.example.projectTest.kafka.UserEvent;
+import com.example.projectTest.kafka.UserEventProducer;
+import com.example.projectTest.repository.PendingKafkaEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Повторная отправка пачки отложенных событий в одной транзакции Kafka.
+ * <p>
+ * Все записи пачки становятся видны read_committed-потребителям одновременно либо не становятся вовсе:
+ * если процесс падает посреди пачки, брокер отменяет транзакцию, строки в БД остаются необработанными
+ * и вся пачка уходит заново при следующем проходе. Строки помечаются обработанными только после commit.
+ * <p>
+ * Остаётся окно между commit в Kafka и сохранением отметки в БД: при падении в нём пачка будет
+ * отправлена повторно с теми же event-id, и потребители отбрасывают её по заголовку event-id.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "pending-events.transactional-relay", havingValue = "true")
+public class TransactionalPendingEventRelay {
+
+    private final KafkaTemplate<String, UserEvent> kafkaTemplate;
+    private final PendingKafkaEventRepository repository;
+    private final String topicName;
+
+    public TransactionalPendingEventRelay(@Qualifier("outboxKafkaTemplate") KafkaTemplate<String, UserEvent> kafkaTemplate,
+                                          PendingKafkaEventRepository repository,
+                                          @Value("${user-events-topic-name:user-events-topic}") String topicName) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.repository = repository;
+        this.topicName = topicName;
+    }
+
+    public void relay(List<PendingKafkaEvent> batch, Function<PendingKafkaEvent, UserEvent> toUserEvent) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        kafkaTemplate.executeInTransaction(operations -> {
+            for (PendingKafkaEvent event : batch) {
+                operations.send(UserEventProducer.toRecord(topicName, toUserEvent.apply(event)));
+            }
+            return null;
+        });
+        batch.forEach(event -> event.setProcessed(true));
+        repository.saveAll(batch);
+        log.info("Пачка из {} отложенных событий отправлена в транзакции Kafka", batch.size());
+    }
+}
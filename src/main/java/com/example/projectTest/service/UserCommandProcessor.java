@@ -0,0 +1,354 @@
+package com.example.projectTest.service;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UpdateUserDto;
+import com.example.projectTest.entity.User;
+import com.example.projectTest.exception.DuplicateEmailException;
+import com.example.projectTest.exception.UserNotFoundException;
+import com.example.projectTest.kafka.UserCommand;
+import com.example.projectTest.kafka.UserCommandResult;
+import com.example.projectTest.kafka.UserEvent;
+import com.example.projectTest.mapper.UserMapper;
+import com.example.projectTest.repository.UserRepository;
+import com.example.projectTest.sharding.ShardRouter;
+import com.example.projectTest.statistics.UserStatistics;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Применение пачки команд из топика user-commands.
+ * <p>
+ * Пачка режется на сегменты DELETE* UPDATE* CREATE* без общих id и email. Внутри сегмента
+ * команды разных типов и разных пользователей не влияют друг на друга, поэтому сегмент
+ * выполняется одной транзакцией в порядке удаления - изменения - создания с тем же
+ * результатом, что и последовательное применение: удаления одним DELETE ... IN, изменения
+ * JDBC batch-ем Hibernate, создания JDBC batch-ем {@link UserRepository#insertAll}.
+ * Однотипный поток (массовая загрузка) целиком укладывается в один сегмент на poll.
+ * <p>
+ * Если БД отклонила сегмент (конкурентное изменение с другого узла), его команды
+ * применяются заново по одной через UserService. Так же, по одной, команды применяются
+ * при включённом шардировании.
+ */
+@Service
+@Slf4j
+public class UserCommandProcessor {
+
+    private final UserRepository userRepository;
+
+    private final UserMapper userMapper;
+
+    private final UserService userService;
+
+    private final UserEventPublisher userEventPublisher;
+
+    private final ShardRouter shardRouter;
+
+    private final Validator validator;
+
+    private final UserStatistics userStatistics;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${user-commands.jdbc-batch-size:500}")
+    private int jdbcBatchSize;
+
+    public UserCommandProcessor(UserRepository userRepository,
+                                UserMapper userMapper,
+                                UserService userService,
+                                UserEventPublisher userEventPublisher,
+                                ShardRouter shardRouter,
+                                Validator validator,
+                                UserStatistics userStatistics,
+                                PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.userMapper = userMapper;
+        this.userService = userService;
+        this.userEventPublisher = userEventPublisher;
+        this.shardRouter = shardRouter;
+        this.validator = validator;
+        this.userStatistics = userStatistics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Результаты в том же порядке, что и команды. null в списке - нераспознанная запись.
+     */
+    public List<UserCommandResult> apply(List<UserCommand> commands) {
+        UserCommandResult[] results = new UserCommandResult[commands.size()];
+        Segment segment = new Segment();
+        for (int i = 0; i < commands.size(); i++) {
+            UserCommand command = commands.get(i);
+            String invalid = validate(command);
+            if (invalid != null) {
+                results[i] = UserCommandResult.rejected(command, UserCommandResult.Status.INVALID, invalid);
+            } else if (shardRouter.isEnabled()) {
+                results[i] = applySingle(command);
+            } else {
+                if (!segment.accepts(command)) {
+                    flush(segment, results);
+                    segment = new Segment();
+                }
+                segment.add(i, command);
+            }
+        }
+        flush(segment, results);
+        return Arrays.asList(results);
+    }
+
+    private void flush(Segment segment, UserCommandResult[] results) {
+        if (segment.isEmpty()) {
+            return;
+        }
+        List<UserEvent> events = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+                applyDeletes(segment.deletes, results, events);
+                applyUpdates(segment.updates, results, events);
+                applyCreates(segment.creates, results, events);
+            });
+        } catch (RuntimeException ex) {
+            log.warn("Сегмент из {} команд отклонён БД, применяем по одной: {}", segment.size(), ex.getMessage());
+            segment.forEach((index, command) -> results[index] = applySingle(command));
+            return;
+        }
+        if (!events.isEmpty()) {
+            userEventPublisher.publishAll(events);
+        }
+    }
+
+    private void applyDeletes(List<Indexed> deletes, UserCommandResult[] results, List<UserEvent> events) {
+        if (deletes.isEmpty()) {
+            return;
+        }
+        Map<Long, User> found = findAllById(deletes);
+        for (Indexed delete : deletes) {
+            User user = found.get(delete.command().getUserId());
+            if (user == null) {
+                results[delete.index()] = notFound(delete.command());
+            } else {
+                results[delete.index()] = UserCommandResult.ok(delete.command(), user.getId());
+                events.add(userMapper.toDeletedUserEvent(user));
+                userStatistics.recordDeleted(user.getAge(), user.getCreatedAt());
+            }
+        }
+        if (!found.isEmpty()) {
+            userRepository.deleteAllByIdInBatch(found.keySet());
+        }
+    }
+
+    private void applyUpdates(List<Indexed> updates, UserCommandResult[] results, List<UserEvent> events) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        Map<Long, User> found = findAllById(updates);
+        Set<String> takenEmails = new HashSet<>(userRepository.findExistingEmails(updates.stream()
+                .map(update -> update.command().getEmail())
+                .filter(Objects::nonNull)
+                .toList()));
+
+        List<Indexed> applied = new ArrayList<>();
+        int[] changedFields = new int[updates.size()];
+        Integer[] previousAges = new Integer[updates.size()];
+        for (int i = 0; i < updates.size(); i++) {
+            UserCommand command = updates.get(i).command();
+            User user = found.get(command.getUserId());
+            if (user == null) {
+                results[updates.get(i).index()] = notFound(command);
+            } else if (command.getEmail() != null && !command.getEmail().equals(user.getEmail())
+                    && takenEmails.contains(command.getEmail())) {
+                results[updates.get(i).index()] = duplicateEmail(command);
+            } else {
+                previousAges[applied.size()] = user.getAge();
+                changedFields[applied.size()] = UserService.applyChanges(user, toUpdateDto(command));
+                applied.add(updates.get(i));
+            }
+        }
+        // изменённые сущности уходят одним batch, после flush их версии уже увеличены
+        userRepository.flush();
+        for (int i = 0; i < applied.size(); i++) {
+            User user = found.get(applied.get(i).command().getUserId());
+            results[applied.get(i).index()] = UserCommandResult.ok(applied.get(i).command(), user.getId());
+            if (changedFields[i] != 0) {
+                events.add(userMapper.toUserEvent(user, "UPDATED", changedFields[i]));
+            }
+            if ((changedFields[i] & UserEvent.AGE_CHANGED) != 0) {
+                userStatistics.recordAgeChanged(previousAges[i], user.getAge());
+            }
+        }
+    }
+
+    private void applyCreates(List<Indexed> creates, UserCommandResult[] results, List<UserEvent> events) {
+        if (creates.isEmpty()) {
+            return;
+        }
+        Set<String> takenEmails = new HashSet<>(userRepository.findExistingEmails(creates.stream()
+                .map(create -> create.command().getEmail())
+                .toList()));
+
+        List<Indexed> accepted = new ArrayList<>(creates.size());
+        List<User> newUsers = new ArrayList<>(creates.size());
+        for (Indexed create : creates) {
+            if (takenEmails.contains(create.command().getEmail())) {
+                results[create.index()] = duplicateEmail(create.command());
+            } else {
+                accepted.add(create);
+                newUsers.add(userMapper.toEntity(toCreateDto(create.command())));
+            }
+        }
+        userRepository.insertAll(newUsers);
+        for (int i = 0; i < accepted.size(); i++) {
+            User user = newUsers.get(i);
+            results[accepted.get(i).index()] = UserCommandResult.ok(accepted.get(i).command(), user.getId());
+            events.add(userMapper.toUserEvent(user, "CREATED", 0));
+            userStatistics.recordCreated(user.getAge(), user.getCreatedAt());
+        }
+    }
+
+    private UserCommandResult applySingle(UserCommand command) {
+        try {
+            return switch (command.getType()) {
+                case CREATE -> UserCommandResult.ok(command, userService.create(toCreateDto(command)).getId());
+                case UPDATE -> UserCommandResult.ok(command,
+                        userService.update(command.getUserId(), toUpdateDto(command)).getId());
+                case DELETE -> {
+                    userService.delete(command.getUserId());
+                    yield UserCommandResult.ok(command, command.getUserId());
+                }
+            };
+        } catch (UserNotFoundException ex) {
+            return notFound(command);
+        } catch (DuplicateEmailException ex) {
+            return duplicateEmail(command);
+        } catch (RuntimeException ex) {
+            log.error("Не удалось применить команду {}: ", command.getCommandId(), ex);
+            return UserCommandResult.rejected(command, UserCommandResult.Status.FAILED, ex.getMessage());
+        }
+    }
+
+    private Map<Long, User> findAllById(List<Indexed> commands) {
+        return userRepository.findAllById(commands.stream().map(indexed -> indexed.command().getUserId()).toList())
+                .stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+    }
+
+    private String validate(UserCommand command) {
+        if (command == null) {
+            return "Не удалось разобрать команду";
+        }
+        if (command.getType() == null) {
+            return "Не указан тип команды";
+        }
+        if (command.getType() != UserCommand.Type.CREATE && command.getUserId() == null) {
+            return "Не указан userId";
+        }
+        Set<? extends ConstraintViolation<?>> violations = switch (command.getType()) {
+            case CREATE -> validator.validate(toCreateDto(command));
+            case UPDATE -> validator.validate(toUpdateDto(command));
+            case DELETE -> Set.of();
+        };
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining("; "));
+    }
+
+    private static CreateUserDto toCreateDto(UserCommand command) {
+        return new CreateUserDto(command.getEmail(), command.getName(), command.getAge());
+    }
+
+    private static UpdateUserDto toUpdateDto(UserCommand command) {
+        return new UpdateUserDto(command.getEmail(), command.getName(), command.getAge());
+    }
+
+    private static UserCommandResult notFound(UserCommand command) {
+        return UserCommandResult.rejected(command, UserCommandResult.Status.NOT_FOUND, "Пользователь не найден");
+    }
+
+    private static UserCommandResult duplicateEmail(UserCommand command) {
+        return UserCommandResult.rejected(command, UserCommandResult.Status.DUPLICATE_EMAIL,
+                "Пользователь с таким email уже существует");
+    }
+
+    private record Indexed(int index, UserCommand command) {
+    }
+
+    /**
+     * Команды, которые можно применить одной транзакцией: типы не идут назад по порядку
+     * DELETE - UPDATE - CREATE, и ни один id или email не встречается дважды.
+     */
+    private static final class Segment {
+        private final List<Indexed> deletes = new ArrayList<>();
+        private final List<Indexed> updates = new ArrayList<>();
+        private final List<Indexed> creates = new ArrayList<>();
+        private final Set<Long> userIds = new HashSet<>();
+        private final Set<String> emails = new HashSet<>();
+        private int rank;
+
+        boolean accepts(UserCommand command) {
+            return rank(command) >= rank
+                    && (command.getUserId() == null || !userIds.contains(command.getUserId()))
+                    && (command.getEmail() == null || !emails.contains(command.getEmail()));
+        }
+
+        void add(int index, UserCommand command) {
+            rank = rank(command);
+            Indexed indexed = new Indexed(index, command);
+            switch (command.getType()) {
+                case DELETE -> deletes.add(indexed);
+                case UPDATE -> updates.add(indexed);
+                case CREATE -> creates.add(indexed);
+            }
+            if (command.getUserId() != null) {
+                userIds.add(command.getUserId());
+            }
+            if (command.getEmail() != null) {
+                emails.add(command.getEmail());
+            }
+        }
+
+        boolean isEmpty() {
+            return size() == 0;
+        }
+
+        int size() {
+            return deletes.size() + updates.size() + creates.size();
+        }
+
+        void forEach(BiConsumer<Integer, UserCommand> action) {
+            for (List<Indexed> commands : List.of(deletes, updates, creates)) {
+                commands.forEach(indexed -> action.accept(indexed.index(), indexed.command()));
+            }
+        }
+
+        private static int rank(UserCommand command) {
+            return switch (command.getType()) {
+                case DELETE -> 0;
+                case UPDATE -> 1;
+                case CREATE -> 2;
+            };
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.projectTest.service;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UserDto;
+import com.example.projectTest.entity.User;
+import com.example.projectTest.exception.DuplicateEmailException;
+import com.example.projectTest.mapper.UserMapper;
+import com.example.projectTest.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Групповой commit создания пользователей (users.group-commit.enabled=true).
+ * <p>
+ * Запросы на создание копятся в очереди не дольше window-ms или до max-batch штук и вставляются
+ * одной транзакцией - при всплеске регистраций узким местом перестаёт быть частота commit в БД.
+ * Каждый вызывающий поток ждёт свой результат. Дубликаты email внутри пачки и уже существующие в БД
+ * отклоняются по отдельности, не затрагивая остальные строки. Если пачка всё же упала на ограничении
+ * уникальности (конкурентная вставка с другого узла), строки вставляются заново по одной.
+ * <p>
+ * Вызывающий поток ждёт не дольше timeout-ms; после остановки новые запросы сразу отклоняются.
+ */
+@Service
+@Slf4j
+public class UserCreateBatcher {
+
+    private final UserRepository userRepository;
+
+    private final UserMapper userMapper;
+
+    private final UserEventPublisher userEventPublisher;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BlockingQueue<PendingCreate> queue = new LinkedBlockingQueue<>();
+
+    @Value("${users.group-commit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${users.group-commit.window-ms:5}")
+    private long windowMs;
+
+    @Value("${users.group-commit.max-batch:100}")
+    private int maxBatch;
+
+    @Value("${users.group-commit.timeout-ms:5000}")
+    private long timeoutMs;
+
+    private Thread flusher;
+
+    private volatile boolean stopped;
+
+    public UserCreateBatcher(UserRepository userRepository,
+                             UserMapper userMapper,
+                             UserEventPublisher userEventPublisher,
+                             PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.userMapper = userMapper;
+        this.userEventPublisher = userEventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    void start() {
+        if (enabled) {
+            flusher = Thread.ofPlatform().name("user-group-commit").daemon().start(this::run);
+            log.info("Групповой commit создания пользователей включён: окно {} мс, до {} строк", windowMs, maxBatch);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        stopped = true;
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public UserDto create(CreateUserDto createUserDto) {
+        PendingCreate request = new PendingCreate(createUserDto, new CompletableFuture<>());
+        queue.add(request);
+        // флаг читается после add: либо запрос отклонён здесь, либо его увидит завершающийся поток сброса
+        if (stopped && queue.remove(request)) {
+            request.result().completeExceptionally(new IllegalStateException("Сервис останавливается"));
+        }
+        try {
+            return request.result().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            if (queue.remove(request)) {
+                log.warn("Запрос на создание пользователя не дождался группового commit за {} мс", timeoutMs);
+            } else {
+                log.warn("Групповой commit не ответил за {} мс, результат создания пользователя неизвестен", timeoutMs);
+            }
+            throw new IllegalStateException("Групповой commit не ответил за " + timeoutMs + " мс");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queue.remove(request);
+            throw new IllegalStateException("Ожидание группового commit прервано", e);
+        }
+    }
+
+    private void run() {
+        List<PendingCreate> batch = new ArrayList<>(maxBatch);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                collect(batch);
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IllegalStateException stopped = new IllegalStateException("Сервис останавливается");
+        batch.forEach(request -> request.result().completeExceptionally(stopped));
+        queue.forEach(request -> request.result().completeExceptionally(stopped));
+    }
+
+    private void collect(List<PendingCreate> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+        while (batch.size() < maxBatch) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                queue.drainTo(batch, maxBatch - batch.size());
+                return;
+            }
+            PendingCreate next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    void flush(List<PendingCreate> batch) {
+        Map<String, PendingCreate> accepted = new LinkedHashMap<>();
+        for (PendingCreate request : batch) {
+            if (accepted.putIfAbsent(request.dto().getEmail(), request) != null) {
+                request.result().completeExceptionally(new DuplicateEmailException());
+            }
+        }
+        try {
+            Set<String> existing = new HashSet<>(userRepository.findExistingEmails(accepted.keySet()));
+            existing.forEach(email -> accepted.remove(email).result().completeExceptionally(new DuplicateEmailException()));
+            if (accepted.isEmpty()) {
+                return;
+            }
+
+            List<PendingCreate> rows = List.copyOf(accepted.values());
+            List<User> users;
+            try {
+                users = transactionTemplate.execute(status -> {
+                    List<User> newUsers = rows.stream().map(request -> userMapper.toEntity(request.dto())).toList();
+                    userRepository.saveAll(newUsers);
+                    userRepository.flush();
+                    return newUsers;
+                });
+            } catch (DataIntegrityViolationException ex) {
+                log.warn("Групповая вставка {} пользователей отклонена БД, вставляем по одному", rows.size());
+                rows.forEach(this::createSingle);
+                return;
+            }
+            log.info("Групповой commit: создано пользователей {}", users.size());
+            for (int i = 0; i < rows.size(); i++) {
+                complete(rows.get(i), users.get(i));
+            }
+        } catch (RuntimeException ex) {
+            log.error("Ошибка при групповом создании пользователей: ", ex);
+            accepted.values().forEach(request -> request.result().completeExceptionally(ex));
+        }
+    }
+
+    private void createSingle(PendingCreate request) {
+        try {
+            User newUser = transactionTemplate.execute(status ->
+                    userRepository.saveAndFlush(userMapper.toEntity(request.dto())));
+            complete(request, newUser);
+        } catch (DataIntegrityViolationException ex) {
+            if (Objects.requireNonNull(ex.getRootCause()).getMessage().contains("uk6dotkott2kjsp8vw4d0m25fb7")) {
+                request.result().completeExceptionally(new DuplicateEmailException());
+            } else {
+                request.result().completeExceptionally(ex);
+            }
+        }
+    }
+
+    private void complete(PendingCreate request, User newUser) {
+        if (request.result().isDone()) {
+            return;
+        }
+        try {
+            userEventPublisher.publish(userMapper.toUserEvent(newUser, "CREATED", 0));
+        } finally {
+            request.result().complete(userMapper.toUserDto(newUser));
+        }
+    }
+
+    record PendingCreate(CreateUserDto dto, CompletableFuture<UserDto> result) {
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.projectTest.service;
+
+import com.example.projectTest.entity.PendingKafkaEvent;
+import com.example.projectTest.kafka.UserEvent;
+import com.example.projectTest.kafka.UserEventBinaryCodec;
+import com.example.projectTest.kafka.UserEventProducer;
+import com.example.projectTest.repository.PendingKafkaEventRepository;
+import com.example.projectTest.snapshot.UserSnapshotPublisher;
+import io.github.resilience4j.bulkhead.annotation.Bulkhead;
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.retry.annotation.Retry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Отправка событий пользователя через circuit breaker.
+ * <p>
+ * Вынесена в отдельный бин: аннотации Resilience4j работают через прокси и на private-методе
+ * самого UserService не срабатывали. Если отправить не удалось, событие сохраняется
+ * в pending_kafka_events и сразу будит PendingEventProcessor.
+ * <p>
+ * Одновременных отправок не больше лимита bulkhead kafkaPublish и без ожидания слота:
+ * при медленном брокере лишние события сразу уходят в pending_kafka_events,
+ * а не держат поток запроса до max.block.ms.
+ * <p>
+ * Вместе с событием отправляется снимок пользователя в user-snapshots (см. {@link UserSnapshotPublisher}).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class UserEventPublisher {
+
+    public static final String CIRCUIT_BREAKER = "kafkaProducer";
+
+    public static final String BULKHEAD = "kafkaPublish";
+
+    private final UserEventProducer userEventProducer;
+
+    private final PendingKafkaEventRepository pendingEventRepository;
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    private final UserSnapshotPublisher userSnapshotPublisher;
+
+    @CircuitBreaker(name = CIRCUIT_BREAKER, fallbackMethod = "fallbackSendEvent")
+    @Retry(name = "kafkaRetry")
+    @Bulkhead(name = BULKHEAD)
+    public void publish(UserEvent event) {
+        userEventProducer.send(event);
+        userSnapshotPublisher.publish(event);
+    }
+
+    /**
+     * Отправка пачки событий из потребителя команд. Без bulkhead: поток потребителя может
+     * подождать медленный брокер, это и есть обратное давление на чтение команд.
+     * При повторе пачка уходит целиком, уже отправленные события потребители отбросят по event-id.
+     */
+    @CircuitBreaker(name = CIRCUIT_BREAKER, fallbackMethod = "fallbackSendEvents")
+    @Retry(name = "kafkaRetry")
+    public void publishAll(List<UserEvent> events) {
+        events.forEach(userEventProducer::send);
+        events.forEach(userSnapshotPublisher::publish);
+    }
+
+    private void fallbackSendEvents(List<UserEvent> events, Exception e) {
+        events.forEach(event -> fallbackSendEvent(event, e));
+    }
+
+    private void fallbackSendEvent(UserEvent event, Exception e) {
+        String title = event.getTitle();
+        String email = event.getEmail();
+        log.error("[CB] Не удалось отправить событие в Kafka. Title: {}, Email: {}. Ошибка: {}",
+                title, email, e.getMessage(), e);
+        // снимок в топик уйдёт после повторной отправки события, а свой кэш узел обновляет сразу
+        userSnapshotPublisher.applyLocally(event);
+
+        PendingKafkaEvent pendingEvent = toPendingEvent(event);
+        try {
+            pendingEventRepository.save(pendingEvent);
+            log.info("Событие сохранено в БД для повторной отправки. ID: {}", pendingEvent.getId());
+            applicationEventPublisher.publishEvent(new PendingEventSavedEvent(pendingEvent.getId()));
+        } catch (Exception saveEx) {
+            log.error("Не удалось сохранить событие в БД. Title: {}, Email: {}. Ошибка: {}",
+                    title, email, saveEx.getMessage(), saveEx);
+        }
+    }
+
+    /**
+     * Сохраняет события, которые брокер не подтвердил до остановки узла. PendingEventProcessor
+     * не будится: этот узел уже не отправляет, события подберёт опрос любого работающего узла.
+     * Потребители отбросят повтор по event-id, если запись всё же дошла до брокера.
+     */
+    public void storeUnacknowledged(List<UserEvent> events) {
+        pendingEventRepository.saveAll(events.stream().map(this::toPendingEvent).toList());
+        log.info("Неподтверждённые брокером события сохранены для повторной отправки: {}", events.size());
+    }
+
+    private PendingKafkaEvent toPendingEvent(UserEvent event) {
+        PendingKafkaEvent pendingEvent = new PendingKafkaEvent();
+        pendingEvent.setEventId(event.getEventId() != null ? event.getEventId() : UUID.randomUUID());
+        pendingEvent.setUserId(event.getUserId());
+        pendingEvent.setTitle(event.getTitle());
+        pendingEvent.setEmail(event.getEmail());
+        pendingEvent.setPayload(UserEventBinaryCodec.encode(event));
+        pendingEvent.setRetryCount(0);
+        pendingEvent.setProcessed(false);
+        return pendingEvent;
+    }
+}
@@ -3,44 +3,114 @@ package com.example.projectTest.service;
 import com.example.projectTest.dto.CreateUserDto;
 import com.example.projectTest.dto.UpdateUserDto;
 import com.example.projectTest.dto.UserDto;
-import com.example.projectTest.entity.PendingKafkaEvent;
 import com.example.projectTest.entity.User;
 import com.example.projectTest.exception.DuplicateEmailException;
 import com.example.projectTest.exception.EmptyListException;
 import com.example.projectTest.exception.UserNotFoundException;
-import com.example.projectTest.kafka.UserEventProducer;
+import com.example.projectTest.exception.UserVersionMismatchException;
+import com.example.projectTest.kafka.UserEvent;
 import com.example.projectTest.mapper.UserMapper;
-import com.example.projectTest.repository.PendingKafkaEventRepository;
 import com.example.projectTest.repository.UserRepository;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.retry.annotation.Retry;
-import lombok.RequiredArgsConstructor;
+import com.example.projectTest.sharding.ShardRouter;
+import com.example.projectTest.sharding.ShardedEmailIndex;
+import com.example.projectTest.snapshot.UserSnapshotCache;
+import com.example.projectTest.statistics.UserStatistics;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.bulkhead.annotation.Bulkhead;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
 
-@RequiredArgsConstructor
+/**
+ * Операции над пользователями.
+ * <p>
+ * Чтение и изменение идут через разные bulkhead: пачка медленных записей или зависший
+ * брокер занимают только слоты userMutation и не отнимают потоки и соединения у поиска.
+ * Лимит userMutation держится ниже размера пула соединений, чтобы чтениям всегда
+ * оставались свободные соединения. Создание через групповой commit слот userMutation не занимает:
+ * вызывающий поток только ждёт пачку, а вставку делает один поток сброса на одном соединении.
+ * Чтения выполняются в read-only транзакциях и при включённой реплике идут на неё.
+ * <p>
+ * При sharding.enabled=true каждая операция выполняется на шарде пользователя через ShardRouter,
+ * findAll опрашивает все шарды. Отправка событий вынесена за пределы операций на шарде,
+ * чтобы неотправленное событие сохранялось в pending_kafka_events на шарде 0.
+ * <p>
+ * При user-snapshots.cache.enabled=true поиск по id и email сначала смотрит в прогретый
+ * UserSnapshotCache и идёт в БД только при промахе. Кэш проверяется до начала транзакции,
+ * поэтому попадание не берёт соединение из пула.
+ * <p>
+ * create, update и delete после коммита обновляют счётчики UserStatistics.
+ * <p>
+ * update и delete с expectedVersion (If-Match) сверяют её с версией загруженной сущности
+ * и бросают UserVersionMismatchException; изменение, успевшее между проверкой и flush,
+ * ловит @Version самой сущности.
+ */
 @Slf4j
 @Service
 public class UserService {
 
+    public static final String LOOKUP_BULKHEAD = "userLookup";
+
+    public static final String MUTATION_BULKHEAD = "userMutation";
+
     private final UserRepository userRepository;
 
     private final UserMapper userMapper;
 
-    private final UserEventProducer userEventProducer;
+    private final UserEventPublisher userEventPublisher;
+
+    private final UserCreateBatcher userCreateBatcher;
+
+    private final ShardRouter shardRouter;
+
+    private final ShardedEmailIndex shardedEmailIndex;
+
+    private final UserSnapshotCache userSnapshotCache;
+
+    private final UserStatistics userStatistics;
+
+    private final BulkheadRegistry bulkheadRegistry;
 
-    private final PendingKafkaEventRepository pendingEventRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public UserService(UserRepository userRepository,
+                       UserMapper userMapper,
+                       UserEventPublisher userEventPublisher,
+                       UserCreateBatcher userCreateBatcher,
+                       ShardRouter shardRouter,
+                       ShardedEmailIndex shardedEmailIndex,
+                       UserSnapshotCache userSnapshotCache,
+                       UserStatistics userStatistics,
+                       BulkheadRegistry bulkheadRegistry,
+                       PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.userMapper = userMapper;
+        this.userEventPublisher = userEventPublisher;
+        this.userCreateBatcher = userCreateBatcher;
+        this.shardRouter = shardRouter;
+        this.shardedEmailIndex = shardedEmailIndex;
+        this.userSnapshotCache = userSnapshotCache;
+        this.userStatistics = userStatistics;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
 
 
+    @Bulkhead(name = LOOKUP_BULKHEAD)
+    @Transactional(readOnly = true)
     public List<UserDto> findAll() {
         log.info("Запустился метод получения всех пользователей (findAll) в UserService");
-        List<User> users = userRepository.findAll();
+        List<User> users = shardRouter.scatter(userRepository::findAll);
         if (users.isEmpty()) {
             log.error("Метод findAll вернул пустой список");
             throw new EmptyListException();
@@ -49,20 +119,57 @@ public class UserService {
     }
 
 
+    @Bulkhead(name = LOOKUP_BULKHEAD)
     public UserDto findById(Long id) {
         log.info("Запустился метод поиска пользователя по Id (findById) в UserService");
-        Optional<User> user = userRepository.findById(id);
-        if (user.isEmpty()) {
-            log.error("Пользователь с id = {} не найден", id);
-            throw new UserNotFoundException();
+        Optional<UserDto> cached = userSnapshotCache.findById(id);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        return readOnlyTransaction.execute(status -> {
+            Optional<User> user = shardRouter.onUser(id, false, () -> userRepository.findById(id));
+            if (user.isEmpty()) {
+                log.error("Пользователь с id = {} не найден", id);
+                throw new UserNotFoundException();
+            }
+            return userMapper.toUserDto(user.get());
+        });
+    }
+
+
+    /**
+     * Текущая версия пользователя для ETag: из кэша снимков или запросом одной колонки,
+     * без загрузки сущности.
+     */
+    @Bulkhead(name = LOOKUP_BULKHEAD)
+    public Optional<Long> findVersion(Long id) {
+        Optional<Long> cached = userSnapshotCache.findVersion(id);
+        if (cached.isPresent()) {
+            return cached;
         }
-        return userMapper.toUserDto(user.get());
+        return readOnlyTransaction.execute(status ->
+                shardRouter.onUser(id, false, () -> userRepository.findVersionById(id)));
     }
 
 
+    @Bulkhead(name = LOOKUP_BULKHEAD)
     public UserDto findByEmail(String email) {
         log.info("Запустился метод поиска пользователя по email (findByEmail) в UserService");
-        Optional<User> optionalUser = userRepository.findByEmail(email);
+        Optional<UserDto> cached = userSnapshotCache.findByEmail(email);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        return readOnlyTransaction.execute(status -> loadByEmail(email));
+    }
+
+    private UserDto loadByEmail(String email) {
+        Optional<User> optionalUser = shardRouter.onEmail(email, false, () -> userRepository.findByEmail(email));
+        if (optionalUser.isEmpty()) {
+            // email мог смениться на адрес из другого бакета, пользователь остался на своём шарде
+            optionalUser = shardedEmailIndex.findClaimedUserId(email)
+                    .flatMap(id -> shardRouter.onUser(id, false, () -> userRepository.findById(id)))
+                    .filter(user -> email.equals(user.getEmail()));
+        }
         if (optionalUser.isEmpty()) {
             log.error("Пользователь с email = {} не найден", email);
             throw new UserNotFoundException();
@@ -73,14 +180,29 @@ public class UserService {
 
     public UserDto create(CreateUserDto createUserDto) {
         log.info("Запустился метод создания нового пользователя (create) в UserService");
+        // групповой commit работает с одной БД; при шардировании запись и так распределена по шардам
+        if (userCreateBatcher.isEnabled() && !shardRouter.isEnabled()) {
+            UserDto created = userCreateBatcher.create(createUserDto);
+            userStatistics.recordCreated(created.getAge(), created.getCreatedAt());
+            return created;
+        }
+        return bulkheadRegistry.bulkhead(MUTATION_BULKHEAD).executeSupplier(() -> createSingle(createUserDto));
+    }
+
+    private UserDto createSingle(CreateUserDto createUserDto) {
         try {
             User newUser = userMapper.toEntity(createUserDto);
-            userRepository.save(newUser);
+            shardRouter.onEmail(newUser.getEmail(), true, () -> {
+                shardedEmailIndex.checkNotClaimed(newUser.getEmail());
+                newUser.setId(shardRouter.newId(newUser.getEmail()));
+                return userRepository.save(newUser);
+            });
             log.info("Пользователь {} успешно создан.", newUser);
-            sendUserEventWithCircuitBreaker("CREATED", newUser.getEmail());
+            userStatistics.recordCreated(newUser.getAge(), newUser.getCreatedAt());
+            userEventPublisher.publish(userMapper.toUserEvent(newUser, "CREATED", 0));
             return userMapper.toUserDto(newUser);
         } catch (DataIntegrityViolationException ex) {
-            if (Objects.requireNonNull(ex.getRootCause()).getMessage().contains("uk6dotkott2kjsp8vw4d0m25fb7")) {
+            if (isDuplicateEmail(ex)) {
                 throw new DuplicateEmailException();
             }
             log.error("Ошибка при создании пользователя: ", ex);
@@ -89,61 +211,139 @@ public class UserService {
     }
 
 
+    @Bulkhead(name = MUTATION_BULKHEAD)
+    @Transactional
     public void delete(Long id) {
+        delete(id, null);
+    }
+
+
+    @Bulkhead(name = MUTATION_BULKHEAD)
+    @Transactional
+    public void delete(Long id, Long expectedVersion) {
         log.info("Запустился метод удаления пользователя (delete) в UserService");
-        User deleteUser = userRepository.findById(id)
-                .orElseThrow(UserNotFoundException::new);
-        userRepository.deleteById(id);
-        sendUserEventWithCircuitBreaker("DELETED", deleteUser.getEmail());
+        User deleteUser = shardRouter.onUser(id, true, () -> {
+            User user = userRepository.findById(id)
+                    .orElseThrow(UserNotFoundException::new);
+            checkVersion(user, expectedVersion);
+            // в одной транзакции удаляем уже загруженную сущность без повторного select
+            userRepository.delete(user);
+            // конфликт версий должен проявиться до освобождения email и отправки DELETED
+            flush(expectedVersion);
+            return user;
+        });
+        shardedEmailIndex.release(deleteUser.getEmail(), id);
+        userStatistics.recordDeleted(deleteUser.getAge(), deleteUser.getCreatedAt());
+        userEventPublisher.publish(userMapper.toDeletedUserEvent(deleteUser));
     }
 
 
+    @Bulkhead(name = MUTATION_BULKHEAD)
     @Transactional
     public UserDto update(Long id, UpdateUserDto updateUserDto) {
-        log.info("Запустился метод обновления данных пользователя (update) в UserService");
+        return update(id, updateUserDto, null);
+    }
 
-        User updateUser = userRepository.findById(id)
-                .orElseThrow(UserNotFoundException::new);
 
-        if (updateUserDto.getEmail() != null) updateUser.setEmail(updateUserDto.getEmail());
-        if (updateUserDto.getName() != null) updateUser.setName(updateUserDto.getName());
-        if (updateUserDto.getAge() != null) updateUser.setAge(updateUserDto.getAge());
+    @Bulkhead(name = MUTATION_BULKHEAD)
+    @Transactional
+    public UserDto update(Long id, UpdateUserDto updateUserDto, Long expectedVersion) {
+        log.info("Запустился метод обновления данных пользователя (update) в UserService");
+
+        String newEmail = updateUserDto.getEmail();
+        boolean reserved = newEmail != null && shardedEmailIndex.reserve(newEmail, id);
         try {
-            userRepository.save(updateUser);
-            userRepository.flush();
+            Updated updated = shardRouter.onUser(id, true, () -> applyUpdate(id, updateUserDto, expectedVersion));
             log.info("Данные пользователя успешно обновленны.");
-            return userMapper.toUserDto(updateUser);
-        } catch (DataIntegrityViolationException ex) {
-            if (Objects.requireNonNull(ex.getRootCause()).getMessage().contains("uk6dotkott2kjsp8vw4d0m25fb7")) {
+            if (updated.changedFields() != 0) {
+                userEventPublisher.publish(userMapper.toUserEvent(updated.user(), "UPDATED", updated.changedFields()));
+            }
+            if ((updated.changedFields() & UserEvent.EMAIL_CHANGED) != 0) {
+                shardedEmailIndex.release(updated.previousEmail(), id);
+            }
+            if ((updated.changedFields() & UserEvent.AGE_CHANGED) != 0) {
+                userStatistics.recordAgeChanged(updated.previousAge(), updated.user().getAge());
+            }
+            return userMapper.toUserDto(updated.user());
+        } catch (RuntimeException ex) {
+            if (reserved) {
+                shardedEmailIndex.release(newEmail, id);
+            }
+            if (ex instanceof DataIntegrityViolationException dataEx && isDuplicateEmail(dataEx)) {
                 throw new DuplicateEmailException();
             }
-            log.error("Ошибка при обновлении данных пользователя: ", ex);
+            if (ex instanceof DataIntegrityViolationException) {
+                log.error("Ошибка при обновлении данных пользователя: ", ex);
+            }
             throw ex;
         }
     }
 
-    @CircuitBreaker(name = "kafkaProducer", fallbackMethod = "fallbackSendEvent")
-    @Retry(name = "kafkaRetry")
-    private void sendUserEventWithCircuitBreaker(String title, String email) {
-        userEventProducer.send(title, email);
+
+    private Updated applyUpdate(Long id, UpdateUserDto updateUserDto, Long expectedVersion) {
+        User updateUser = userRepository.findById(id)
+                .orElseThrow(UserNotFoundException::new);
+        checkVersion(updateUser, expectedVersion);
+        String previousEmail = updateUser.getEmail();
+        Integer previousAge = updateUser.getAge();
+        int changedFields = applyChanges(updateUser, updateUserDto);
+        userRepository.save(updateUser);
+        // после flush версия сущности уже увеличена
+        flush(expectedVersion);
+        return new Updated(updateUser, previousEmail, previousAge, changedFields);
     }
 
-    private void fallbackSendEvent(String title, String email, Exception e) {
-        log.error("[CB] Не удалось отправить событие в Kafka. Title: {}, Email: {}. Ошибка: {}",
-                title, email, e.getMessage(), e);
 
-        PendingKafkaEvent pendingEvent = new PendingKafkaEvent();
-        pendingEvent.setTitle(title);
-        pendingEvent.setEmail(email);
-        pendingEvent.setRetryCount(0);
-        pendingEvent.setProcessed(false);
+    private static void checkVersion(User user, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(user.getVersion())) {
+            log.error("Версия пользователя с id = {} равна {}, в If-Match указана {}",
+                    user.getId(), user.getVersion(), expectedVersion);
+            throw new UserVersionMismatchException();
+        }
+    }
+
 
+    private void flush(Long expectedVersion) {
         try {
-            pendingEventRepository.save(pendingEvent);
-            log.info("Событие сохранено в БД для повторной отправки. ID: {}", pendingEvent.getId());
-        } catch (Exception saveEx) {
-            log.error("Не удалось сохранить событие в БД. Title: {}, Email: {}. Ошибка: {}",
-                    title, email, saveEx.getMessage(), saveEx);
+            userRepository.flush();
+        } catch (OptimisticLockingFailureException ex) {
+            // с If-Match изменение между проверкой версии и flush - тот же конфликт версий
+            if (expectedVersion == null) {
+                throw ex;
+            }
+            throw new UserVersionMismatchException();
+        }
+    }
+
+
+    /**
+     * Переносит в сущность заданные поля и возвращает маску реально изменённых.
+     */
+    static int applyChanges(User user, UpdateUserDto updateUserDto) {
+        int changedFields = 0;
+        if (updateUserDto.getEmail() != null && !updateUserDto.getEmail().equals(user.getEmail())) {
+            user.setEmail(updateUserDto.getEmail());
+            changedFields |= UserEvent.EMAIL_CHANGED;
         }
+        if (updateUserDto.getName() != null && !updateUserDto.getName().equals(user.getName())) {
+            user.setName(updateUserDto.getName());
+            changedFields |= UserEvent.NAME_CHANGED;
+        }
+        if (updateUserDto.getAge() != null && !updateUserDto.getAge().equals(user.getAge())) {
+            user.setAge(updateUserDto.getAge());
+            changedFields |= UserEvent.AGE_CHANGED;
+        }
+        return changedFields;
+    }
+
+
+    private static boolean isDuplicateEmail(DataIntegrityViolationException ex) {
+        String message = Objects.requireNonNull(ex.getRootCause()).getMessage();
+        // на шардах, схему которых создавали отдельно, ограничение может быть без нашего имени
+        return message.contains("uk6dotkott2kjsp8vw4d0m25fb7") || message.toLowerCase(Locale.ROOT).contains("(email");
+    }
+
+
+    private record Updated(User user, String previousEmail, Integer previousAge, int changedFields) {
     }
-}
\ No newline at end of file
+}
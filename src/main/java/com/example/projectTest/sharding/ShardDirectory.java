@@ -0,0 +1,207 @@
+package com.example.projectTest.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Физические шарды и карта бакет -> шард.
+ * <p>
+ * Карта хранится в таблице user_shard_buckets на шарде 0 (по строке на бакет) и перечитывается
+ * каждые sharding.map-refresh-ms в собственном потоке, так что перенос бакетов, сделанный на одном
+ * экземпляре, доходит до остальных за один интервал и не ждёт общих задач по расписанию.
+ * Возраст карты ({@link #mapAge()}) проверяет ShardRouter перед записью. При первом запуске бакеты делятся между шардами
+ * поровну непрерывными диапазонами. Бакет с флагом moving переносится на другой шард:
+ * чтения по нему идут как обычно, записи отклоняются до конца переноса.
+ * <p>
+ * id выдаются блоками по {@link #ID_BLOCK} из последовательности user_shard_id_seq того шарда,
+ * на который попадает новый пользователь.
+ */
+@Slf4j
+public class ShardDirectory {
+
+    public static final int ID_BLOCK = 64;
+
+    private final List<DataSource> shards;
+
+    private final List<JdbcTemplate> jdbcTemplates = new ArrayList<>();
+
+    private final IdBlock[] idBlocks;
+
+    private volatile Snapshot snapshot;
+
+    private ScheduledExecutorService refresher;
+
+    public ShardDirectory(List<DataSource> shards) {
+        if (shards.isEmpty() || shards.size() > ShardKeys.MAX_SHARDS) {
+            throw new IllegalArgumentException("Число шардов должно быть от 1 до " + ShardKeys.MAX_SHARDS);
+        }
+        this.shards = List.copyOf(shards);
+        this.idBlocks = new IdBlock[shards.size()];
+        for (int shard = 0; shard < shards.size(); shard++) {
+            jdbcTemplates.add(new JdbcTemplate(shards.get(shard)));
+            idBlocks[shard] = new IdBlock();
+        }
+    }
+
+    public void initialize() {
+        for (JdbcTemplate jdbcTemplate : jdbcTemplates) {
+            jdbcTemplate.execute("create sequence if not exists user_shard_id_seq start with 1 increment by " + ID_BLOCK);
+        }
+        JdbcTemplate catalog = jdbcTemplates.get(0);
+        catalog.execute("""
+                create table if not exists user_shard_buckets (
+                    bucket integer primary key,
+                    shard integer not null,
+                    moving boolean not null default false)""");
+        Integer mapped = catalog.queryForObject("select count(*) from user_shard_buckets", Integer.class);
+        if (mapped == null || mapped == 0) {
+            List<Object[]> rows = new ArrayList<>(ShardKeys.BUCKETS);
+            for (int bucket = 0; bucket < ShardKeys.BUCKETS; bucket++) {
+                rows.add(new Object[]{bucket, bucket * shards.size() / ShardKeys.BUCKETS});
+            }
+            catalog.batchUpdate("insert into user_shard_buckets (bucket, shard, moving) values (?, ?, false)", rows);
+            log.info("Карта шардов создана: {} бакетов на {} шардов", ShardKeys.BUCKETS, shards.size());
+        }
+        refresh();
+    }
+
+    /**
+     * Запускает периодическое перечитывание карты в отдельном потоке.
+     */
+    public void startRefresh(Duration interval) {
+        refresher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("shard-map-refresh").daemon().factory());
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                // исключение отменило бы расписание; устаревшую карту отловит проверка возраста в ShardRouter
+                log.error("Не удалось обновить карту шардов: {}", e.getMessage(), e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void refresh() {
+        long loadedAt = System.nanoTime();
+        int[] bucketShard = new int[ShardKeys.BUCKETS];
+        BitSet moving = new BitSet(ShardKeys.BUCKETS);
+        jdbcTemplates.get(0).query("select bucket, shard, moving from user_shard_buckets", rs -> {
+            int bucket = rs.getInt(1);
+            bucketShard[bucket] = rs.getInt(2);
+            moving.set(bucket, rs.getBoolean(3));
+        });
+        for (int shard : bucketShard) {
+            if (shard < 0 || shard >= shards.size()) {
+                throw new IllegalStateException("Карта шардов ссылается на неизвестный шард " + shard);
+            }
+        }
+        snapshot = new Snapshot(bucketShard, moving, loadedAt);
+    }
+
+    /**
+     * Сколько прошло с момента, когда текущая карта была прочитана из БД.
+     */
+    public Duration mapAge() {
+        return Duration.ofNanos(System.nanoTime() - snapshot.loadedAt());
+    }
+
+    /**
+     * Переназначает бакеты [fromBucket, toBucket] на шард и сразу применяет карту у себя.
+     */
+    public void assign(int fromBucket, int toBucket, int shard, boolean moving) {
+        jdbcTemplates.get(0).update("update user_shard_buckets set shard = ?, moving = ? where bucket between ? and ?",
+                shard, moving, fromBucket, toBucket);
+        refresh();
+    }
+
+    /**
+     * Карта в виде непрерывных диапазонов бакетов с одним шардом и состоянием.
+     */
+    public List<BucketRange> ranges() {
+        Snapshot current = snapshot;
+        List<BucketRange> ranges = new ArrayList<>();
+        int start = 0;
+        for (int bucket = 1; bucket <= ShardKeys.BUCKETS; bucket++) {
+            if (bucket == ShardKeys.BUCKETS
+                    || current.bucketShard()[bucket] != current.bucketShard()[start]
+                    || current.moving().get(bucket) != current.moving().get(start)) {
+                ranges.add(new BucketRange(start, bucket - 1, current.bucketShard()[start], current.moving().get(start)));
+                start = bucket;
+            }
+        }
+        return ranges;
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    public int shardOfBucket(int bucket) {
+        return snapshot.bucketShard()[bucket];
+    }
+
+    public boolean isMoving(int bucket) {
+        return snapshot.moving().get(bucket);
+    }
+
+    public DataSource dataSource(int shard) {
+        return shards.get(shard);
+    }
+
+    public JdbcTemplate jdbcTemplate(int shard) {
+        return jdbcTemplates.get(shard);
+    }
+
+    /**
+     * Новый id пользователя, который будет создан в бакете email.
+     */
+    public long nextId(String email) {
+        int bucket = ShardKeys.bucketOfEmail(email);
+        int shard = shardOfBucket(bucket);
+        return ShardKeys.composeId(idBlocks[shard].next(jdbcTemplates.get(shard)), shard, bucket);
+    }
+
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+        for (DataSource shard : shards) {
+            if (shard instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Не удалось закрыть пул шарда: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    public record BucketRange(int fromBucket, int toBucket, int shard, boolean moving) {
+    }
+
+    private record Snapshot(int[] bucketShard, BitSet moving, long loadedAt) {
+    }
+
+    private static final class IdBlock {
+        private long next;
+        private long end;
+
+        synchronized long next(JdbcTemplate jdbcTemplate) {
+            if (next == end) {
+                Long start = jdbcTemplate.queryForObject("select nextval('user_shard_id_seq')", Long.class);
+                next = start;
+                end = start + ID_BLOCK;
+            }
+            return next++;
+        }
+    }
+}
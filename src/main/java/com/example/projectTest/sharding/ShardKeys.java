@@ -0,0 +1,46 @@
+package com.example.projectTest.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.CRC32C;
+
+/**
+ * Ключ шардирования пользователей.
+ * <p>
+ * Email нормализуется и хэшируется в один из {@link #BUCKETS} виртуальных бакетов, бакеты
+ * распределяются по шардам картой в ShardDirectory. Номер бакета записан в младших битах id:
+ * <pre>
+ *   id = sequence << 16 | shard << 10 | bucket
+ * </pre>
+ * поэтому findById находит шард без обращения к справочнику, а после переноса бакета на другой
+ * шард id остаётся прежним. sequence берётся из последовательности шарда, на котором создан
+ * пользователь, и вместе с его номером делает id уникальным во всём кластере.
+ */
+public final class ShardKeys {
+
+    public static final int BUCKET_BITS = 10;
+    public static final int BUCKETS = 1 << BUCKET_BITS;
+    public static final int SHARD_BITS = 6;
+    public static final int MAX_SHARDS = 1 << SHARD_BITS;
+
+    private ShardKeys() {
+    }
+
+    public static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public static int bucketOfEmail(String email) {
+        CRC32C crc = new CRC32C();
+        crc.update(normalize(email).getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() & (BUCKETS - 1));
+    }
+
+    public static int bucketOfId(long id) {
+        return (int) (id & (BUCKETS - 1));
+    }
+
+    public static long composeId(long sequence, int shard, int bucket) {
+        return sequence << (SHARD_BITS + BUCKET_BITS) | (long) shard << BUCKET_BITS | bucket;
+    }
+}
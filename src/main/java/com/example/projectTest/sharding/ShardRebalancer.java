@@ -0,0 +1,147 @@
+package com.example.projectTest.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Перенос диапазонов бакетов между шардами без остановки сервиса.
+ * <p>
+ * Для каждого непрерывного поддиапазона с одним исходным шардом:
+ * <ol>
+ *   <li>бакеты помечаются moving - записи в них отклоняются с 503, чтения идут с исходного шарда;</li>
+ *   <li>строки users и user_email_claims копируются пачками по sharding.rebalance.chunk-size;</li>
+ *   <li>карта переключается на новый шард, сначала ещё с moving, потом без него;</li>
+ *   <li>строки удаляются с исходного шарда.</li>
+ * </ol>
+ * Между шагами выдерживается пауза sharding.rebalance.grace-ms (не меньше интервала обновления
+ * карты), чтобы все экземпляры сервиса увидели новое состояние. Прерванный перенос можно
+ * повторить: перед копированием диапазон на целевом шарде очищается.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardRebalancer {
+
+    private static final String USER_COLUMNS = "id, name, email, age, created_at, version";
+
+    private final ShardDirectory directory;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Value("${sharding.rebalance.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${sharding.rebalance.grace-ms:10000}")
+    private long graceMs;
+
+    public ShardRebalancer(ShardDirectory directory) {
+        this.directory = directory;
+    }
+
+    public MoveResult move(int fromBucket, int toBucket, int targetShard) {
+        if (fromBucket < 0 || toBucket >= ShardKeys.BUCKETS || fromBucket > toBucket) {
+            throw new IllegalArgumentException("Неверный диапазон бакетов: " + fromBucket + ".." + toBucket);
+        }
+        if (targetShard < 0 || targetShard >= directory.shardCount()) {
+            throw new IllegalArgumentException("Неизвестный шард: " + targetShard);
+        }
+        if (!lock.tryLock()) {
+            throw new IllegalStateException("Перенос бакетов уже выполняется");
+        }
+        try {
+            long users = 0;
+            long claims = 0;
+            int start = fromBucket;
+            while (start <= toBucket) {
+                int source = directory.shardOfBucket(start);
+                int end = start;
+                while (end < toBucket && directory.shardOfBucket(end + 1) == source) {
+                    end++;
+                }
+                if (source != targetShard) {
+                    long[] moved = moveRange(start, end, source, targetShard);
+                    users += moved[0];
+                    claims += moved[1];
+                }
+                start = end + 1;
+            }
+            return new MoveResult(fromBucket, toBucket, targetShard, users, claims);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long[] moveRange(int fromBucket, int toBucket, int source, int target) {
+        log.info("Перенос бакетов {}..{} с шарда {} на шард {}", fromBucket, toBucket, source, target);
+        directory.assign(fromBucket, toBucket, source, true);
+        awaitGrace();
+
+        JdbcTemplate from = directory.jdbcTemplate(source);
+        JdbcTemplate to = directory.jdbcTemplate(target);
+        to.update("delete from users where mod(id, " + ShardKeys.BUCKETS + ") between ? and ?", fromBucket, toBucket);
+        to.update("delete from user_email_claims where bucket between ? and ?", fromBucket, toBucket);
+        long users = copyUsers(from, to, fromBucket, toBucket);
+        long claims = copyClaims(from, to, fromBucket, toBucket);
+
+        directory.assign(fromBucket, toBucket, target, true);
+        awaitGrace();
+        directory.assign(fromBucket, toBucket, target, false);
+        awaitGrace();
+
+        from.update("delete from users where mod(id, " + ShardKeys.BUCKETS + ") between ? and ?", fromBucket, toBucket);
+        from.update("delete from user_email_claims where bucket between ? and ?", fromBucket, toBucket);
+        log.info("Бакеты {}..{} перенесены на шард {}: пользователей {}, заявок на email {}",
+                fromBucket, toBucket, target, users, claims);
+        return new long[]{users, claims};
+    }
+
+    private long copyUsers(JdbcTemplate from, JdbcTemplate to, int fromBucket, int toBucket) {
+        long copied = 0;
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            List<Object[]> rows = new ArrayList<>(chunkSize);
+            from.query("select " + USER_COLUMNS + " from users where mod(id, " + ShardKeys.BUCKETS + ") between ? and ?"
+                            + " and id > ? order by id limit ?",
+                    rs -> {
+                        rows.add(new Object[]{rs.getLong(1), rs.getString(2), rs.getString(3), rs.getInt(4),
+                                rs.getObject(5), rs.getLong(6)});
+                    },
+                    fromBucket, toBucket, lastId, chunkSize);
+            if (rows.isEmpty()) {
+                return copied;
+            }
+            to.batchUpdate("insert into users (" + USER_COLUMNS + ") values (?, ?, ?, ?, ?, ?)", rows);
+            copied += rows.size();
+            lastId = (Long) rows.getLast()[0];
+        }
+    }
+
+    private long copyClaims(JdbcTemplate from, JdbcTemplate to, int fromBucket, int toBucket) {
+        List<Object[]> rows = from.query("select email, user_id, bucket from user_email_claims where bucket between ? and ?",
+                (rs, rowNum) -> new Object[]{rs.getString(1), rs.getLong(2), rs.getInt(3)},
+                fromBucket, toBucket);
+        if (!rows.isEmpty()) {
+            to.batchUpdate("insert into user_email_claims (email, user_id, bucket) values (?, ?, ?)", rows);
+        }
+        return rows.size();
+    }
+
+    private void awaitGrace() {
+        try {
+            Thread.sleep(graceMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Перенос бакетов прерван", e);
+        }
+    }
+
+    public record MoveResult(int fromBucket, int toBucket, int targetShard, long users, long emailClaims) {
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.projectTest.sharding;
+
+import com.example.projectTest.exception.ShardMovingException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Выполнение операций над users на нужном шарде.
+ * <p>
+ * Каждая операция на шарде идёт в собственной транзакции (REQUIRES_NEW), начатой уже после
+ * выбора шарда: внешняя транзакция сервиса к этому моменту ещё не взяла соединение и так и
+ * не возьмёт его, если всё сделано на шардах. Без sharding.enabled операции выполняются
+ * как есть, в текущей транзакции и на единственной БД.
+ * <p>
+ * Запись отклоняется с ShardMovingException, если карта шардов не обновлялась дольше
+ * sharding.map-max-age-ms (по умолчанию sharding.rebalance.grace-ms): за это время перенос
+ * на другом экземпляре мог пометить бакет moving, а этот экземпляр об этом ещё не знает.
+ */
+@Component
+@Slf4j
+public class ShardRouter {
+
+    private final ShardDirectory directory;
+
+    private final TransactionTemplate readTransaction;
+
+    private final TransactionTemplate writeTransaction;
+
+    private final ExecutorService scatterExecutor;
+
+    private final Duration mapMaxAge;
+
+    public ShardRouter(ObjectProvider<ShardDirectory> directory,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${sharding.map-max-age-ms:${sharding.rebalance.grace-ms:10000}}") long mapMaxAgeMs) {
+        this.directory = directory.getIfAvailable();
+        this.mapMaxAge = Duration.ofMillis(mapMaxAgeMs);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+        this.scatterExecutor = this.directory == null ? null
+                : Executors.newFixedThreadPool(this.directory.shardCount(), Thread.ofPlatform().name("shard-scatter-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scatterExecutor != null) {
+            scatterExecutor.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Операция над пользователем по id: шард определяется бакетом из младших битов id.
+     */
+    public <T> T onUser(long id, boolean write, Supplier<T> action) {
+        if (directory == null) {
+            return action.get();
+        }
+        return onBucket(ShardKeys.bucketOfId(id), write, action);
+    }
+
+    /**
+     * Операция по email: шард определяется хэшем нормализованного email.
+     */
+    public <T> T onEmail(String email, boolean write, Supplier<T> action) {
+        if (directory == null) {
+            return action.get();
+        }
+        return onBucket(ShardKeys.bucketOfEmail(email), write, action);
+    }
+
+    /**
+     * Выполняет операцию на каждом шарде параллельно и объединяет результаты.
+     */
+    public <T> List<T> scatter(Supplier<List<T>> action) {
+        if (directory == null) {
+            return action.get();
+        }
+        List<CompletableFuture<List<T>>> parts = new ArrayList<>(directory.shardCount());
+        for (int shard = 0; shard < directory.shardCount(); shard++) {
+            int target = shard;
+            parts.add(CompletableFuture.supplyAsync(() -> onShard(target, false, action), scatterExecutor));
+        }
+        List<T> result = new ArrayList<>();
+        try {
+            parts.forEach(part -> result.addAll(part.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * id для нового пользователя; без шардирования id выдаёт БД при вставке.
+     */
+    public Long newId(String email) {
+        return directory == null ? null : directory.nextId(email);
+    }
+
+    public boolean sameBucket(String email, long id) {
+        return ShardKeys.bucketOfEmail(email) == ShardKeys.bucketOfId(id);
+    }
+
+    private <T> T onBucket(int bucket, boolean write, Supplier<T> action) {
+        if (write && directory.isMoving(bucket)) {
+            throw new ShardMovingException();
+        }
+        if (write && directory.mapAge().compareTo(mapMaxAge) > 0) {
+            log.warn("Карта шардов не обновлялась {} мс, запись отклонена", directory.mapAge().toMillis());
+            throw new ShardMovingException();
+        }
+        return onShard(directory.shardOfBucket(bucket), write, action);
+    }
+
+    <T> T onShard(int shard, boolean write, Supplier<T> action) {
+        Integer previous = ShardRoutingDataSource.currentShard();
+        ShardRoutingDataSource.setCurrentShard(shard);
+        try {
+            return (write ? writeTransaction : readTransaction).execute(status -> action.get());
+        } finally {
+            ShardRoutingDataSource.setCurrentShard(previous);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.projectTest.sharding;
+
+import com.example.projectTest.entity.UserEmailClaim;
+import com.example.projectTest.exception.DuplicateEmailException;
+import com.example.projectTest.exception.ShardMovingException;
+import com.example.projectTest.repository.UserEmailClaimRepository;
+import com.example.projectTest.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Уникальность и поиск email при шардировании.
+ * <p>
+ * Email, совпадающий по бакету с id пользователя, проверяется обычным уникальным ограничением
+ * users на своём шарде. Для email из чужого бакета на шарде этого бакета хранится UserEmailClaim.
+ * Заявка ставится до изменения пользователя и снимается после, поэтому сбой посередине оставляет
+ * лишнюю заявку, а не дубликат. Без шардирования все методы ничего не делают.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ShardedEmailIndex {
+
+    private final ShardRouter shardRouter;
+
+    private final UserRepository userRepository;
+
+    private final UserEmailClaimRepository claimRepository;
+
+    /**
+     * Проверка внутри операции создания на шарде email: адрес не занят пользователем из другого бакета.
+     */
+    public void checkNotClaimed(String email) {
+        if (shardRouter.isEnabled() && claimRepository.existsById(email)) {
+            throw new DuplicateEmailException();
+        }
+    }
+
+    /**
+     * id пользователя, сменившего email на адрес из другого бакета.
+     */
+    public Optional<Long> findClaimedUserId(String email) {
+        if (!shardRouter.isEnabled()) {
+            return Optional.empty();
+        }
+        return shardRouter.onEmail(email, false, () -> claimRepository.findById(email).map(UserEmailClaim::getUserId));
+    }
+
+    /**
+     * Занимает email для пользователя перед сменой адреса.
+     *
+     * @return true, если создана новая заявка и её нужно снять при неудачном изменении
+     */
+    public boolean reserve(String email, long userId) {
+        if (!shardRouter.isEnabled()) {
+            return false;
+        }
+        return shardRouter.onEmail(email, true, () -> {
+            if (userRepository.findByEmail(email).filter(user -> user.getId() != userId).isPresent()) {
+                throw new DuplicateEmailException();
+            }
+            Optional<UserEmailClaim> claim = claimRepository.findById(email);
+            if (claim.isPresent()) {
+                if (claim.get().getUserId() != userId) {
+                    throw new DuplicateEmailException();
+                }
+                return false;
+            }
+            if (shardRouter.sameBucket(email, userId)) {
+                return false;
+            }
+            claimRepository.save(new UserEmailClaim(email, userId, ShardKeys.bucketOfEmail(email)));
+            return true;
+        });
+    }
+
+    /**
+     * Снимает заявку пользователя на email, если она есть.
+     */
+    public void release(String email, long userId) {
+        if (!shardRouter.isEnabled() || shardRouter.sameBucket(email, userId)) {
+            return;
+        }
+        try {
+            shardRouter.onEmail(email, true, () -> {
+                claimRepository.findById(email)
+                        .filter(claim -> claim.getUserId() == userId)
+                        .ifPresent(claimRepository::delete);
+                return null;
+            });
+        } catch (ShardMovingException e) {
+            // лишняя заявка только придерживает адрес, снимем её вручную после переноса
+            log.warn("Заявка на email {} пользователя {} не снята: бакет переносится", email, userId);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.projectTest.sharding;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Identity-колонка, которая принимает заранее назначенный id.
+ * Без шардирования id выдаёт БД, при шардировании его назначает ShardRouter.
+ */
+@IdGeneratorType(ShardedIdentityGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface ShardedIdentity {
+}
@@ -0,0 +1,30 @@
+package com.example.projectTest.sharding;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.GeneratorCreationContext;
+import org.hibernate.id.IdentityGenerator;
+import org.hibernate.mapping.SimpleValue;
+
+import java.lang.reflect.Member;
+
+/**
+ * Identity-генератор, который оставляет назначенный id: вставка с id пишет его явно,
+ * без id - получает значение identity-колонки.
+ */
+public class ShardedIdentityGenerator extends IdentityGenerator {
+
+    public ShardedIdentityGenerator(ShardedIdentity config, Member member, GeneratorCreationContext context) {
+        // в отличие от @GeneratedValue(IDENTITY) пользовательский генератор сам не делает колонку identity
+        ((SimpleValue) context.getProperty().getValue()).setColumnToIdentity();
+    }
+
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return true;
+    }
+
+    @Override
+    public boolean generatedOnExecution(Object owner, SharedSessionContractImplementor session) {
+        return session.getEntityPersister(null, owner).getIdentifier(owner, session) == null;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.projectTest.shutdown;
+
+import com.example.projectTest.kafka.UserEvent;
+import com.example.projectTest.kafka.UserEventProducer;
+import com.example.projectTest.service.PendingEventProcessor;
+import com.example.projectTest.service.UserEventPublisher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.server.context.WebServerApplicationContext;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Упорядоченная остановка узла при выкатке.
+ * <p>
+ * Приём и ожидание HTTP-запросов делает server.shutdown=graceful (фаза веб-сервера), потребители
+ * команд и gRPC останавливаются раньше. Координатор срабатывает после них, пока пул соединений
+ * и фабрика продюсеров Kafka ещё открыты:
+ * <ol>
+ *     <li>дожидается запросов, которые ещё выполняются (graceful-shutdown.request-timeout-ms);</li>
+ *     <li>сбрасывает буфер KafkaTemplate и ждёт ack отправленных событий (kafka-flush-timeout-ms);</li>
+ *     <li>события без ack сразу сохраняет в pending_kafka_events, чтобы их отправил другой узел,
+ *     даже если дальнейшая остановка не успеет завершиться;</li>
+ *     <li>останавливает PendingEventProcessor: текущее событие пачки дорабатывается,
+ *     остальные строки отпускаются другим узлам (outbox-timeout-ms).</li>
+ * </ol>
+ * Сумма сроков этапов должна быть меньше spring.lifecycle.timeout-per-shutdown-phase, иначе
+ * при старте пишется предупреждение.
+ * Время остановки и число дождавшихся запросов и событий пишутся в метрики users.shutdown.*.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "graceful-shutdown.enabled", havingValue = "true", matchIfMissing = true)
+public class GracefulShutdownCoordinator implements SmartLifecycle {
+
+    // после остановки веб-сервера, но до фабрики продюсеров Kafka (Integer.MIN_VALUE)
+    static final int PHASE = WebServerApplicationContext.START_STOP_LIFECYCLE_PHASE - 1024;
+
+    private static final long REQUEST_POLL_MS = 10;
+
+    private final InFlightRequestFilter inFlightRequests;
+
+    private final UserEventProducer userEventProducer;
+
+    private final UserEventPublisher userEventPublisher;
+
+    private final PendingEventProcessor pendingEventProcessor;
+
+    private final Duration requestTimeout;
+
+    private final Duration kafkaFlushTimeout;
+
+    private final Duration outboxTimeout;
+
+    private final Timer shutdownTimer;
+
+    private final Counter drainedRequests;
+
+    private final Counter acknowledgedEvents;
+
+    private final Counter storedEvents;
+
+    private final Counter releasedPendingEvents;
+
+    private volatile boolean running;
+
+    private volatile long shutdownStartedAt;
+
+    private volatile int requestsAtShutdown;
+
+    public GracefulShutdownCoordinator(InFlightRequestFilter inFlightRequests,
+                                       UserEventProducer userEventProducer,
+                                       UserEventPublisher userEventPublisher,
+                                       PendingEventProcessor pendingEventProcessor,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${graceful-shutdown.request-timeout-ms:5000}") long requestTimeoutMs,
+                                       @Value("${graceful-shutdown.kafka-flush-timeout-ms:10000}") long kafkaFlushTimeoutMs,
+                                       @Value("${graceful-shutdown.outbox-timeout-ms:10000}") long outboxTimeoutMs,
+                                       @Value("${spring.lifecycle.timeout-per-shutdown-phase:30s}") Duration phaseTimeout) {
+        this.inFlightRequests = inFlightRequests;
+        this.userEventProducer = userEventProducer;
+        this.userEventPublisher = userEventPublisher;
+        this.pendingEventProcessor = pendingEventProcessor;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.kafkaFlushTimeout = Duration.ofMillis(kafkaFlushTimeoutMs);
+        this.outboxTimeout = Duration.ofMillis(outboxTimeoutMs);
+        Duration total = requestTimeout.plus(kafkaFlushTimeout).plus(outboxTimeout);
+        if (total.compareTo(phaseTimeout) >= 0) {
+            log.warn("Сроки этапов остановки в сумме {} мс не меньше timeout-per-shutdown-phase {} мс",
+                    total.toMillis(), phaseTimeout.toMillis());
+        }
+        this.shutdownTimer = Timer.builder("users.shutdown.duration")
+                .description("Время остановки узла от закрытия контекста до сохранения неотправленных событий")
+                .register(meterRegistry);
+        this.drainedRequests = drainedCounter(meterRegistry, "requests",
+                "HTTP-запросы, дождавшиеся завершения при остановке");
+        this.acknowledgedEvents = drainedCounter(meterRegistry, "kafka.acknowledged",
+                "События, подтверждённые брокером при остановке");
+        this.storedEvents = drainedCounter(meterRegistry, "kafka.stored",
+                "События без подтверждения брокера, сохранённые в pending_kafka_events при остановке");
+        this.releasedPendingEvents = drainedCounter(meterRegistry, "outbox.released",
+                "Отложенные события, оставленные другим узлам при остановке");
+    }
+
+    // Закрытие контекста начинается до остановки фаз: здесь запоминается начало и число запросов в работе
+    @EventListener
+    public void onContextClosed(ContextClosedEvent event) {
+        if (shutdownStartedAt == 0) {
+            shutdownStartedAt = System.nanoTime();
+            requestsAtShutdown = inFlightRequests.getActive();
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        long start = shutdownStartedAt != 0 ? shutdownStartedAt : System.nanoTime();
+        try {
+            ShutdownReport report = drain();
+            long elapsed = System.nanoTime() - start;
+            shutdownTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            log.info("Узел остановлен за {} мс: запросов дождались {} (не завершилось {}), событий подтверждено {}, "
+                            + "сохранено без ack {}, отложенных событий отпущено {}",
+                    TimeUnit.NANOSECONDS.toMillis(elapsed), report.requestsDrained(), report.requestsAbandoned(),
+                    report.eventsAcknowledged(), report.eventsStored(), report.pendingEventsReleased());
+        } catch (Exception e) {
+            // остальные фазы остановки должны выполниться в любом случае
+            log.error("Ошибка при упорядоченной остановке узла: {}", e.getMessage(), e);
+        } finally {
+            running = false;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    ShutdownReport drain() {
+        int requestsAbandoned = awaitRequests();
+        int requestsDrained = Math.max(0, requestsAtShutdown - requestsAbandoned);
+        drainedRequests.increment(requestsDrained);
+
+        UserEventProducer.InFlightSends sends = userEventProducer.awaitInFlight(kafkaFlushTimeout);
+        acknowledgedEvents.increment(sends.acknowledged());
+        int stored = store(sends.unacknowledged());
+        storedEvents.increment(stored);
+
+        int released = pendingEventProcessor.drain(outboxTimeout);
+        releasedPendingEvents.increment(released);
+        return new ShutdownReport(requestsDrained, requestsAbandoned, sends.acknowledged(), stored, released);
+    }
+
+    // Веб-сервер уже дождался своих запросов; ожидание здесь страхует запуск без server.shutdown=graceful
+    private int awaitRequests() {
+        long deadline = System.nanoTime() + requestTimeout.toNanos();
+        while (inFlightRequests.getActive() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(REQUEST_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int abandoned = inFlightRequests.getActive();
+        if (abandoned > 0) {
+            log.warn("При остановке не завершились {} HTTP-запросов за {} мс", abandoned, requestTimeout.toMillis());
+        }
+        return abandoned;
+    }
+
+    private int store(List<UserEvent> unacknowledged) {
+        if (unacknowledged.isEmpty()) {
+            return 0;
+        }
+        try {
+            userEventPublisher.storeUnacknowledged(unacknowledged);
+            return unacknowledged.size();
+        } catch (Exception e) {
+            log.error("Не удалось сохранить {} неподтверждённых событий при остановке: {}",
+                    unacknowledged.size(), e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    private static Counter drainedCounter(MeterRegistry registry, String stage, String description) {
+        return Counter.builder("users.shutdown.drained")
+                .tag("stage", stage)
+                .description(description)
+                .register(registry);
+    }
+
+    record ShutdownReport(int requestsDrained, int requestsAbandoned, int eventsAcknowledged,
+                          int eventsStored, int pendingEventsReleased) {
+    }
+}
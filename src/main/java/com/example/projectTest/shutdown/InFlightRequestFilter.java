@@ -0,0 +1,41 @@
+package com.example.projectTest.shutdown;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Счётчик выполняющихся HTTP-запросов для {@link GracefulShutdownCoordinator}:
+ * по нему видно, сколько запросов было в работе в момент остановки и дождались ли их.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "graceful-shutdown.enabled", havingValue = "true", matchIfMissing = true)
+public class InFlightRequestFilter extends OncePerRequestFilter {
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    public int getActive() {
+        return active.get();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        active.incrementAndGet();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+}
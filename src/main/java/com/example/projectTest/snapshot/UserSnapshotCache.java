@@ -0,0 +1,125 @@
+package com.example.projectTest.snapshot;
+
+import com.example.projectTest.dto.UserDto;
+import com.example.projectTest.kafka.UserEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Локальная копия пользователей для поиска по id и email (user-snapshots.cache.enabled=true).
+ * <p>
+ * Наполняется из топика снимков {@link UserSnapshotLoader} и собственными изменениями узла
+ * через {@link UserSnapshotPublisher}. Снимок применяется, только если его версия не меньше
+ * известной. До окончания прогрева кэш не отвечает, и поиск идёт в БД; после прогрева
+ * промах тоже уходит в БД, а изменения с других узлов видны с задержкой чтения топика.
+ */
+@Component
+public class UserSnapshotCache {
+
+    private final Map<Long, CachedUser> byId = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> idByEmail = new ConcurrentHashMap<>();
+
+    @Value("${user-snapshots.cache.enabled:false}")
+    private boolean enabled;
+
+    private volatile boolean ready;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    void markReady() {
+        ready = true;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public Optional<UserDto> findById(Long id) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(byId.get(id)).map(CachedUser::toUserDto);
+    }
+
+    /**
+     * Версия пользователя для проверки If-None-Match без сборки UserDto.
+     */
+    public Optional<Long> findVersion(Long id) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(byId.get(id)).map(CachedUser::version);
+    }
+
+    public Optional<UserDto> findByEmail(String email) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        Long id = idByEmail.get(email);
+        return Optional.ofNullable(id == null ? null : byId.get(id))
+                .filter(user -> user.email().equals(email))
+                .map(CachedUser::toUserDto);
+    }
+
+    void put(UserEvent snapshot) {
+        if (!enabled || snapshot.getUserId() == null) {
+            return;
+        }
+        CachedUser user = CachedUser.of(snapshot);
+        byId.compute(user.id(), (id, current) -> {
+            if (current != null && current.version() > user.version()) {
+                return current;
+            }
+            if (current != null && !current.email().equals(user.email())) {
+                idByEmail.remove(current.email(), id);
+            }
+            idByEmail.put(user.email(), id);
+            return user;
+        });
+    }
+
+    void remove(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        byId.computeIfPresent(userId, (id, current) -> {
+            idByEmail.remove(current.email(), id);
+            return null;
+        });
+    }
+
+    /**
+     * Компактная запись: на миллионы пользователей важен каждый объект.
+     */
+    private record CachedUser(long id, String email, String name, int age, Instant createdAt, long version) {
+
+        static CachedUser of(UserEvent snapshot) {
+            return new CachedUser(snapshot.getUserId(), snapshot.getEmail(), snapshot.getName(),
+                    snapshot.getAge() == null ? 0 : snapshot.getAge(), snapshot.getCreatedAt(),
+                    snapshot.getVersion() == null ? 0 : snapshot.getVersion());
+        }
+
+        UserDto toUserDto() {
+            return UserDto.builder()
+                    .id(id)
+                    .email(email)
+                    .name(name)
+                    .age(age)
+                    .createdAt(createdAt)
+                    .version(version)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.projectTest.snapshot;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.health.contributor.Health;
+import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * OUT_OF_SERVICE, пока кэш пользователей прогревается: узел не получает трафик из Eureka
+ * (eureka.client.healthcheck.enabled) и не проходит readiness-проверку.
+ * С выключенным кэшем всегда UP: индикатор входит в группу readiness при любых настройках.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserSnapshotHealthIndicator implements HealthIndicator {
+
+    private final ObjectProvider<UserSnapshotLoader> loaderProvider;
+
+    private final UserSnapshotCache cache;
+
+    @Override
+    public Health health() {
+        UserSnapshotLoader loader = loaderProvider.getIfAvailable();
+        if (loader == null) {
+            return Health.up().withDetail("warmup", "DISABLED").build();
+        }
+        Health.Builder builder = loader.isWarmingUp() ? Health.outOfService() : Health.up();
+        return builder
+                .withDetail("warmup", loader.isWarmingUp() ? "IN_PROGRESS" : loader.isFailed() ? "FAILED" : "DONE")
+                .withDetail("partitions", loader.getPartitions())
+                .withDetail("partitionsLoaded", loader.getPartitionsLoaded())
+                .withDetail("snapshotsRead", loader.getRecordsRead())
+                .withDetail("warmupMillis", loader.getWarmupMillis())
+                .withDetail("cachedUsers", cache.size())
+                .build();
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.projectTest.snapshot;
+
+import com.example.projectTest.kafka.UserEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.support.KafkaUtils;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Прогрев {@link UserSnapshotCache} из топика снимков при старте и чтение новых снимков после него.
+ * <p>
+ * Прогрев идёт в ApplicationRunner, то есть до того, как приложение объявит себя готовым
+ * (readiness), а {@link UserSnapshotHealthIndicator} до его конца держит узел в OUT_OF_SERVICE
+ * и в Eureka. Каждая партиция читается с начала до конца, зафиксированного на старте,
+ * своим потребителем, партиции - параллельно (user-snapshots.warmup.threads, 0 - по потоку
+ * на партицию). Затем один потребитель без группы читает все партиции с этих смещений
+ * и доносит до кэша изменения других узлов.
+ * <p>
+ * Если прогрев не удался, узел всё равно становится готовым, но кэш остаётся выключенным
+ * и поиск идёт в БД.
+ */
+@Component
+@Slf4j
+@Order(2)
+@ConditionalOnProperty(name = "user-snapshots.cache.enabled", havingValue = "true")
+public class UserSnapshotLoader implements ApplicationRunner {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+    private final UserSnapshotCache cache;
+
+    private final ConsumerFactory<String, UserEvent> consumerFactory;
+
+    private final AtomicLong recordsRead = new AtomicLong();
+
+    private final AtomicInteger partitionsLoaded = new AtomicInteger();
+
+    @Value("${user-snapshots.topic:user-snapshots}")
+    private String topicName;
+
+    @Value("${user-snapshots.warmup.threads:0}")
+    private int warmupThreads;
+
+    private volatile int partitions;
+
+    private volatile boolean warmingUp = true;
+
+    private volatile boolean failed;
+
+    private volatile long warmupMillis;
+
+    private volatile boolean running = true;
+
+    private volatile Consumer<String, UserEvent> follower;
+
+    public UserSnapshotLoader(UserSnapshotCache cache, ConsumerFactory<String, UserEvent> userSnapshotConsumerFactory) {
+        this.cache = cache;
+        this.consumerFactory = userSnapshotConsumerFactory;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        warmUp();
+    }
+
+    public void warmUp() {
+        long start = System.nanoTime();
+        try {
+            Map<TopicPartition, Long> endOffsets = endOffsets();
+            partitions = endOffsets.size();
+            load(endOffsets);
+            warmupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            cache.markReady();
+            log.info("Кэш пользователей прогрет: {} снимков из {} партиций за {} мс, в кэше {}",
+                    recordsRead.get(), partitions, warmupMillis, cache.size());
+            Thread.ofPlatform().name("user-snapshot-follower").daemon().start(() -> follow(endOffsets));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed = true;
+        } catch (RuntimeException | ExecutionException e) {
+            failed = true;
+            log.error("Прогрев кэша пользователей не удался, поиск пойдёт в БД: ", e);
+        } finally {
+            warmingUp = false;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        Consumer<String, UserEvent> consumer = follower;
+        if (consumer != null) {
+            consumer.wakeup();
+        }
+    }
+
+    public boolean isWarmingUp() {
+        return warmingUp;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public long getRecordsRead() {
+        return recordsRead.get();
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public int getPartitionsLoaded() {
+        return partitionsLoaded.get();
+    }
+
+    public long getWarmupMillis() {
+        return warmupMillis;
+    }
+
+    private Map<TopicPartition, Long> endOffsets() {
+        try (Consumer<String, UserEvent> consumer = consumerFactory.createConsumer()) {
+            List<TopicPartition> topicPartitions = consumer.partitionsFor(topicName).stream()
+                    .map(info -> new TopicPartition(topicName, info.partition()))
+                    .toList();
+            return consumer.endOffsets(topicPartitions);
+        }
+    }
+
+    private void load(Map<TopicPartition, Long> endOffsets) throws InterruptedException, ExecutionException {
+        int threads = warmupThreads > 0 ? Math.min(warmupThreads, endOffsets.size()) : endOffsets.size();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 1),
+                Thread.ofPlatform().name("user-snapshot-warmup-", 0).factory());
+        try {
+            List<Future<?>> loads = new ArrayList<>();
+            endOffsets.forEach((partition, endOffset) -> loads.add(executor.submit(() -> loadPartition(partition, endOffset))));
+            for (Future<?> partitionLoad : loads) {
+                partitionLoad.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void loadPartition(TopicPartition partition, long endOffset) {
+        try (Consumer<String, UserEvent> consumer = consumerFactory.createConsumer()) {
+            consumer.assign(List.of(partition));
+            consumer.seekToBeginning(List.of(partition));
+            while (consumer.position(partition) < endOffset) {
+                consumer.poll(POLL_TIMEOUT).forEach(this::apply);
+            }
+        }
+        partitionsLoaded.incrementAndGet();
+    }
+
+    private void follow(Map<TopicPartition, Long> offsets) {
+        try (Consumer<String, UserEvent> consumer = consumerFactory.createConsumer()) {
+            follower = consumer;
+            consumer.assign(offsets.keySet());
+            offsets.forEach(consumer::seek);
+            while (running) {
+                consumer.poll(Duration.ofSeconds(1)).forEach(this::apply);
+            }
+        } catch (WakeupException e) {
+            log.debug("Чтение снимков пользователей остановлено");
+        } catch (RuntimeException e) {
+            log.error("Чтение снимков пользователей прервано, кэш перестаёт обновляться: ", e);
+        }
+    }
+
+    private void apply(ConsumerRecord<String, UserEvent> record) {
+        recordsRead.incrementAndGet();
+        if (record.headers().lastHeader(KafkaUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER) != null) {
+            log.warn("Пропущен нераспознанный снимок {}-{}@{}", record.topic(), record.partition(), record.offset());
+            return;
+        }
+        if (record.value() != null) {
+            cache.put(record.value());
+        } else {
+            cache.remove(Long.parseLong(record.key()));
+        }
+    }
+}
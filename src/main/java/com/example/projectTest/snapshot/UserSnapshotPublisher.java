@@ -0,0 +1,103 @@
+package com.example.projectTest.snapshot;
+
+import com.example.projectTest.entity.User;
+import com.example.projectTest.kafka.UserEvent;
+import com.example.projectTest.kafka.UserEventProducer;
+import com.example.projectTest.mapper.UserMapper;
+import com.example.projectTest.repository.UserRepository;
+import com.example.projectTest.sharding.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Полные снимки пользователей в сжимаемом (cleanup.policy=compact) топике user-snapshots.
+ * <p>
+ * Ключ - id пользователя, значение - UserEvent с текущим состоянием, при удалении - tombstone
+ * (null). После сжатия в топике остаётся последний снимок каждого пользователя, поэтому
+ * по нему можно восстановить полную копию, прочитав топик с начала.
+ * <p>
+ * Снимки идут вместе с событиями из UserEventPublisher. События, отправленные с опозданием из
+ * pending_kafka_events, снимок не повторяют - для них {@link #refresh(Long)} берёт текущее
+ * состояние из БД: устаревшее событие не должно вернуть в топик уже удалённого пользователя.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class UserSnapshotPublisher {
+
+    private final KafkaTemplate<String, UserEvent> kafkaTemplate;
+
+    private final UserSnapshotCache userSnapshotCache;
+
+    private final UserRepository userRepository;
+
+    private final UserMapper userMapper;
+
+    private final ShardRouter shardRouter;
+
+    @Value("${user-snapshots.enabled:false}")
+    private boolean enabled;
+
+    @Value("${user-snapshots.topic:user-snapshots}")
+    private String topicName;
+
+    /**
+     * Снимок по событию, которое только что отправлено в топик событий.
+     */
+    public void publish(UserEvent event) {
+        applyLocally(event);
+        if (enabled && event.getUserId() != null) {
+            send(event.getUserId(), "DELETED".equals(event.getTitle()) ? null : event);
+        }
+    }
+
+    /**
+     * Изменение узла сразу видно его собственному кэшу, даже если Kafka недоступна.
+     */
+    public void applyLocally(UserEvent event) {
+        if (event.getUserId() == null) {
+            return;
+        }
+        if ("DELETED".equals(event.getTitle())) {
+            userSnapshotCache.remove(event.getUserId());
+        } else {
+            userSnapshotCache.put(event);
+        }
+    }
+
+    /**
+     * Снимок по текущему состоянию пользователя в БД (tombstone, если его уже нет).
+     */
+    public void refresh(Long userId) {
+        if (userId == null || (!enabled && !userSnapshotCache.isEnabled())) {
+            return;
+        }
+        Optional<User> user = shardRouter.onUser(userId, false, () -> userRepository.findById(userId));
+        UserEvent snapshot = user.map(current -> userMapper.toUserEvent(current, "SNAPSHOT", 0)).orElse(null);
+        if (snapshot != null) {
+            userSnapshotCache.put(snapshot);
+        } else {
+            userSnapshotCache.remove(userId);
+        }
+        if (enabled) {
+            send(userId, snapshot);
+        }
+    }
+
+    private void send(Long userId, UserEvent snapshot) {
+        ProducerRecord<String, UserEvent> record = snapshot != null
+                ? UserEventProducer.toRecord(topicName, snapshot)
+                : new ProducerRecord<>(topicName, String.valueOf(userId), null);
+        kafkaTemplate.send(record).whenComplete((result, exception) -> {
+            if (exception != null) {
+                log.error("Не удалось отправить снимок пользователя {}: {}", userId, exception.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.projectTest.startup;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.type.MethodMetadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Делает ленивыми бины, которые не нужны для обслуживания запросов сразу после старта
+ * (по умолчанию springdoc и OpenApiConfig). Бин относится к отложенным, если его класс
+ * или класс конфигурации, объявившей его {@code @Bean}-методом, начинается с одного из префиксов.
+ * <p>
+ * Ленивый бин, от которого зависит неленивый, всё равно создаётся при старте - отложить удаётся
+ * только самостоятельные бины вроде контроллеров /v3/api-docs и swagger-ui.
+ */
+public class DeferredInitializationPostProcessor implements BeanFactoryPostProcessor {
+
+    private final List<String> classPrefixes;
+
+    private final List<String> deferredBeanNames = new ArrayList<>();
+
+    public DeferredInitializationPostProcessor(List<String> classPrefixes) {
+        this.classPrefixes = List.copyOf(classPrefixes);
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+            if (definition.isAbstract() || !definition.isSingleton() || definition.isLazyInit()) {
+                continue;
+            }
+            String className = declaringClassName(beanFactory, definition);
+            if (className != null && classPrefixes.stream().anyMatch(className::startsWith)) {
+                definition.setLazyInit(true);
+                deferredBeanNames.add(beanName);
+            }
+        }
+    }
+
+    /**
+     * Бины, отложенные до готовности приложения, в порядке объявления.
+     */
+    public List<String> getDeferredBeanNames() {
+        return Collections.unmodifiableList(deferredBeanNames);
+    }
+
+    private static String declaringClassName(ConfigurableListableBeanFactory beanFactory, BeanDefinition definition) {
+        if (definition instanceof AnnotatedBeanDefinition annotated) {
+            MethodMetadata factoryMethod = annotated.getFactoryMethodMetadata();
+            if (factoryMethod != null) {
+                return factoryMethod.getDeclaringClassName();
+            }
+        }
+        if (definition.getBeanClassName() != null) {
+            return definition.getBeanClassName();
+        }
+        String factoryBeanName = definition.getFactoryBeanName();
+        return factoryBeanName != null && beanFactory.containsBeanDefinition(factoryBeanName)
+                ? beanFactory.getBeanDefinition(factoryBeanName).getBeanClassName()
+                : null;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.projectTest.startup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Быстрый старт (startup.deferred.enabled=true, профиль fast-startup): необязательные для первых
+ * запросов бины и создание топиков откладываются до готовности приложения.
+ * <p>
+ * springdoc помечается ленивым {@link DeferredInitializationPostProcessor}. Топики при
+ * spring.kafka.admin.auto-create=false не создаются при старте, KafkaAdmin не ждёт брокер
+ * до открытия порта. Когда приложение объявляет себя готовым принимать трафик,
+ * в отдельном потоке создаются топики и отложенные бины, чтобы первый запрос к /v3/api-docs
+ * не платил за их создание. Топики, нужные с первого запроса, в рабочих окружениях
+ * к этому моменту уже существуют: KafkaAdmin только досоздаёт новые и добавляет партиции.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "startup.deferred.enabled", havingValue = "true")
+public class DeferredStartupConfig {
+
+    @Bean
+    static DeferredInitializationPostProcessor deferredInitializationPostProcessor(Environment environment) {
+        String prefixes = environment.getProperty("startup.deferred.class-prefixes",
+                "org.springdoc.,com.example.projectTest.config.OpenApiConfig");
+        return new DeferredInitializationPostProcessor(Arrays.stream(prefixes.split(","))
+                .map(String::trim)
+                .filter(prefix -> !prefix.isEmpty())
+                .toList());
+    }
+
+    @Bean
+    DeferredInitializer deferredInitializer(ApplicationContext applicationContext,
+                                            DeferredInitializationPostProcessor postProcessor,
+                                            ObjectProvider<KafkaAdmin> kafkaAdmin,
+                                            @Value("${spring.kafka.admin.auto-create:true}") boolean topicsCreatedAtStartup) {
+        return new DeferredInitializer(applicationContext, postProcessor, kafkaAdmin, topicsCreatedAtStartup);
+    }
+
+    static class DeferredInitializer {
+
+        private final ApplicationContext applicationContext;
+
+        private final DeferredInitializationPostProcessor postProcessor;
+
+        private final ObjectProvider<KafkaAdmin> kafkaAdmin;
+
+        private final boolean topicsCreatedAtStartup;
+
+        private volatile boolean started;
+
+        DeferredInitializer(ApplicationContext applicationContext, DeferredInitializationPostProcessor postProcessor,
+                            ObjectProvider<KafkaAdmin> kafkaAdmin, boolean topicsCreatedAtStartup) {
+            this.applicationContext = applicationContext;
+            this.postProcessor = postProcessor;
+            this.kafkaAdmin = kafkaAdmin;
+            this.topicsCreatedAtStartup = topicsCreatedAtStartup;
+        }
+
+        @EventListener
+        public void onReadiness(AvailabilityChangeEvent<ReadinessState> event) {
+            if (event.getState() != ReadinessState.ACCEPTING_TRAFFIC || started) {
+                return;
+            }
+            started = true;
+            Thread.ofPlatform().name("deferred-startup").daemon().start(this::initialize);
+        }
+
+        private void initialize() {
+            long start = System.nanoTime();
+            // бины создаются быстро, а KafkaAdmin может ждать брокер до таймаута запроса
+            for (String beanName : postProcessor.getDeferredBeanNames()) {
+                try {
+                    applicationContext.getBean(beanName);
+                } catch (RuntimeException e) {
+                    log.warn("Отложенный бин {} не создан: {}", beanName, e.getMessage());
+                }
+            }
+            if (!topicsCreatedAtStartup) {
+                KafkaAdmin admin = kafkaAdmin.getIfAvailable();
+                if (admin != null) {
+                    try {
+                        admin.initialize();
+                    } catch (RuntimeException e) {
+                        log.error("Отложенное создание топиков не удалось: ", e);
+                    }
+                }
+            }
+            log.info("Отложенная инициализация завершена за {} мс: топики {}, бинов {}",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    topicsCreatedAtStartup ? "созданы при старте" : "созданы после готовности",
+                    postProcessor.getDeferredBeanNames().size());
+        }
+    }
+}
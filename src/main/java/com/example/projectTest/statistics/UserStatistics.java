@@ -0,0 +1,205 @@
+package com.example.projectTest.statistics;
+
+import com.example.projectTest.dto.UserStatisticsDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Агрегаты по пользователям для /api/users/statistics: число пользователей, средний возраст,
+ * распределение по возрасту десятилетиями и регистрации по дням (UTC) за user-statistics.signup-days.
+ * <p>
+ * Счётчики - LongAdder: UserService меняет их после коммита create/update/delete без общей
+ * блокировки, а чтение складывает фиксированное число ячеек и не обращается к БД.
+ * Изменения, прошедшие мимо UserService (импорт, другие узлы, ручные правки), догоняет
+ * {@link UserStatisticsReconciler}: он пересчитывает агрегаты по таблице и добавляет разницу.
+ */
+@Component
+public class UserStatistics {
+
+    static final int AGE_BUCKET_WIDTH = 10;
+
+    // 0-9 ... 90-99 и 100+
+    static final int AGE_BUCKETS = 11;
+
+    private final LongAdder total = new LongAdder();
+
+    private final LongAdder ageSum = new LongAdder();
+
+    private final LongAdder[] ageBuckets = new LongAdder[AGE_BUCKETS];
+
+    private final Map<Long, LongAdder> signupsByDay = new ConcurrentHashMap<>();
+
+    @Value("${user-statistics.signup-days:30}")
+    private int signupDays;
+
+    private volatile Instant reconciledAt;
+
+    private volatile long lastDrift;
+
+    public UserStatistics() {
+        for (int i = 0; i < AGE_BUCKETS; i++) {
+            ageBuckets[i] = new LongAdder();
+        }
+    }
+
+    public void recordCreated(Integer age, Instant createdAt) {
+        afterCommit(() -> {
+            total.increment();
+            addAge(age, 1);
+            addSignup(createdAt, 1);
+        });
+    }
+
+    public void recordDeleted(Integer age, Instant createdAt) {
+        afterCommit(() -> {
+            total.decrement();
+            addAge(age, -1);
+            addSignup(createdAt, -1);
+        });
+    }
+
+    public void recordAgeChanged(Integer previousAge, Integer age) {
+        afterCommit(() -> {
+            addAge(previousAge, -1);
+            addAge(age, 1);
+        });
+    }
+
+    public UserStatisticsDto snapshot() {
+        long users = total.sum();
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < AGE_BUCKETS; i++) {
+            histogram.put(bucketLabel(i), ageBuckets[i].sum());
+        }
+        Map<LocalDate, Long> signups = new LinkedHashMap<>();
+        long today = today();
+        for (long day = firstSignupDay(today); day <= today; day++) {
+            LongAdder count = signupsByDay.get(day);
+            signups.put(LocalDate.ofEpochDay(day), count == null ? 0 : count.sum());
+        }
+        return UserStatisticsDto.builder()
+                .totalUsers(users)
+                .averageAge(users == 0 ? null : (double) ageSum.sum() / users)
+                .ageHistogram(histogram)
+                .signupsPerDay(signups)
+                .reconciledAt(reconciledAt)
+                .lastDrift(lastDrift)
+                .build();
+    }
+
+    public Instant getReconciledAt() {
+        return reconciledAt;
+    }
+
+    public long getLastDrift() {
+        return lastDrift;
+    }
+
+    /**
+     * Текущие значения счётчиков в том же виде, что и пересчёт по таблице.
+     */
+    Counts counts() {
+        long[] buckets = new long[AGE_BUCKETS];
+        for (int i = 0; i < AGE_BUCKETS; i++) {
+            buckets[i] = ageBuckets[i].sum();
+        }
+        Map<Long, Long> signups = new LinkedHashMap<>();
+        long today = today();
+        for (long day = firstSignupDay(today); day <= today; day++) {
+            LongAdder count = signupsByDay.get(day);
+            signups.put(day, count == null ? 0 : count.sum());
+        }
+        return new Counts(total.sum(), ageSum.sum(), buckets, signups);
+    }
+
+    /**
+     * Добавляет к счётчикам разницу между пересчётом и значениями до него и возвращает её размер.
+     * Изменения, записанные во время пересчёта, при этом сохраняются; если их коммит попал в
+     * пересчёт, возникшую погрешность исправит следующая сверка.
+     */
+    long reconcile(Counts before, Counts exact) {
+        long drift = Math.abs(exact.total() - before.total());
+        total.add(exact.total() - before.total());
+        ageSum.add(exact.ageSum() - before.ageSum());
+        for (int i = 0; i < AGE_BUCKETS; i++) {
+            long delta = exact.ageBuckets()[i] - before.ageBuckets()[i];
+            ageBuckets[i].add(delta);
+            drift += Math.abs(delta);
+        }
+        for (Map.Entry<Long, Long> day : before.signupsByDay().entrySet()) {
+            long delta = exact.signupsByDay().getOrDefault(day.getKey(), 0L) - day.getValue();
+            signupsByDay.computeIfAbsent(day.getKey(), key -> new LongAdder()).add(delta);
+            drift += Math.abs(delta);
+        }
+        long firstDay = firstSignupDay(today());
+        signupsByDay.keySet().removeIf(day -> day < firstDay);
+        lastDrift = drift;
+        reconciledAt = Instant.now();
+        return drift;
+    }
+
+    long today() {
+        return LocalDate.now(ZoneOffset.UTC).toEpochDay();
+    }
+
+    long firstSignupDay(long today) {
+        return today - signupDays + 1;
+    }
+
+    static int bucketOf(int age) {
+        return Math.clamp(age / AGE_BUCKET_WIDTH, 0, AGE_BUCKETS - 1);
+    }
+
+    private void addAge(Integer age, int sign) {
+        if (age == null) {
+            return;
+        }
+        ageSum.add((long) sign * age);
+        ageBuckets[bucketOf(age)].add(sign);
+    }
+
+    private void addSignup(Instant createdAt, int sign) {
+        if (createdAt == null) {
+            return;
+        }
+        long day = createdAt.atOffset(ZoneOffset.UTC).toLocalDate().toEpochDay();
+        // удаление давнего пользователя не заводит ячейку за пределами окна
+        if (day >= firstSignupDay(today())) {
+            signupsByDay.computeIfAbsent(day, key -> new LongAdder()).add(sign);
+        }
+    }
+
+    private static String bucketLabel(int bucket) {
+        int from = bucket * AGE_BUCKET_WIDTH;
+        return bucket == AGE_BUCKETS - 1 ? from + "+" : from + "-" + (from + AGE_BUCKET_WIDTH - 1);
+    }
+
+    /**
+     * Изменение учитывается только после коммита: откаченная операция счётчики не трогает.
+     */
+    private static void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+
+    record Counts(long total, long ageSum, long[] ageBuckets, Map<Long, Long> signupsByDay) {
+    }
+}
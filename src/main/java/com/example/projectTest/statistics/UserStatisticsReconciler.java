@@ -0,0 +1,142 @@
+package com.example.projectTest.statistics;
+
+import com.example.projectTest.sharding.ShardRouter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сверка {@link UserStatistics} с таблицей users.
+ * <p>
+ * Первая сверка заполняет счётчики. Она идёт через user-statistics.initial-delay-ms после ApplicationReadyEvent,
+ * когда схемы всех шардов уже подготовлены. Следующие сверки раз в user-statistics.reconcile-interval-ms
+ * пересчитывают агрегаты двумя группирующими запросами (по возрасту и по дням регистрации в окне)
+ * и добавляют к счётчикам разницу. Ненулевое расхождение логируется и видно в метрике
+ * users.statistics.drift: при одном узле без импорта оно означает потерянное обновление,
+ * при нескольких узлах - изменения, сделанные на других узлах с прошлой сверки.
+ * При шардировании пересчёт идёт по всем шардам. Запросы идут через JdbcTemplate, мимо Hibernate.
+ */
+@Component
+@Slf4j
+public class UserStatisticsReconciler {
+
+    private static final String COUNT_BY_AGE = "select age, count(*) from users group by age";
+
+    // день в UTC по абсолютному времени, независимо от часового пояса сессии БД
+    private static final String COUNT_BY_DAY = """
+            select floor(extract(epoch from created_at) / 86400), count(*) from users
+            where created_at >= ? group by floor(extract(epoch from created_at) / 86400)
+            """;
+
+    private final UserStatistics userStatistics;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ShardRouter shardRouter;
+
+    private final TaskScheduler taskScheduler;
+
+    private final Duration initialDelay;
+
+    private final Duration reconcileInterval;
+
+    private final Timer reconcileTimer;
+
+    public UserStatisticsReconciler(UserStatistics userStatistics,
+                                    JdbcTemplate jdbcTemplate,
+                                    ShardRouter shardRouter,
+                                    TaskScheduler taskScheduler,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${user-statistics.initial-delay-ms:0}") long initialDelayMs,
+                                    @Value("${user-statistics.reconcile-interval-ms:300000}") long reconcileIntervalMs) {
+        this.userStatistics = userStatistics;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.taskScheduler = taskScheduler;
+        this.initialDelay = Duration.ofMillis(initialDelayMs);
+        this.reconcileInterval = Duration.ofMillis(reconcileIntervalMs);
+        this.reconcileTimer = Timer.builder("users.statistics.reconcile")
+                .description("Время пересчёта статистики пользователей по таблице")
+                .register(meterRegistry);
+        Gauge.builder("users.statistics.drift", userStatistics, UserStatistics::getLastDrift)
+                .description("Расхождение счётчиков статистики с пересчётом на последней сверке")
+                .register(meterRegistry);
+    }
+
+    // до готовности приложения таблицы шардов могут ещё не существовать
+    @EventListener(ApplicationReadyEvent.class)
+    public void startReconciling() {
+        taskScheduler.scheduleWithFixedDelay(this::scheduledReconcile, Instant.now().plus(initialDelay),
+                reconcileInterval);
+    }
+
+    void scheduledReconcile() {
+        try {
+            reconcile();
+        } catch (DataAccessException e) {
+            log.error("Не удалось сверить статистику пользователей с БД: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Пересчитывает агрегаты, исправляет счётчики и возвращает найденное расхождение.
+     * Сверки не пересекаются: разница считается от значений, снятых перед пересчётом.
+     */
+    public synchronized long reconcile() {
+        boolean first = userStatistics.getReconciledAt() == null;
+        long start = System.nanoTime();
+        UserStatistics.Counts before = userStatistics.counts();
+        long firstDay = Collections.min(before.signupsByDay().keySet());
+        UserStatistics.Counts exact = recount(firstDay);
+        long drift = userStatistics.reconcile(before, exact);
+        long elapsed = System.nanoTime() - start;
+        reconcileTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        if (first) {
+            log.info("Статистика пользователей загружена из БД: {} пользователей за {} мс",
+                    exact.total(), elapsed / 1_000_000);
+        } else if (drift != 0) {
+            log.warn("Счётчики статистики пользователей разошлись с БД на {}, исправлено", drift);
+        }
+        return drift;
+    }
+
+    private UserStatistics.Counts recount(long firstDay) {
+        List<long[]> ages = shardRouter.scatter(() -> jdbcTemplate.query(COUNT_BY_AGE,
+                (rs, rowNum) -> new long[]{rs.getInt(1), rs.getLong(2)}));
+        long total = 0;
+        long ageSum = 0;
+        long[] buckets = new long[UserStatistics.AGE_BUCKETS];
+        for (long[] row : ages) {
+            total += row[1];
+            ageSum += row[0] * row[1];
+            buckets[UserStatistics.bucketOf((int) row[0])] += row[1];
+        }
+
+        List<long[]> days = shardRouter.scatter(() -> jdbcTemplate.query(COUNT_BY_DAY,
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)},
+                LocalDate.ofEpochDay(firstDay).atStartOfDay().atOffset(ZoneOffset.UTC)));
+        Map<Long, Long> signups = new HashMap<>();
+        for (long[] row : days) {
+            signups.merge(row[0], row[1], Long::sum);
+        }
+        return new UserStatistics.Counts(total, ageSum, buckets, signups);
+    }
+}
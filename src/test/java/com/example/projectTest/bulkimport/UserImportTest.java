@@ -0,0 +1,204 @@
+package com.example.projectTest.bulkimport;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UserImportReport;
+import com.example.projectTest.kafka.UserEvent;
+import com.example.projectTest.repository.UserRepository;
+import com.example.projectTest.service.PendingEventProcessor;
+import com.example.projectTest.service.UserEventPublisher;
+import com.example.projectTest.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Импорт пользователей из CSV через staging-таблицу.
+ */
+@Slf4j
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.config.name=standalone",
+        "spring.datasource.url=jdbc:h2:mem:user-import;DB_CLOSE_DELAY=-1",
+        "users.import.merge-chunk-lines=100000"
+})
+public class UserImportTest {
+
+    private static final int BENCHMARK_ROWS = Integer.getInteger("users.import.benchmark.rows", 1_000_000);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @MockitoBean
+    private PendingEventProcessor pendingEventProcessor;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAllInBatch();
+        jdbcTemplate.update("delete from user_import_rejects");
+    }
+
+    @Test
+    @DisplayName("Импорт отклоняет неверные строки и дубликаты email, остальные создаёт с событиями")
+    @SuppressWarnings("unchecked")
+    void shouldImportValidRowsAndReportRejects() throws Exception {
+        userService.create(new CreateUserDto("taken@mail.ru", "Existing", 50));
+        String csv = """
+                name,email,age
+                Alice,alice@mail.ru,30
+                "Smith, Bob",bob@mail.ru,41
+                Al,short@mail.ru,20
+                Carol,not-an-email,25
+                Dave,dave@mail.ru,old
+                Again,alice@mail.ru,31
+                Taken,taken@mail.ru,22
+                "Broken,broken@mail.ru,22
+                """;
+
+        mockMvc.perform(post("/api/user-imports").contentType("text/csv").content(csv.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.phase").value("DONE"))
+                .andExpect(jsonPath("$.rowsRead").value(8))
+                .andExpect(jsonPath("$.rowsStaged").value(4))
+                .andExpect(jsonPath("$.rowsImported").value(2))
+                .andExpect(jsonPath("$.rowsRejected").value(6))
+                .andExpect(jsonPath("$.eventsPublished").value(2));
+
+        assertEquals("Smith, Bob", userService.findByEmail("bob@mail.ru").getName());
+        assertEquals(30, userService.findByEmail("alice@mail.ru").getAge());
+        assertEquals("Existing", userService.findByEmail("taken@mail.ru").getName());
+        assertEquals(3, userRepository.count());
+
+        UserImportReport report = userImportService.reports().getLast();
+        List<UserImportService.Reject> rejects = userImportService.rejects(report.getId(), 0, 100);
+        assertEquals(List.of(4L, 5L, 6L, 7L, 8L, 9L), rejects.stream().map(UserImportService.Reject::line).toList());
+        assertEquals("Пользователь с таким email уже существует", rejects.get(3).reason());
+        assertEquals("Возраст должен быть целым числом", rejects.get(2).reason());
+        mockMvc.perform(get("/api/user-imports/{id}/rejects", report.getId()).param("afterLine", "8"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].reason").value("Незакрытые кавычки"));
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from user_import_staging", Integer.class));
+
+        ArgumentCaptor<List<UserEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(userEventPublisher).publishAll(events.capture());
+        assertEquals(List.of("alice@mail.ru", "bob@mail.ru"), events.getValue().stream().map(UserEvent::getEmail).toList());
+        assertTrue(events.getValue().stream().allMatch(event -> "CREATED".equals(event.getTitle()) && event.getUserId() != null));
+    }
+
+    @Test
+    @DisplayName("Импорт потоком в несколько слияний учитывает каждую строку")
+    void shouldImportGeneratedRowsInChunks() {
+        // больше merge-chunk-lines строк: два слияния
+        importGeneratedCsv(120_000);
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Импорт 1М строк потоком")
+    void shouldImportMillionRows() {
+        long start = System.nanoTime();
+        UserImportReport report = importGeneratedCsv(BENCHMARK_ROWS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Строк: {}, создано: {}, отклонено: {}, время: {} мс, строк/с: {}",
+                report.getRowsRead(), report.getRowsImported(), report.getRowsRejected(), elapsedMillis,
+                report.getRowsRead() * 1000L / Math.max(elapsedMillis, 1));
+    }
+
+    private UserImportReport importGeneratedCsv(int rows) {
+        UserImportReport report = userImportService.importCsv(generatedCsv(rows));
+
+        // каждая 1000-я строка с неверным возрастом, каждая 500-я (кроме них) повторяет email предыдущей
+        long invalid = rows / 1000;
+        long duplicates = rows / 500 - invalid;
+        assertEquals("DONE", report.getPhase());
+        assertEquals(rows, report.getRowsRead());
+        assertEquals(invalid + duplicates, report.getRowsRejected());
+        assertEquals(rows - invalid - duplicates, report.getRowsImported());
+        assertEquals(report.getRowsImported(), userRepository.count());
+        assertEquals(report.getRowsImported(), report.getEventsPublished());
+        verify(userEventPublisher, atLeastOnce()).publishAll(anyList());
+        return report;
+    }
+
+    /**
+     * CSV, который генерируется по мере чтения и не лежит в памяти целиком.
+     */
+    private static InputStream generatedCsv(int rows) {
+        return new InputStream() {
+            private byte[] chunk = "email,name,age\n".getBytes(StandardCharsets.UTF_8);
+            private int position;
+            private int nextRow = 1;
+
+            @Override
+            public int read() {
+                if (position == chunk.length && !refill()) {
+                    return -1;
+                }
+                return chunk[position++] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                if (position == chunk.length && !refill()) {
+                    return -1;
+                }
+                int count = Math.min(length, chunk.length - position);
+                System.arraycopy(chunk, position, buffer, offset, count);
+                position += count;
+                return count;
+            }
+
+            private boolean refill() {
+                if (nextRow > rows) {
+                    return false;
+                }
+                StringBuilder lines = new StringBuilder();
+                for (int end = Math.min(nextRow + 1000, rows + 1); nextRow < end; nextRow++) {
+                    int emailRow = nextRow % 500 == 0 ? nextRow - 1 : nextRow;
+                    String age = nextRow % 1000 == 0 ? "n/a" : String.valueOf(nextRow % 90);
+                    lines.append("user").append(emailRow).append("@mail.ru,Imported User,").append(age).append('\n');
+                }
+                chunk = lines.toString().getBytes(StandardCharsets.UTF_8);
+                position = 0;
+                return true;
+            }
+        };
+    }
+}
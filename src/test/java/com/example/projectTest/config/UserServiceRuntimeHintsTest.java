@@ -0,0 +1,36 @@
+package com.example.projectTest.config;
+
+import com.example.projectTest.kafka.UserEvent;
+import com.example.projectTest.kafka.UserIdPartitioner;
+import com.example.projectTest.service.UserEventPublisher;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserServiceRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @Test
+    @DisplayName("JSON-типы, плагины Kafka и fallback-методы Resilience4j доступны через reflection")
+    void shouldRegisterReflectionHints() throws Exception {
+        new UserServiceRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertTrue(RuntimeHintsPredicates.reflection().onType(UserEvent.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethodInvocation(UserEvent.class, "setEmail").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethodInvocation(UserEvent.class, "getCreatedAt").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onConstructorInvocation(UserIdPartitioner.class.getConstructor()).test(hints));
+
+        for (String fallback : new String[]{"fallbackSendEvent", "fallbackSendEvents"}) {
+            assertTrue(Arrays.stream(UserEventPublisher.class.getDeclaredMethods())
+                    .filter(method -> method.getName().equals(fallback))
+                    .allMatch(method -> RuntimeHintsPredicates.reflection().onMethodInvocation(method).test(hints)), fallback);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.projectTest.controller;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.idempotency.IdempotencyFilter;
+import com.example.projectTest.repository.IdempotencyRecordRepository;
+import com.example.projectTest.repository.UserRepository;
+import com.example.projectTest.service.PendingEventProcessor;
+import com.example.projectTest.service.UserEventPublisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@SpringBootTest(properties = "spring.config.name=standalone")
+public class IdempotencyKeyTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockitoSpyBean
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @MockitoBean
+    private PendingEventProcessor pendingEventProcessor;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Повтор POST с тем же ключом возвращает исходный ответ без повторного создания")
+    void shouldReplayCreate() throws Exception {
+        String body = objectMapper.writeValueAsString(new CreateUserDto("replay@mail.ru", "Replay", 30));
+
+        MvcResult first = mockMvc.perform(createRequest("key-replay", body))
+                .andExpect(status().isCreated())
+                .andReturn();
+        MvcResult second = mockMvc.perform(createRequest("key-replay", body))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+                .andReturn();
+
+        assertEquals(first.getResponse().getContentAsString(), second.getResponse().getContentAsString());
+        assertEquals(1, userRepository.count());
+        verify(userEventPublisher, times(1)).publish(any());
+        assertTrue(idempotencyRecordRepository.findById("key-replay").isPresent());
+    }
+
+    @Test
+    @DisplayName("Тот же ключ с другим телом отклоняется")
+    void shouldRejectKeyReuseWithDifferentRequest() throws Exception {
+        mockMvc.perform(createRequest("key-mismatch",
+                        objectMapper.writeValueAsString(new CreateUserDto("first@mail.ru", "First", 30))))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(createRequest("key-mismatch",
+                        objectMapper.writeValueAsString(new CreateUserDto("second@mail.ru", "Second", 30))))
+                .andExpect(status().is(422));
+
+        assertEquals(1, userRepository.count());
+    }
+
+    @Test
+    @DisplayName("Параллельные запросы с одним ключом ждут первый и получают его ответ")
+    void shouldWaitForConcurrentRequestWithSameKey() throws Exception {
+        doAnswer(invocation -> {
+            Thread.sleep(300);
+            return null;
+        }).when(userEventPublisher).publish(any());
+        String body = objectMapper.writeValueAsString(new CreateUserDto("concurrent@mail.ru", "Concurrent", 30));
+
+        CompletableFuture<MvcResult> first = CompletableFuture.supplyAsync(() -> perform(createRequest("key-concurrent", body)));
+        CompletableFuture<MvcResult> second = CompletableFuture.supplyAsync(() -> perform(createRequest("key-concurrent", body)));
+
+        MvcResult firstResult = first.get(10, TimeUnit.SECONDS);
+        MvcResult secondResult = second.get(10, TimeUnit.SECONDS);
+        assertEquals(201, firstResult.getResponse().getStatus());
+        assertEquals(201, secondResult.getResponse().getStatus());
+        assertEquals(firstResult.getResponse().getContentAsString(), secondResult.getResponse().getContentAsString());
+        assertEquals(1, userRepository.count());
+        verify(userEventPublisher, times(1)).publish(any());
+    }
+
+    @Test
+    @DisplayName("Ошибка БД при захвате ключа освобождает его, повтор выполняется сразу")
+    void shouldReleaseKeyWhenClaimFails() throws Exception {
+        doThrow(new DataAccessResourceFailureException("БД недоступна"))
+                .when(idempotencyRecordRepository).findById("key-claim-failure");
+        String body = objectMapper.writeValueAsString(new CreateUserDto("claim@mail.ru", "Claim", 30));
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> mockMvc.perform(createRequest("key-claim-failure", body)));
+        reset(idempotencyRecordRepository);
+
+        mockMvc.perform(createRequest("key-claim-failure", body))
+                .andExpect(status().isCreated());
+        assertEquals(1, userRepository.count());
+    }
+
+    @Test
+    @DisplayName("Повтор DELETE возвращает исходный 204, а не 404")
+    void shouldReplayDelete() throws Exception {
+        MvcResult created = mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new CreateUserDto("delete@mail.ru", "Delete", 30))))
+                .andReturn();
+        long id = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asLong();
+
+        mockMvc.perform(delete("/api/users/{id}", id).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "key-delete"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/api/users/{id}", id).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "key-delete"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"));
+    }
+
+    private static RequestBuilder createRequest(String key, String body) {
+        return post("/api/users")
+                .header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body);
+    }
+
+    private MvcResult perform(RequestBuilder request) {
+        try {
+            return mockMvc.perform(request).andReturn();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
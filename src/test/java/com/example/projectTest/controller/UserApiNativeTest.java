@@ -0,0 +1,135 @@
+package com.example.projectTest.controller;
+
+import com.example.projectTest.kafka.UserEvent;
+import com.example.projectTest.repository.UserRepository;
+import com.example.projectTest.service.UserEventPublisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Полный цикл REST API без Mockito: тест запускается и на JVM, и в native-образе (-PnativeTest),
+ * где Mockito не работает - он создаёт классы во время выполнения.
+ * События вместо Kafka собирает RecordingUserEventPublisher.
+ */
+@AutoConfigureMockMvc
+@Import(UserApiNativeTest.RecordingPublisherConfig.class)
+@SpringBootTest(properties = {
+        "spring.config.name=standalone",
+        "spring.datasource.url=jdbc:h2:mem:user-api-native;DB_CLOSE_DELAY=-1"
+})
+public class UserApiNativeTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RecordingUserEventPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAllInBatch();
+        publisher.events.clear();
+    }
+
+    @Test
+    @DisplayName("Создание, поиск, изменение и удаление пользователя, ошибки в ErrorResponse")
+    void shouldServeUserLifecycle() throws Exception {
+        String body = mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"native@mail.ru\",\"name\":\"Native\",\"age\":30}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.email").value("native@mail.ru"))
+                .andReturn().getResponse().getContentAsString();
+        long id = objectMapper.readTree(body).get("id").asLong();
+
+        mockMvc.perform(get("/api/users/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Native"));
+        mockMvc.perform(get("/api/users/findByEmail").param("email", "native@mail.ru"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(id));
+        mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"native@mail.ru\",\"name\":\"Copy\",\"age\":31}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.status").value(409));
+        mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"not-an-email\",\"name\":\"Bad\",\"age\":31}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(put("/api/users/{id}", id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Native Renamed\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Native Renamed"));
+        JsonNode users = objectMapper.readTree(mockMvc.perform(get("/api/users"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        assertEquals("Native Renamed", users.findValue("name").asString());
+
+        mockMvc.perform(delete("/api/users/{id}", id))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/users/{id}", id))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.status").value(404));
+
+        assertEquals(List.of("CREATED", "UPDATED", "DELETED"),
+                publisher.events.stream().map(UserEvent::getTitle).toList());
+    }
+
+    @TestConfiguration(proxyBeanMethods = false)
+    static class RecordingPublisherConfig {
+
+        @Bean
+        @Primary
+        RecordingUserEventPublisher recordingUserEventPublisher() {
+            return new RecordingUserEventPublisher();
+        }
+    }
+
+    static class RecordingUserEventPublisher extends UserEventPublisher {
+
+        final List<UserEvent> events = new CopyOnWriteArrayList<>();
+
+        RecordingUserEventPublisher() {
+            super(null, null, null, null);
+        }
+
+        @Override
+        public void publish(UserEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void publishAll(List<UserEvent> events) {
+            this.events.addAll(events);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.projectTest.controller;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UpdateUserDto;
+import com.example.projectTest.exception.UserVersionMismatchException;
+import com.example.projectTest.repository.UserRepository;
+import com.example.projectTest.service.PendingEventProcessor;
+import com.example.projectTest.service.UserEventPublisher;
+import com.example.projectTest.service.UserService;
+import com.example.projectTest.support.SqlStatementCounter;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * ETag по версии пользователя: 304 на If-None-Match, 412 на устаревший If-Match
+ * и 409 на параллельное изменение без If-Match.
+ * Число опросов в замере (@Tag("benchmark")) задаётся -Dusers.etag.benchmark.iterations.
+ */
+@Slf4j
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.config.name=standalone",
+        "spring.datasource.url=jdbc:h2:mem:user-etag;DB_CLOSE_DELAY=-1",
+        "concurrency-limit.enabled=false"
+})
+public class UserConditionalRequestTest {
+
+    private static final int BENCHMARK_ITERATIONS = Integer.getInteger("users.etag.benchmark.iterations", 2000);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @MockitoBean
+    private PendingEventProcessor pendingEventProcessor;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("ETag растёт с версией, If-None-Match даёт 304, устаревший If-Match - 412 без изменений")
+    void shouldHonourConditionalHeaders() throws Exception {
+        MvcResult created = mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonMapper.writeValueAsBytes(new CreateUserDto("etag@mail.ru", "Etag", 30))))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andExpect(jsonPath("$.version").doesNotExist())
+                .andReturn();
+        long id = jsonMapper.readTree(created.getResponse().getContentAsByteArray()).get("id").asLong();
+
+        MvcResult notModified = mockMvc.perform(get("/api/users/{id}", id).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andReturn();
+        assertEquals(0, notModified.getResponse().getContentAsByteArray().length);
+        mockMvc.perform(get("/api/users/{id}", id).header(HttpHeaders.IF_NONE_MATCH, "\"5\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Etag"));
+
+        mockMvc.perform(put("/api/users/{id}", id)
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonMapper.writeValueAsBytes(new UpdateUserDto(null, "First", null))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+
+        // второй клиент прочитал версию 0 и не должен затереть первое изменение
+        mockMvc.perform(put("/api/users/{id}", id)
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonMapper.writeValueAsBytes(new UpdateUserDto(null, "Second", null))))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.error").value("PRECONDITION_FAILED"));
+        mockMvc.perform(put("/api/users/{id}", id)
+                        .header(HttpHeaders.IF_MATCH, "W/\"1\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonMapper.writeValueAsBytes(new UpdateUserDto(null, "Weak", null))))
+                .andExpect(status().isPreconditionFailed());
+        assertEquals("First", userService.findById(id).getName());
+
+        mockMvc.perform(get("/api/users/{id}", id).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+        mockMvc.perform(get("/api/users/findByEmail").param("email", "etag@mail.ru")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"1\""))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(put("/api/users/{id}", id)
+                        .header(HttpHeaders.IF_MATCH, "\"7\", \"1\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonMapper.writeValueAsBytes(new UpdateUserDto(null, "Listed", null))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""));
+        mockMvc.perform(put("/api/users/{id}", id)
+                        .header(HttpHeaders.IF_MATCH, "*")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonMapper.writeValueAsBytes(new UpdateUserDto(null, "Any", null))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+
+        mockMvc.perform(delete("/api/users/{id}", id).header(HttpHeaders.IF_MATCH, "\"2\""))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(delete("/api/users/{id}", id).header(HttpHeaders.IF_MATCH, "\"3\""))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/users/{id}", id).header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Из параллельных обновлений с одной версией проходит ровно одно")
+    void shouldAllowSingleWinnerForSameVersion() throws Exception {
+        long id = userService.create(new CreateUserDto("race@mail.ru", "Race", 30)).getId();
+        // не больше слотов bulkhead userMutation, чтобы все записи дошли до проверки версии
+        int writers = 6;
+        List<Future<Boolean>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(writers)) {
+            for (int i = 0; i < writers; i++) {
+                UpdateUserDto update = new UpdateUserDto(null, "Writer " + i, null);
+                results.add(executor.submit(() -> {
+                    try {
+                        userService.update(id, update, 0L);
+                        return true;
+                    } catch (UserVersionMismatchException e) {
+                        return false;
+                    }
+                }));
+            }
+        }
+        int winners = 0;
+        for (Future<Boolean> result : results) {
+            winners += result.get() ? 1 : 0;
+        }
+        assertEquals(1, winners);
+        assertEquals(1L, userService.findVersion(id).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("DELETE без If-Match, проигравший параллельному обновлению, не отправляет DELETED и tombstone")
+    void shouldNotPublishDeleteLostToConcurrentUpdate() throws Exception {
+        long id = userService.create(new CreateUserDto("lost-delete@mail.ru", "Lost Delete", 30)).getId();
+        clearInvocations(userEventPublisher);
+
+        CountDownLatch updated = new CountDownLatch(1);
+        Thread concurrentUpdate = Thread.ofPlatform().start(() ->
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.update("update users set name = 'Concurrent', version = version + 1 where id = ?", id);
+                    updated.countDown();
+                    // commit, когда DELETE уже прочитал старую версию и ждёт блокировку строки
+                    awaitBlockedSession();
+                }));
+        assertTrue(updated.await(5, TimeUnit.SECONDS));
+
+        mockMvc.perform(delete("/api/users/{id}", id))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("CONFLICT"));
+        concurrentUpdate.join();
+
+        // события и снимки идут через UserEventPublisher: ни DELETED, ни tombstone не отправлены
+        verify(userEventPublisher, never()).publish(any());
+        assertEquals("Concurrent", userService.findById(id).getName());
+        assertEquals(1L, userService.findVersion(id).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Опрос без изменений: 304 без тела и без лишних SQL")
+    void shouldAnswerUnchangedPollWithoutBody() throws Exception {
+        Polling polling = poll(20);
+
+        assertEquals(0, polling.conditional().bytes());
+        assertTrue(polling.full().bytes() > 0);
+        // 304 читает только версию, и не больше запросов, чем полный ответ
+        assertTrue(polling.conditional().statements() <= polling.full().statements());
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Опрос без изменений: полный ответ против 304")
+    void shouldComparePollingCost() throws Exception {
+        Polling polling = poll(BENCHMARK_ITERATIONS);
+
+        for (Measurement measurement : List.of(polling.full(), polling.conditional())) {
+            log.info("Опрос {}: {} мкс на запрос, {} байт тела, {} SQL на запрос", measurement.status(),
+                    measurement.micros(), measurement.bytes(), measurement.statements());
+        }
+    }
+
+    private Polling poll(int iterations) throws Exception {
+        long id = userService.create(new CreateUserDto("poll@mail.ru", "Polling User", 42)).getId();
+        String eTag = mockMvc.perform(get("/api/users/{id}", id)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        Measurement full = measure(get("/api/users/{id}", id), 200, iterations);
+        Measurement conditional = measure(get("/api/users/{id}", id).header(HttpHeaders.IF_NONE_MATCH, eTag), 304,
+                iterations);
+        JsonNode body = jsonMapper.readTree(mockMvc.perform(get("/api/users/{id}", id)).andReturn()
+                .getResponse().getContentAsByteArray());
+        assertEquals("Polling User", body.get("name").asString());
+        return new Polling(full, conditional);
+    }
+
+    private Measurement measure(MockHttpServletRequestBuilder request, int expectedStatus, int iterations)
+            throws Exception {
+        // разогрев JIT
+        for (int i = 0; i < iterations / 5; i++) {
+            assertEquals(expectedStatus, mockMvc.perform(request).andReturn().getResponse().getStatus());
+        }
+        SqlStatementCounter counter = new SqlStatementCounter(entityManagerFactory);
+        counter.reset();
+        int bytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            bytes = mockMvc.perform(request).andReturn().getResponse().getContentAsByteArray().length;
+        }
+        long micros = (System.nanoTime() - start) / 1000 / iterations;
+        return new Measurement(expectedStatus, micros, bytes, (double) counter.count() / iterations);
+    }
+
+    private void awaitBlockedSession() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.sessions where blocker_id is not null", Integer.class) == 0) {
+            assertTrue(System.nanoTime() < deadline, "DELETE не дошёл до блокировки строки");
+            Thread.onSpinWait();
+        }
+    }
+
+    private record Polling(Measurement full, Measurement conditional) {
+    }
+
+    private record Measurement(int status, long micros, int bytes, double statements) {
+    }
+}
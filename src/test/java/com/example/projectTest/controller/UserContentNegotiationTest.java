@@ -0,0 +1,246 @@
+package com.example.projectTest.controller;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UpdateUserDto;
+import com.example.projectTest.entity.User;
+import com.example.projectTest.idempotency.IdempotencyFilter;
+import com.example.projectTest.repository.UserRepository;
+import com.example.projectTest.service.PendingEventProcessor;
+import com.example.projectTest.service.UserEventPublisher;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * CBOR и Smile на /api/users: тела запросов, ответов и ошибок, сравнение размера и CPU с JSON.
+ * Число повторов замера (@Tag("benchmark")) задаётся -Dusers.formats.benchmark.iterations.
+ */
+@Slf4j
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.config.name=standalone",
+        "spring.datasource.url=jdbc:h2:mem:user-formats;DB_CLOSE_DELAY=-1",
+        "concurrency-limit.enabled=false"
+})
+public class UserContentNegotiationTest {
+
+    private static final int BENCHMARK_ITERATIONS = Integer.getInteger("users.formats.benchmark.iterations", 300);
+
+    private static final int BENCHMARK_USERS = 1000;
+
+    private static final MediaType APPLICATION_SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private CBORMapper cborMapper;
+
+    @Autowired
+    private SmileMapper smileMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @MockitoBean
+    private PendingEventProcessor pendingEventProcessor;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("Без Accept ответ в JSON, CBOR и Smile - по Accept и Content-Type, включая ошибки")
+    void shouldNegotiateBinaryFormats() throws Exception {
+        MvcResult defaultFormat = mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonMapper.writeValueAsBytes(new CreateUserDto("json@mail.ru", "Json", 30))))
+                .andExpect(status().isCreated())
+                .andReturn();
+        assertTrue(defaultFormat.getResponse().getContentType().contains("json"));
+        assertEquals("json@mail.ru", read(jsonMapper, defaultFormat).get("email").asString());
+
+        JsonNode created = read(cborMapper, mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content(cborMapper.writeValueAsBytes(new CreateUserDto("cbor@mail.ru", "Cbor", 31))))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_CBOR_VALUE))
+                .andReturn());
+        assertEquals("cbor@mail.ru", created.get("email").asString());
+        long id = created.get("id").asLong();
+
+        JsonNode updated = read(smileMapper, mockMvc.perform(put("/api/users/{id}", id)
+                        .contentType(APPLICATION_SMILE)
+                        .accept(APPLICATION_SMILE)
+                        .content(smileMapper.writeValueAsBytes(new UpdateUserDto(null, "Smile", null))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, APPLICATION_SMILE.toString()))
+                .andReturn());
+        assertEquals("Smile", updated.get("name").asString());
+
+        JsonNode found = read(cborMapper, mockMvc.perform(get("/api/users/findByEmail")
+                        .param("email", "cbor@mail.ru")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andReturn());
+        assertEquals(id, found.get("id").asLong());
+
+        // ошибки GlobalExceptionHandler
+        JsonNode notFound = read(cborMapper, mockMvc.perform(get("/api/users/{id}", Long.MAX_VALUE)
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isNotFound())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_CBOR_VALUE))
+                .andReturn());
+        assertEquals("NOT_FOUND", notFound.get("error").asString());
+
+        JsonNode invalid = read(smileMapper, mockMvc.perform(post("/api/users")
+                        .contentType(APPLICATION_SMILE)
+                        .accept(APPLICATION_SMILE)
+                        .content(smileMapper.writeValueAsBytes(new CreateUserDto("not-an-email", "Bad", 30))))
+                .andExpect(status().isBadRequest())
+                .andReturn());
+        assertEquals("BAD_REQUEST", invalid.get("error").asString());
+
+        JsonNode duplicate = read(cborMapper, mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content(cborMapper.writeValueAsBytes(new CreateUserDto("json@mail.ru", "Copy", 30))))
+                .andExpect(status().isConflict())
+                .andReturn());
+        assertEquals(409, duplicate.get("status").asInt());
+
+        // ошибка из фильтра, до DispatcherServlet
+        JsonNode badKey = read(cborMapper, mockMvc.perform(delete("/api/users/{id}", id)
+                        .header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, " ")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_CBOR_VALUE))
+                .andReturn());
+        assertEquals("BAD_REQUEST", badKey.get("error").asString());
+        read(jsonMapper, mockMvc.perform(delete("/api/users/{id}", id)
+                        .header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, " "))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn());
+
+        mockMvc.perform(delete("/api/users/{id}", id).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    @DisplayName("Ответы в CBOR и Smile не больше JSON, список - заметно меньше")
+    void shouldBeSmallerThanJson() throws Exception {
+        Long id = saveUsers();
+
+        byte[] jsonSingle = body(get("/api/users/{id}", id), null);
+        byte[] jsonList = body(get("/api/users"), null);
+        for (MediaType format : List.of(MediaType.APPLICATION_CBOR, APPLICATION_SMILE)) {
+            byte[] single = body(get("/api/users/{id}", id), format);
+            byte[] list = body(get("/api/users"), format);
+
+            ObjectMapper mapper = format.equals(MediaType.APPLICATION_CBOR) ? cborMapper : smileMapper;
+            assertEquals(BENCHMARK_USERS, mapper.readTree(list).findValue("content").size());
+            // у одного пользователя выигрыш в размере невелик: имена полей и строки те же, что в JSON
+            assertTrue(single.length <= jsonSingle.length);
+            assertTrue(list.length < jsonList.length);
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Размер ответа и CPU сервера: JSON против CBOR и Smile")
+    void shouldCompareFormats() throws Exception {
+        Long id = saveUsers();
+
+        for (MediaType format : Arrays.asList(null, MediaType.APPLICATION_CBOR, APPLICATION_SMILE)) {
+            Measurement single = measure(get("/api/users/{id}", id), format);
+            Measurement list = measure(get("/api/users"), format);
+            log.info("{}: один {} байт, {} мкс CPU; список {} байт, {} мкс CPU",
+                    format == null ? "JSON" : format.equals(APPLICATION_SMILE) ? "Smile" : "CBOR",
+                    single.bytes(), single.cpuMicros(), list.bytes(), list.cpuMicros());
+        }
+    }
+
+    private Long saveUsers() {
+        List<User> users = new ArrayList<>();
+        IntStream.range(0, BENCHMARK_USERS).forEach(i -> users.add(User.builder()
+                .email("format" + i + "@mail.ru")
+                .name("Format User " + i)
+                .age(20 + i % 50)
+                .build()));
+        return userRepository.saveAll(users).getFirst().getId();
+    }
+
+    private byte[] body(MockHttpServletRequestBuilder request, MediaType format) throws Exception {
+        if (format != null) {
+            request.accept(format);
+        }
+        return mockMvc.perform(request).andExpect(status().isOk()).andReturn().getResponse().getContentAsByteArray();
+    }
+
+    private Measurement measure(MockHttpServletRequestBuilder request, MediaType format) throws Exception {
+        if (format != null) {
+            request.accept(format);
+        }
+        // разогрев JIT и кэшей сериализаторов
+        for (int i = 0; i < BENCHMARK_ITERATIONS / 5; i++) {
+            mockMvc.perform(request).andExpect(status().isOk());
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        byte[] body = null;
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            body = mockMvc.perform(request).andReturn().getResponse().getContentAsByteArray();
+        }
+        long cpuNanos = threads.getCurrentThreadCpuTime() - cpuStart;
+        return new Measurement(body, cpuNanos / 1000 / BENCHMARK_ITERATIONS);
+    }
+
+    private static JsonNode read(ObjectMapper mapper, MvcResult result) {
+        return mapper.readTree(result.getResponse().getContentAsByteArray());
+    }
+
+    private record Measurement(byte[] body, long cpuMicros) {
+
+        int bytes() {
+            return body.length;
+        }
+    }
+}
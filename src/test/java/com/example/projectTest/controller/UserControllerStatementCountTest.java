@@ -0,0 +1,145 @@
+package com.example.projectTest.controller;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UpdateUserDto;
+import com.example.projectTest.entity.User;
+import com.example.projectTest.kafka.UserEventProducer;
+import com.example.projectTest.repository.UserRepository;
+import com.example.projectTest.service.PendingEventProcessor;
+import com.example.projectTest.support.SqlStatementCounter;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import tools.jackson.databind.ObjectMapper;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Фиксирует число SQL-запросов на каждый вызов UserController.
+ * Если изменение добавляет лишний запрос к БД, тест падает.
+ */
+@AutoConfigureMockMvc
+@SpringBootTest(properties = "spring.config.name=standalone")
+public class UserControllerStatementCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private UserEventProducer userEventProducer;
+
+    // Фоновая отправка отложенных событий не должна попадать в подсчёт запросов
+    @MockitoBean
+    private PendingEventProcessor pendingEventProcessor;
+
+    private SqlStatementCounter statements;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        user = userRepository.save(User.builder()
+                .email("test@mail.ru")
+                .name("Test")
+                .age(25)
+                .build());
+        statements = new SqlStatementCounter(entityManagerFactory);
+    }
+
+    @Test
+    @DisplayName("Список пользователей - один запрос")
+    void getUsers() throws Throwable {
+        statements.assertStatements(1, () -> mockMvc.perform(get("/api/users"))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    @DisplayName("Поиск по Id - один запрос")
+    void getUserById() throws Throwable {
+        statements.assertStatements(1, () -> mockMvc.perform(get("/api/users/" + user.getId()))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    @DisplayName("Поиск по Id с актуальным If-None-Match - 304 по одному запросу версии")
+    void getUserByIdNotModified() throws Throwable {
+        statements.assertStatements(1, () -> mockMvc.perform(get("/api/users/" + user.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"" + user.getVersion() + "\""))
+                .andExpect(status().isNotModified()));
+    }
+
+    @Test
+    @DisplayName("Поиск по Email - один запрос")
+    void getUserByEmail() throws Throwable {
+        statements.assertStatements(1, () -> mockMvc.perform(get("/api/users/findByEmail")
+                        .param("email", "test@mail.ru"))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    @DisplayName("Создание - один insert")
+    void createUser() throws Throwable {
+        CreateUserDto createUserDto = CreateUserDto.builder()
+                .email("new@mail.ru")
+                .name("New user")
+                .age(30)
+                .build();
+
+        statements.assertStatements(1, () -> mockMvc.perform(post("/api/users")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(createUserDto)))
+                .andExpect(status().isCreated()));
+    }
+
+    @Test
+    @DisplayName("Обновление - select и update")
+    void updateUser() throws Throwable {
+        UpdateUserDto updateUserDto = UpdateUserDto.builder()
+                .name("Updated")
+                .build();
+
+        statements.assertStatements(2, () -> mockMvc.perform(put("/api/users/" + user.getId())
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(updateUserDto)))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    @DisplayName("Обновление с If-Match - тоже select и update")
+    void updateUserIfMatch() throws Throwable {
+        UpdateUserDto updateUserDto = UpdateUserDto.builder()
+                .name("Updated")
+                .build();
+
+        statements.assertStatements(2, () -> mockMvc.perform(put("/api/users/" + user.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"" + user.getVersion() + "\"")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(updateUserDto)))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    @DisplayName("Удаление - select и delete, без повторной загрузки")
+    void deleteUser() throws Throwable {
+        statements.assertStatements(2, () -> mockMvc.perform(delete("/api/users/" + user.getId()))
+                .andExpect(status().isNoContent()));
+    }
+}
@@ -4,6 +4,7 @@ import com.example.projectTest.dto.CreateUserDto;
 import com.example.projectTest.dto.UpdateUserDto;
 import com.example.projectTest.dto.UserDto;
 import com.example.projectTest.service.UserService;
+import com.example.projectTest.statistics.UserStatistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,6 +32,9 @@ public class UserControllerTest {
     @MockitoBean
     private UserService userService;
 
+    @MockitoBean
+    private UserStatistics userStatistics;
+
 
     @Test
     @DisplayName("Возврат списка пользователей")
@@ -0,0 +1,270 @@
+package com.example.projectTest.grpc;
+
+import com.example.projectTest.entity.User;
+import com.example.projectTest.grpc.proto.CreateUserRequest;
+import com.example.projectTest.grpc.proto.GetUserByEmailRequest;
+import com.example.projectTest.grpc.proto.GetUserByIdRequest;
+import com.example.projectTest.grpc.proto.UserLookup;
+import com.example.projectTest.grpc.proto.UserLookupResult;
+import com.example.projectTest.grpc.proto.UsersGrpc;
+import com.example.projectTest.repository.UserRepository;
+import com.example.projectTest.service.PendingEventProcessor;
+import com.example.projectTest.service.UserEventPublisher;
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * gRPC API поверх UserService: вызовы через in-process канал и сравнение задержки
+ * и пропускной способности с REST по сети (Netty/HTTP2 против Tomcat/HTTP1.1).
+ * Число запросов в замере (@Tag("benchmark")) задаётся -Dusers.grpc.benchmark.requests.
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.config.name=standalone",
+        "spring.datasource.url=jdbc:h2:mem:user-grpc;DB_CLOSE_DELAY=-1",
+        "spring.grpc.server.inprocess.name=user-grpc-test",
+        "spring.grpc.server.inprocess.exclusive=false",
+        "logging.level.com.example.projectTest=WARN",
+        "logging.level.com.example.projectTest.grpc.UserGrpcServiceTest=INFO"
+})
+public class UserGrpcServiceTest {
+
+    private static final int BENCHMARK_REQUESTS = Integer.getInteger("users.grpc.benchmark.requests", 5000);
+
+    private static final int BENCHMARK_USERS = 1000;
+
+    private static final int BENCHMARK_CONCURRENCY = 16;
+
+    @LocalServerPort
+    private int httpPort;
+
+    @Value("${local.grpc.port}")
+    private int grpcPort;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @MockitoBean
+    private PendingEventProcessor pendingEventProcessor;
+
+    private ManagedChannel inProcessChannel;
+
+    private UsersGrpc.UsersBlockingStub users;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAllInBatch();
+        inProcessChannel = InProcessChannelBuilder.forName("user-grpc-test").directExecutor().build();
+        users = UsersGrpc.newBlockingStub(inProcessChannel);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        inProcessChannel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("Создание, поиск по id и email, ошибки как статусы gRPC")
+    void shouldCreateAndFindUsers() throws Exception {
+        com.example.projectTest.grpc.proto.User created = users.create(CreateUserRequest.newBuilder()
+                .setEmail("grpc@mail.ru").setName("Grpc").setAge(33).build());
+        assertTrue(created.getId() > 0);
+        assertTrue(created.hasCreatedAt());
+
+        assertEquals(created, users.getById(GetUserByIdRequest.newBuilder().setId(created.getId()).build()));
+        assertEquals(created, users.getByEmail(GetUserByEmailRequest.newBuilder().setEmail("grpc@mail.ru").build()));
+        // REST отдаёт тот же UserService
+        HttpResponse<String> rest = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(restUri("/api/users/" + created.getId())).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, rest.statusCode());
+        assertTrue(rest.body().contains("\"email\":\"grpc@mail.ru\""));
+
+        assertStatus(Status.Code.NOT_FOUND, () -> users.getById(GetUserByIdRequest.newBuilder().setId(Long.MAX_VALUE).build()));
+        assertStatus(Status.Code.ALREADY_EXISTS, () -> users.create(CreateUserRequest.newBuilder()
+                .setEmail("grpc@mail.ru").setName("Copy").setAge(20).build()));
+        StatusRuntimeException invalid = assertStatus(Status.Code.INVALID_ARGUMENT, () -> users.create(
+                CreateUserRequest.newBuilder().setEmail("not-an-email").setName("Bad").build()));
+        assertEquals("Возраст обязателен, Неверный формат электронной почты", invalid.getStatus().getDescription());
+        assertEquals(1, userRepository.count());
+    }
+
+    @Test
+    @DisplayName("Потоковый multi-get отвечает на каждый запрос по порядку, отсутствующие не обрывают поток")
+    void shouldStreamLookups() throws Exception {
+        com.example.projectTest.grpc.proto.User created = users.create(CreateUserRequest.newBuilder()
+                .setEmail("stream@mail.ru").setName("Stream").setAge(40).build());
+
+        List<UserLookup> lookups = List.of(
+                UserLookup.newBuilder().setId(created.getId()).build(),
+                UserLookup.newBuilder().setEmail("missing@mail.ru").build(),
+                UserLookup.newBuilder().setEmail("stream@mail.ru").build(),
+                UserLookup.newBuilder().setId(Long.MAX_VALUE).build());
+        List<UserLookupResult> results = getMany(inProcessChannel, lookups);
+
+        assertEquals(lookups, results.stream().map(UserLookupResult::getLookup).toList());
+        assertEquals(List.of(true, false, true, false), results.stream().map(UserLookupResult::getFound).toList());
+        assertEquals(created, results.get(0).getUser());
+        assertEquals(created, results.get(2).getUser());
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Задержка и пропускная способность поиска по id: gRPC против REST")
+    void shouldCompareWithRest() throws Exception {
+        List<User> saved = userRepository.saveAll(IntStream.range(0, BENCHMARK_USERS)
+                .mapToObj(i -> User.builder().email("bench" + i + "@mail.ru").name("Bench User " + i).age(20 + i % 50).build())
+                .toList());
+        long[] ids = saved.stream().mapToLong(User::getId).toArray();
+
+        ManagedChannel channel = Grpc.newChannelBuilderForAddress("localhost", grpcPort, InsecureChannelCredentials.create())
+                .build();
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        ExecutorService executor = Executors.newFixedThreadPool(BENCHMARK_CONCURRENCY);
+        try {
+            UsersGrpc.UsersBlockingStub stub = UsersGrpc.newBlockingStub(channel);
+            LookupCall grpc = id -> stub.getById(GetUserByIdRequest.newBuilder().setId(id).build());
+            LookupCall rest = id -> {
+                HttpResponse<byte[]> response = http.send(HttpRequest.newBuilder(restUri("/api/users/" + id)).build(),
+                        HttpResponse.BodyHandlers.ofByteArray());
+                assertEquals(200, response.statusCode());
+            };
+
+            for (String name : List.of("REST", "gRPC")) {
+                LookupCall call = name.equals("REST") ? rest : grpc;
+                // разогрев JIT, пулов соединений и канала
+                sequential(call, ids, BENCHMARK_REQUESTS / 5);
+                long[] latencies = sequential(call, ids, BENCHMARK_REQUESTS);
+                long throughput = concurrent(call, ids, executor);
+                log.info("{}: p50 {} мкс, p99 {} мкс, {} запросов/с в {} потоков", name,
+                        percentile(latencies, 50) / 1000, percentile(latencies, 99) / 1000, throughput,
+                        BENCHMARK_CONCURRENCY);
+            }
+
+            List<UserLookup> lookups = IntStream.range(0, BENCHMARK_REQUESTS)
+                    .mapToObj(i -> UserLookup.newBuilder().setId(ids[i % ids.length]).build())
+                    .toList();
+            getMany(channel, lookups.subList(0, BENCHMARK_REQUESTS / 5));
+            long start = System.nanoTime();
+            List<UserLookupResult> results = getMany(channel, lookups);
+            long elapsed = System.nanoTime() - start;
+            log.info("gRPC поток: {} запросов/с", BENCHMARK_REQUESTS * TimeUnit.SECONDS.toNanos(1) / elapsed);
+            assertTrue(results.stream().allMatch(UserLookupResult::getFound));
+        } finally {
+            executor.shutdownNow();
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private long[] sequential(LookupCall call, long[] ids, int requests) throws Exception {
+        long[] latencies = new long[requests];
+        for (int i = 0; i < requests; i++) {
+            long start = System.nanoTime();
+            call.lookup(ids[i % ids.length]);
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    private long concurrent(LookupCall call, long[] ids, ExecutorService executor) {
+        AtomicInteger remaining = new AtomicInteger(BENCHMARK_REQUESTS);
+        long start = System.nanoTime();
+        CompletableFuture.allOf(IntStream.range(0, BENCHMARK_CONCURRENCY)
+                .mapToObj(worker -> CompletableFuture.runAsync(() -> {
+                    try {
+                        while (remaining.getAndDecrement() > 0) {
+                            call.lookup(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, executor))
+                .toArray(CompletableFuture[]::new)).join();
+        return BENCHMARK_REQUESTS * TimeUnit.SECONDS.toNanos(1) / (System.nanoTime() - start);
+    }
+
+    private static List<UserLookupResult> getMany(ManagedChannel channel, List<UserLookup> lookups)
+            throws InterruptedException {
+        List<UserLookupResult> results = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        StreamObserver<UserLookup> requests = UsersGrpc.newStub(channel).getMany(new StreamObserver<>() {
+            @Override
+            public void onNext(UserLookupResult result) {
+                results.add(result);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                done.countDown();
+            }
+        });
+        lookups.forEach(requests::onNext);
+        requests.onCompleted();
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertEquals(lookups.size(), results.size());
+        return results;
+    }
+
+    private static long percentile(long[] values, int percentile) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+    }
+
+    private static StatusRuntimeException assertStatus(Status.Code code, Runnable call) {
+        StatusRuntimeException exception = assertThrows(StatusRuntimeException.class, call::run);
+        assertEquals(code, exception.getStatus().getCode());
+        return exception;
+    }
+
+    private URI restUri(String path) {
+        return URI.create("http://localhost:" + httpPort + path);
+    }
+
+    @FunctionalInterface
+    private interface LookupCall {
+        void lookup(long id) throws Exception;
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.projectTest.kafka;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UserDto;
+import com.example.projectTest.repository.UserRepository;
+import com.example.projectTest.service.PendingEventProcessor;
+import com.example.projectTest.service.UserEventPublisher;
+import com.example.projectTest.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.BatchMessageListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.support.serializer.JacksonJsonDeserializer;
+import org.springframework.kafka.support.serializer.JacksonJsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Массовые операции через топик user-commands: ответы по каждой команде и устойчивая скорость
+ * обработки (@Tag("benchmark")). Объём нагрузочного прогона задаётся -Duser-commands.benchmark.count.
+ */
+@Slf4j
+@DirtiesContext
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EmbeddedKafka(count = 1, partitions = 4, topics = {"user-commands", "user-command-results"})
+@SpringBootTest(properties = {
+        "spring.config.name=standalone",
+        "spring.datasource.url=jdbc:h2:mem:user-commands;DB_CLOSE_DELAY=-1",
+        "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "user-commands.enabled=true",
+        "user-commands.partitions=4",
+        "user-commands.max-poll-records=1000",
+        "logging.level.com.example.projectTest=WARN",
+        "logging.level.com.example.projectTest.kafka.UserCommandListenerTest=INFO"
+})
+public class UserCommandListenerTest {
+
+    private static final int BENCHMARK_COMMANDS = Integer.getInteger("user-commands.benchmark.count", 1_000_000);
+
+    @Autowired
+    private EmbeddedKafkaBroker broker;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @MockitoBean
+    private PendingEventProcessor pendingEventProcessor;
+
+    private final BlockingQueue<UserCommandResult> results = new LinkedBlockingQueue<>();
+
+    private KafkaMessageListenerContainer<String, UserCommandResult> replies;
+
+    private KafkaProducer<String, UserCommand> producer;
+
+    @BeforeAll
+    void setUp() {
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps(broker, "user-command-results-test", false);
+        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        consumerProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 5000);
+        ContainerProperties containerProperties = new ContainerProperties("user-command-results");
+        containerProperties.setMessageListener((BatchMessageListener<String, UserCommandResult>) batch ->
+                batch.forEach(record -> results.add(record.value())));
+        replies = new KafkaMessageListenerContainer<>(new DefaultKafkaConsumerFactory<>(consumerProps,
+                new StringDeserializer(), new JacksonJsonDeserializer<>(UserCommandResult.class).ignoreTypeHeaders()),
+                containerProperties);
+        replies.start();
+        ContainerTestUtils.waitForAssignment(replies, broker.getPartitionsPerTopic());
+
+        Map<String, Object> producerProps = new HashMap<>(KafkaTestUtils.producerProps(broker));
+        producerProps.put(ProducerConfig.LINGER_MS_CONFIG, 20);
+        producerProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 256 * 1024);
+        producer = new KafkaProducer<>(producerProps, new StringSerializer(),
+                new JacksonJsonSerializer<UserCommand>().noTypeInfo());
+    }
+
+    @AfterAll
+    void tearDown() {
+        producer.close();
+        replies.stop();
+    }
+
+    @BeforeEach
+    void clean() {
+        userRepository.deleteAllInBatch();
+        results.clear();
+    }
+
+    @Test
+    @DisplayName("Каждая команда получает ответ, результат совпадает с последовательным применением")
+    void shouldApplyCommandsAndReplyPerCommand() throws Exception {
+        UserDto renamed = userService.create(new CreateUserDto("renamed@mail.ru", "Renamed", 30));
+        UserDto deleted = userService.create(new CreateUserDto("deleted@mail.ru", "Deleted", 40));
+
+        List<UserCommand> commands = List.of(
+                create("alice@mail.ru", "Alice", 25),
+                create("alice@mail.ru", "Alice Copy", 26),
+                create("not-an-email", "Broken", 20),
+                update(renamed.getId(), null, "Renamed Twice"),
+                update(deleted.getId(), "alice@mail.ru", null),
+                delete(deleted.getId()),
+                delete(deleted.getId()),
+                update(Long.MAX_VALUE, null, "Nobody"),
+                create("deleted@mail.ru", "Reused", 33));
+        // один ключ - одна партиция: команды читаются в порядке отправки
+        commands.forEach(command -> producer.send(new ProducerRecord<>("user-commands", "functional", command)));
+        producer.flush();
+
+        Map<UUID, UserCommandResult> byCommand = new HashMap<>();
+        for (int i = 0; i < commands.size(); i++) {
+            UserCommandResult result = results.poll(30, TimeUnit.SECONDS);
+            assertNotNull(result, "Получено ответов: " + i);
+            byCommand.put(result.getCommandId(), result);
+        }
+
+        List<UserCommandResult.Status> statuses = commands.stream()
+                .map(command -> byCommand.get(command.getCommandId()).getStatus())
+                .toList();
+        assertEquals(List.of(
+                UserCommandResult.Status.OK,
+                UserCommandResult.Status.DUPLICATE_EMAIL,
+                UserCommandResult.Status.INVALID,
+                UserCommandResult.Status.OK,
+                UserCommandResult.Status.DUPLICATE_EMAIL,
+                UserCommandResult.Status.OK,
+                UserCommandResult.Status.NOT_FOUND,
+                UserCommandResult.Status.NOT_FOUND,
+                UserCommandResult.Status.OK), statuses);
+
+        Long aliceId = byCommand.get(commands.getFirst().getCommandId()).getUserId();
+        assertEquals("Alice", userService.findById(aliceId).getName());
+        assertEquals("Renamed Twice", userService.findById(renamed.getId()).getName());
+        assertEquals("Reused", userService.findByEmail("deleted@mail.ru").getName());
+        assertTrue(userRepository.findById(deleted.getId()).isEmpty());
+        assertEquals(3, userRepository.count());
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Устойчивая скорость обработки команд создания")
+    void shouldSustainBulkCreateRate() throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_COMMANDS; i++) {
+            String email = "bulk" + i + "@mail.ru";
+            producer.send(new ProducerRecord<>("user-commands", email, create(email, "Bulk User", 20 + i % 50)));
+        }
+        producer.flush();
+        long sentNanos = System.nanoTime() - start;
+
+        // разогрев (первые 10%) в устойчивую скорость не входит
+        int warmup = BENCHMARK_COMMANDS / 10;
+        long warmedUp = 0;
+        int received = 0;
+        int failed = 0;
+        while (received < BENCHMARK_COMMANDS) {
+            UserCommandResult result = results.poll(60, TimeUnit.SECONDS);
+            assertNotNull(result, "Получено ответов: " + received);
+            if (result.getStatus() != UserCommandResult.Status.OK) {
+                failed++;
+            }
+            if (++received == warmup) {
+                warmedUp = System.nanoTime();
+            }
+        }
+        long end = System.nanoTime();
+
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(end - start);
+        long sustainedMillis = TimeUnit.NANOSECONDS.toMillis(end - warmedUp);
+        log.info("Команд: {}, отправка: {} мс, всего: {} мс, команд/с: {}, устойчиво команд/с: {}",
+                BENCHMARK_COMMANDS, TimeUnit.NANOSECONDS.toMillis(sentNanos), totalMillis,
+                BENCHMARK_COMMANDS * 1000L / Math.max(totalMillis, 1),
+                (BENCHMARK_COMMANDS - warmup) * 1000L / Math.max(sustainedMillis, 1));
+
+        assertEquals(0, failed);
+        assertEquals(BENCHMARK_COMMANDS, userRepository.count());
+    }
+
+    private static UserCommand create(String email, String name, int age) {
+        return UserCommand.builder()
+                .commandId(UUID.randomUUID())
+                .type(UserCommand.Type.CREATE)
+                .email(email)
+                .name(name)
+                .age(age)
+                .build();
+    }
+
+    private static UserCommand update(Long userId, String email, String name) {
+        return UserCommand.builder()
+                .commandId(UUID.randomUUID())
+                .type(UserCommand.Type.UPDATE)
+                .userId(userId)
+                .email(email)
+                .name(name)
+                .build();
+    }
+
+    private static UserCommand delete(Long userId) {
+        return UserCommand.builder()
+                .commandId(UUID.randomUUID())
+                .type(UserCommand.Type.DELETE)
+                .userId(userId)
+                .build();
+    }
+}
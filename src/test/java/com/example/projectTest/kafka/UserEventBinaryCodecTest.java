@@ -0,0 +1,150 @@
+package com.example.projectTest.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JacksonJsonSerializer;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class UserEventBinaryCodecTest {
+
+    private static final String TOPIC = "user-events-topic";
+
+    private final UserEventBinarySerializer serializer = new UserEventBinarySerializer();
+    private final UserEventBinaryDeserializer deserializer = new UserEventBinaryDeserializer();
+
+    @Test
+    @DisplayName("Событие восстанавливается без потерь")
+    void shouldRoundTrip() {
+        UserEvent event = UserEvent.builder()
+                .title("CREATED")
+                .email("тест@mail.ru")
+                .build();
+
+        byte[] data = serializer.serialize(TOPIC, event);
+
+        assertEquals(UserEventBinaryCodec.SCHEMA_VERSION_2, data[0]);
+        assertEquals(event, deserializer.deserialize(TOPIC, data));
+    }
+
+    @Test
+    @DisplayName("Полный снимок пользователя восстанавливается без потерь")
+    void shouldRoundTripFullSnapshot() {
+        UserEvent event = UserEvent.builder()
+                .title("UPDATED")
+                .email("test@mail.ru")
+                .userId(123_456_789L)
+                .name("Иван")
+                .age(25)
+                .createdAt(Instant.parse("2023-10-05T10:15:30.123456Z"))
+                .version(7L)
+                .timestamp(Instant.parse("2026-10-19T08:00:00.000001Z"))
+                .changedFields(UserEvent.EMAIL_CHANGED | UserEvent.AGE_CHANGED)
+                .build();
+
+        assertEquals(event, deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, event)));
+    }
+
+    @Test
+    @DisplayName("Записи первой версии схемы читаются")
+    void shouldReadSchemaVersion1() {
+        byte[] data = {UserEventBinaryCodec.SCHEMA_VERSION_1, 3, 7, 'a', '@', 'b', '.', 'r', 'u'};
+
+        UserEvent event = deserializer.deserialize(TOPIC, data);
+
+        assertEquals("DELETED", event.getTitle());
+        assertEquals("a@b.ru", event.getEmail());
+        assertNull(event.getUserId());
+    }
+
+    @Test
+    @DisplayName("Произвольный тип события и null-поля")
+    void shouldRoundTripCustomTitleAndNulls() {
+        UserEvent custom = UserEvent.builder().title("RESTORED").email(null).build();
+        UserEvent empty = new UserEvent();
+
+        assertEquals(custom, deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, custom)));
+        assertEquals(empty, deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, empty)));
+        assertNull(serializer.serialize(TOPIC, null));
+        assertNull(deserializer.deserialize(TOPIC, null));
+    }
+
+    @Test
+    @DisplayName("Неизвестная версия схемы отклоняется")
+    void shouldRejectUnknownVersion() {
+        byte[] data = serializer.serialize(TOPIC, UserEvent.builder().title("DELETED").email("a@b.ru").build());
+        data[0] = 99;
+
+        assertThrows(SerializationException.class, () -> deserializer.deserialize(TOPIC, data));
+    }
+
+    @Test
+    @DisplayName("Обрезанная запись отклоняется")
+    void shouldRejectTruncatedRecord() {
+        byte[] data = serializer.serialize(TOPIC, UserEvent.builder().title("DELETED").email("a@b.ru").build());
+        byte[] truncated = Arrays.copyOf(data, data.length - 2);
+
+        assertThrows(SerializationException.class, () -> deserializer.deserialize(TOPIC, truncated));
+    }
+
+    @Test
+    @DisplayName("Бинарный формат минимум вдвое компактнее JSON")
+    void shouldBeSmallerThanJson() {
+        UserEvent[] events = events();
+
+        try (JacksonJsonSerializer<UserEvent> jsonSerializer = new JacksonJsonSerializer<>()) {
+            long jsonBytes = 0;
+            long binaryBytes = 0;
+            for (UserEvent event : events) {
+                jsonBytes += jsonSerializer.serialize(TOPIC, event).length;
+                binaryBytes += serializer.serialize(TOPIC, event).length;
+            }
+            assertTrue(binaryBytes * 2 < jsonBytes, "Бинарный формат должен быть минимум вдвое компактнее JSON");
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Размер и время сериализации 1M событий: бинарный формат против JSON")
+    void shouldMeasureSerializationAgainstJson() {
+        int count = 1_000_000;
+        UserEvent[] events = events();
+
+        try (JacksonJsonSerializer<UserEvent> jsonSerializer = new JacksonJsonSerializer<>()) {
+            long jsonBytes = 0;
+            long jsonStart = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                jsonBytes += jsonSerializer.serialize(TOPIC, events[i & 1023]).length;
+            }
+            long jsonNanos = System.nanoTime() - jsonStart;
+
+            long binaryBytes = 0;
+            long binaryStart = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                binaryBytes += serializer.serialize(TOPIC, events[i & 1023]).length;
+            }
+            long binaryNanos = System.nanoTime() - binaryStart;
+
+            log.info("UserEvent x {}: JSON {} байт, {} мс; бинарный {} байт, {} мс",
+                    count, jsonBytes, jsonNanos / 1_000_000, binaryBytes, binaryNanos / 1_000_000);
+        }
+    }
+
+    private static UserEvent[] events() {
+        UserEvent[] events = new UserEvent[1024];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = UserEvent.builder()
+                    .title(i % 2 == 0 ? "CREATED" : "DELETED")
+                    .email("user" + i + "@example.com")
+                    .build();
+        }
+        return events;
+    }
+}
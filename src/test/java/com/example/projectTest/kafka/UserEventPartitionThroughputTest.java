@@ -0,0 +1,128 @@
+package com.example.projectTest.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.condition.EmbeddedKafkaCondition;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Пропускная способность потребителей при 1, 4 и 12 партициях топика событий.
+ * Каждое событие обрабатывается ~100 мкс, число потребителей равно числу партиций.
+ * Порядок событий одного пользователя проверяется в обычном прогоне, замер пропускной способности
+ * помечен @Tag("benchmark").
+ */
+@Slf4j
+@EmbeddedKafka(count = 1, partitions = 1)
+public class UserEventPartitionThroughputTest {
+
+    private static final int USERS = 500;
+    private static final long PROCESSING_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    @ParameterizedTest(name = "{0} партиций")
+    @ValueSource(ints = {1, 4})
+    @DisplayName("События одного пользователя приходят по порядку")
+    void shouldKeepPerUserOrder(int partitions) throws Exception {
+        consume("user-events-order-" + partitions, partitions, 2_000);
+    }
+
+    @ParameterizedTest(name = "{0} партиций")
+    @ValueSource(ints = {1, 4, 12})
+    @Tag("benchmark")
+    @DisplayName("Пропускная способность потребителей по числу партиций")
+    void shouldScaleWithPartitions(int partitions) throws Exception {
+        int events = 20_000;
+        long elapsedMillis = consume("user-events-throughput-" + partitions, partitions, events);
+        log.info("Партиций: {}, событий: {}, время: {} мс, событий/с: {}",
+                partitions, events, elapsedMillis, events * 1000L / Math.max(elapsedMillis, 1));
+    }
+
+    /**
+     * Отправляет события USERS пользователей в новый топик, дожидается их получения
+     * и возвращает время от первой отправки до последнего полученного события.
+     */
+    private long consume(String topic, int partitions, int events) throws Exception {
+        EmbeddedKafkaBroker broker = EmbeddedKafkaCondition.getBroker();
+        broker.addTopics(new NewTopic(topic, partitions, (short) 1));
+
+        Map<String, Integer> lastSequence = new ConcurrentHashMap<>();
+        AtomicInteger outOfOrder = new AtomicInteger();
+        CountDownLatch received = new CountDownLatch(events);
+
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps(broker, topic, false);
+        consumerProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        consumerProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, UserEventBinaryDeserializer.class);
+        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        ContainerProperties containerProperties = new ContainerProperties(topic);
+        containerProperties.setMessageListener((MessageListener<String, UserEvent>) (ConsumerRecord<String, UserEvent> record) -> {
+            LockSupport.parkNanos(PROCESSING_NANOS);
+            int sequence = Integer.parseInt(record.value().getTitle());
+            Integer previous = lastSequence.put(record.key(), sequence);
+            if (previous != null && previous >= sequence) {
+                outOfOrder.incrementAndGet();
+            }
+            received.countDown();
+        });
+        ConcurrentMessageListenerContainer<String, UserEvent> container = new ConcurrentMessageListenerContainer<>(
+                new DefaultKafkaConsumerFactory<>(consumerProps), containerProperties);
+        container.setConcurrency(partitions);
+        container.start();
+
+        try {
+            ContainerTestUtils.waitForAssignment(container, partitions);
+
+            Map<String, Object> producerProps = KafkaTestUtils.producerProps(broker);
+            producerProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+            producerProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, UserEventBinarySerializer.class);
+            producerProps.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, UserIdPartitioner.class);
+            producerProps.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+
+            long start = System.nanoTime();
+            try (KafkaProducer<String, UserEvent> producer = new KafkaProducer<>(producerProps)) {
+                for (int i = 0; i < events; i++) {
+                    long userId = i % USERS + 1;
+                    UserEvent event = UserEvent.builder()
+                            .title(String.valueOf(i))
+                            .email("user" + userId + "@example.com")
+                            .build();
+                    producer.send(new ProducerRecord<>(topic, String.valueOf(userId), event));
+                }
+            }
+
+            assertTrue(received.await(60, TimeUnit.SECONDS), "Не все события получены");
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(0, outOfOrder.get(), "События одного пользователя пришли не по порядку");
+            assertEquals(USERS, lastSequence.size());
+            return elapsedMillis;
+        } finally {
+            container.stop();
+        }
+    }
+}
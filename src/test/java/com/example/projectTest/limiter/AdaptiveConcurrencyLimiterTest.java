@@ -0,0 +1,130 @@
+package com.example.projectTest.limiter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class AdaptiveConcurrencyLimiterTest {
+
+    // Моделируемый сервис: 8 соединений с БД, 5 мс на запрос - не больше 1600 запросов/с
+    private static final int CONNECTIONS = 8;
+    private static final long SERVICE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final int SUSTAINABLE_RPS = (int) (CONNECTIONS * TimeUnit.SECONDS.toNanos(1) / SERVICE_NANOS);
+
+    @Test
+    @DisplayName("Сверх лимита запросы отклоняются и учитываются")
+    void shouldRejectOverLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        assertEquals(2, limiter.getInflight());
+        assertEquals(1, limiter.getRejected());
+        limiter.onSuccess(TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("Лимит растёт при стабильном времени ответа и падает при росте очереди")
+    void shouldAdaptToQueueing() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 5, 200);
+        runSaturated(limiter, TimeUnit.MILLISECONDS.toNanos(5), 500);
+        int grownLimit = limiter.getLimit();
+        assertTrue(grownLimit > 20, "лимит должен вырасти, получено " + grownLimit);
+
+        limiter.onDropped();
+        assertTrue(limiter.getLimit() < grownLimit, "отброшенный запрос должен уменьшить лимит");
+
+        runSaturated(limiter, TimeUnit.MILLISECONDS.toNanos(50), 500);
+        assertTrue(limiter.getLimit() < grownLimit / 2, "лимит должен упасть, получено " + limiter.getLimit());
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("При двукратной перегрузке p99 принятых запросов остаётся ограниченным")
+    void shouldKeepP99BoundedAtTwiceSustainableLoad() throws Exception {
+        LoadResult unlimited = runOpenLoopLoad(null, 2 * SUSTAINABLE_RPS, TimeUnit.SECONDS.toNanos(2));
+        LoadResult limited = runOpenLoopLoad(new AdaptiveConcurrencyLimiter(20, 4, 200),
+                2 * SUSTAINABLE_RPS, TimeUnit.SECONDS.toNanos(2));
+
+        log.info("Без лимита: принято {}, p99 {} мс; с лимитом: принято {}, отклонено {}, p99 {} мс",
+                unlimited.accepted(), Math.round(unlimited.p99Millis()), limited.accepted(), limited.rejected(),
+                Math.round(limited.p99Millis()));
+        assertTrue(limited.rejected() > 0);
+        assertTrue(limited.p99Millis() < 100, "p99 с лимитом: " + limited.p99Millis());
+        assertTrue(limited.p99Millis() * 5 < unlimited.p99Millis(), "p99 без лимита: " + unlimited.p99Millis());
+    }
+
+    // Лимит всё время выбран полностью: на место каждого завершённого запроса сразу приходит новый
+    private static void runSaturated(AdaptiveConcurrencyLimiter limiter, long rttNanos, int samples) {
+        for (int i = 0; i < samples; i++) {
+            while (limiter.tryAcquire()) {
+                // занимаем все свободные места
+            }
+            limiter.onSuccess(rttNanos);
+        }
+    }
+
+    /**
+     * Запросы приходят с постоянной частотой независимо от ответов - как от множества клиентов.
+     */
+    private static LoadResult runOpenLoopLoad(AdaptiveConcurrencyLimiter limiter, int rps, long durationNanos)
+            throws InterruptedException {
+        Semaphore connections = new Semaphore(CONNECTIONS, true);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger rejected = new AtomicInteger();
+        long interval = TimeUnit.SECONDS.toNanos(1) / rps;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            long start = System.nanoTime();
+            for (long next = start; next - start < durationNanos; next += interval) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                executor.execute(() -> {
+                    if (limiter != null && !limiter.tryAcquire()) {
+                        rejected.incrementAndGet();
+                        return;
+                    }
+                    long requestStart = System.nanoTime();
+                    connections.acquireUninterruptibly();
+                    try {
+                        LockSupport.parkNanos(SERVICE_NANOS);
+                    } finally {
+                        connections.release();
+                    }
+                    long rtt = System.nanoTime() - requestStart;
+                    latencies.add(rtt);
+                    if (limiter != null) {
+                        limiter.onSuccess(rtt);
+                    }
+                });
+            }
+        }
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        double p99 = sorted.get(sorted.size() * 99 / 100) / 1e6;
+        return new LoadResult(sorted.size(), rejected.get(), p99);
+    }
+
+    private record LoadResult(int accepted, int rejected, double p99Millis) {
+    }
+}
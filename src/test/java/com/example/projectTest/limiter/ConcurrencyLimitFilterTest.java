@@ -0,0 +1,78 @@
+package com.example.projectTest.limiter;
+
+import com.example.projectTest.controllerAdvice.ErrorResponseWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ConcurrencyLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // лимит в один запрос на чтение и на запись
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(meterRegistry,
+            new ErrorResponseWriter(JsonMapper.builder().build(), CBORMapper.builder().build(), SmileMapper.builder().build()),
+            1, 1, 1, 1, 1, 1, 7);
+
+    @Test
+    @DisplayName("Сверх лимита запрос получает 503 с Retry-After и не доходит до цепочки")
+    void shouldRejectWhenLimitExhausted() throws Exception {
+        AtomicReference<MockHttpServletResponse> rejected = new AtomicReference<>();
+        FilterChain rejectedChain = mock(FilterChain.class);
+
+        // второй запрос приходит, пока первый ещё выполняется
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/users/1"), new MockHttpServletResponse(),
+                new MockFilterChain() {
+                    @Override
+                    public void doFilter(ServletRequest request, ServletResponse response) {
+                        MockHttpServletResponse response503 = new MockHttpServletResponse();
+                        try {
+                            filter.doFilter(new MockHttpServletRequest("GET", "/api/users/2"), response503, rejectedChain);
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                        rejected.set(response503);
+                    }
+                });
+
+        MockHttpServletResponse response = rejected.get();
+        assertEquals(503, response.getStatus());
+        assertEquals("7", response.getHeader(HttpHeaders.RETRY_AFTER));
+        assertTrue(response.getContentAsString().contains("SERVICE_UNAVAILABLE"));
+        verify(rejectedChain, never()).doFilter(any(), any());
+        assertEquals(1.0, meterRegistry.get("users.concurrency.rejected").tag("workload", "read").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Исключение в цепочке освобождает слот")
+    void shouldReleaseSlotWhenChainThrows() throws Exception {
+        FilterChain failingChain = mock(FilterChain.class);
+        doThrow(new IllegalStateException("ошибка обработчика")).when(failingChain).doFilter(any(), any());
+
+        assertThrows(IllegalStateException.class, () -> filter.doFilter(
+                new MockHttpServletRequest("POST", "/api/users"), new MockHttpServletResponse(), failingChain));
+
+        assertEquals(0.0, meterRegistry.get("users.concurrency.inflight").tag("workload", "write").gauge().value());
+        FilterChain chain = mock(FilterChain.class);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/users"), response, chain);
+        verify(chain).doFilter(any(), any());
+        assertEquals(200, response.getStatus());
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.projectTest.reactive;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UpdateUserDto;
+import com.example.projectTest.dto.UserDto;
+import com.example.projectTest.entity.User;
+import com.example.projectTest.repository.UserRepository;
+import com.example.projectTest.service.PendingEventProcessor;
+import com.example.projectTest.service.UserEventPublisher;
+import com.example.projectTest.service.UserService;
+import com.sun.management.UnixOperatingSystemMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Неблокирующий поиск через R2DBC рядом с JPA-записью: совпадение результатов и сравнение
+ * с блокирующим стеком при большом числе одновременных соединений (@Tag("benchmark")).
+ * Число соединений задаётся -Dusers.reactive.benchmark.connections. Клиент и сервер работают в одном
+ * процессе, поэтому каждое соединение занимает два дескриптора: число соединений ограничено половиной
+ * ulimit -n.
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.config.name=standalone",
+        "spring.datasource.url=jdbc:h2:mem:user-reactive;DB_CLOSE_DELAY=-1",
+        "reactive-lookup.enabled=true",
+        "reactive-lookup.url=r2dbc:h2:mem:///user-reactive;DB_CLOSE_DELAY=-1",
+        "reactive-lookup.username=sa",
+        "concurrency-limit.enabled=false",
+        // при тысячах одновременных запросов оба пути должны ждать очереди, а не получать 503 или 500:
+        // блокирующий - слота bulkhead, реактивный - соединения из пула R2DBC
+        "resilience4j.bulkhead.instances.userLookup.max-concurrent-calls=200",
+        "resilience4j.bulkhead.instances.userLookup.max-wait-duration=60s",
+        "reactive-lookup.pool.max-acquire-ms=60000",
+        "server.tomcat.max-connections=20000",
+        "server.tomcat.accept-count=1000",
+        "logging.level.com.example.projectTest=WARN",
+        "logging.level.com.example.projectTest.reactive.ReactiveUserLookupTest=INFO"
+})
+public class ReactiveUserLookupTest {
+
+    private static final int BENCHMARK_CONNECTIONS = Integer.getInteger("users.reactive.benchmark.connections", 2000);
+
+    private static final int BENCHMARK_USERS = 1000;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ReactiveUserService reactiveUserService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @MockitoBean
+    private PendingEventProcessor pendingEventProcessor;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("Реактивный поиск видит записи JPA сразу после commit и отдаёт те же данные и ошибки")
+    void shouldStayConsistentWithJpaWrites() throws Exception {
+        UserDto created = userService.create(new CreateUserDto("reactive@mail.ru", "Reactive", 30));
+        userService.create(new CreateUserDto("second@mail.ru", "Second", 40));
+        assertEquals(userService.findById(created.getId()), reactiveUserService.findById(created.getId()).block());
+
+        userService.update(created.getId(), new UpdateUserDto("renamed@mail.ru", "Renamed", 31));
+        assertEquals(userService.findById(created.getId()), reactiveUserService.findById(created.getId()).block());
+        assertEquals(userService.findByEmail("renamed@mail.ru"), reactiveUserService.findByEmail("renamed@mail.ru").block());
+        assertEquals(userService.findAll(), reactiveUserService.findAll().collectList().block());
+
+        HttpClient http = HttpClient.newHttpClient();
+        JsonNode byId = jsonMapper.readTree(get(http, "/api/reactive/users/" + created.getId(), "application/json").body());
+        assertEquals("renamed@mail.ru", byId.get("email").asString());
+        assertEquals(userService.findById(created.getId()).getCreatedAt().toString(), byId.get("createdAt").asString());
+
+        HttpResponse<String> list = get(http, "/api/reactive/users", "application/json");
+        assertEquals(2, jsonMapper.readTree(list.body()).size());
+        HttpResponse<String> stream = get(http, "/api/reactive/users", "application/x-ndjson");
+        assertEquals(List.of("renamed@mail.ru", "second@mail.ru"), stream.body().lines()
+                .map(line -> jsonMapper.readTree(line).get("email").asString())
+                .toList());
+
+        userService.delete(created.getId());
+        HttpResponse<String> notFound = get(http, "/api/reactive/users/" + created.getId(), "application/json");
+        assertEquals(404, notFound.statusCode());
+        assertEquals("NOT_FOUND", jsonMapper.readTree(notFound.body()).get("error").asString());
+        assertEquals(404, get(http, "/api/reactive/users/findByEmail?email=renamed@mail.ru", "application/json").statusCode());
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Пропускная способность на ядро, потоки и память: блокирующий и реактивный поиск")
+    void shouldCompareWithBlockingStack() throws Exception {
+        List<User> saved = userRepository.saveAll(IntStream.range(0, BENCHMARK_USERS)
+                .mapToObj(i -> User.builder().email("load" + i + "@mail.ru").name("Load User " + i).age(20 + i % 50).build())
+                .toList());
+        long[] ids = saved.stream().mapToLong(User::getId).toArray();
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (String stack : List.of("JPA", "R2DBC", "JPA", "R2DBC")) {
+            String path = stack.equals("JPA") ? "/api/users/" : "/api/reactive/users/";
+            Result result = load(path, ids);
+            log.info("{}: соединений {}, {} запросов/с ({} на ядро из {}), потоков {}, прирост кучи {} МБ, ошибок {}",
+                    stack, BENCHMARK_CONNECTIONS, result.requestsPerSecond(), result.requestsPerSecond() / cores, cores,
+                    result.peakThreads(), result.heapGrowthMb(), result.failed());
+            assertEquals(0, result.failed(), "ошибки " + stack + ": " + result.failures());
+        }
+    }
+
+    /**
+     * Открывает BENCHMARK_CONNECTIONS соединений и держит на каждом по запросу, пока не выполнит
+     * по три запроса на соединение.
+     */
+    private Result load(String path, long[] ids) throws InterruptedException {
+        // у клиента постоянное число потоков, чтобы рост числа потоков показывал сервер
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(4);
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .executor(clientExecutor)
+                .build();
+        int requests = BENCHMARK_CONNECTIONS * 3;
+        Semaphore inflight = new Semaphore(BENCHMARK_CONNECTIONS);
+        AtomicInteger failed = new AtomicInteger();
+        Map<String, Integer> failures = new ConcurrentHashMap<>();
+        AtomicLong peakThreads = new AtomicLong();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long openFilesBefore = openFiles();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        long peakHeap = heapBefore;
+        threads.resetPeakThreadCount();
+
+        long start = System.nanoTime();
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[requests];
+        for (int i = 0; i < requests; i++) {
+            inflight.acquire();
+            long id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+            responses[i] = http.sendAsync(HttpRequest.newBuilder(URI.create("http://localhost:" + port + path + id))
+                                    .timeout(Duration.ofSeconds(60)).build(),
+                            HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error != null || response.statusCode() != 200) {
+                            failed.incrementAndGet();
+                            failures.merge(error != null ? rootCause(error).getClass().getSimpleName()
+                                    : "HTTP " + response.statusCode(), 1, Integer::sum);
+                        }
+                        inflight.release();
+                    });
+            if (i % 500 == 0) {
+                peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+            }
+        }
+        CompletableFuture.allOf(responses).exceptionally(error -> null).join();
+        long elapsed = System.nanoTime() - start;
+        peakThreads.set(threads.getPeakThreadCount());
+        http.shutdownNow();
+        clientExecutor.shutdownNow();
+        awaitSocketsClosed(openFilesBefore);
+        return new Result(requests * TimeUnit.SECONDS.toNanos(1) / elapsed, peakThreads.get(),
+                (peakHeap - heapBefore) / (1024 * 1024), failed.get(), failures);
+    }
+
+    // Следующий прогон начинается, когда сокеты предыдущего (клиентские и серверные) закрыты
+    private static void awaitSocketsClosed(long openFilesBefore) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (openFiles() > openFilesBefore + 100 && System.nanoTime() < deadline) {
+            Thread.sleep(200);
+        }
+    }
+
+    private static Throwable rootCause(Throwable error) {
+        return error.getCause() != null ? rootCause(error.getCause()) : error;
+    }
+
+    private static long openFiles() {
+        return ManagementFactory.getOperatingSystemMXBean() instanceof UnixOperatingSystemMXBean unix
+                ? unix.getOpenFileDescriptorCount() : 0;
+    }
+
+    private HttpResponse<String> get(HttpClient http, String path, String accept) throws Exception {
+        return http.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Accept", accept)
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private record Result(long requestsPerSecond, long peakThreads, long heapGrowthMb, int failed,
+                          Map<String, Integer> failures) {
+    }
+}
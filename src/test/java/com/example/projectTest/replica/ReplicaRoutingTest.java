@@ -0,0 +1,146 @@
+package com.example.projectTest.replica;
+
+import com.example.projectTest.entity.User;
+import com.example.projectTest.repository.UserRepository;
+import com.example.projectTest.service.PendingEventProcessor;
+import com.example.projectTest.service.UserEventPublisher;
+import com.example.projectTest.service.UserService;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import tools.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Маршрутизация чтений на реплику. Primary и реплика - две независимые базы H2 без репликации,
+ * поэтому по содержимому ответа видно, из какой базы он прочитан.
+ */
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.config.name=standalone",
+        "replica.enabled=true",
+        "replica.datasource.url=jdbc:h2:mem:users-replica;DB_CLOSE_DELAY=-1",
+        "replica.read-your-writes.enabled=true",
+        "replica.read-your-writes.window-ms=60000",
+        "replica.health-check-interval-ms=3600000"
+})
+public class ReplicaRoutingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaPoolDataSource")
+    private DataSource replicaPoolDataSource;
+
+    @Autowired
+    private ReplicaDataSource replicaDataSource;
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @MockitoBean
+    private PendingEventProcessor pendingEventProcessor;
+
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setUp() {
+        replica = new JdbcTemplate(replicaPoolDataSource);
+        replica.execute("""
+                create table if not exists users (
+                    id bigint primary key,
+                    name varchar(255) not null,
+                    email varchar(255) not null unique,
+                    age integer not null,
+                    created_at timestamp(6) with time zone,
+                    version bigint default 0 not null)""");
+        replica.update("delete from users");
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Read-only запросы читают реплику, запись идёт в primary")
+    void shouldReadFromReplica() {
+        User user = userRepository.save(User.builder().email("user@mail.ru").name("Primary").age(30).build());
+        replica.update("insert into users (id, name, email, age) values (?, 'Replica', 'user@mail.ru', 30)", user.getId());
+
+        assertEquals("Replica", userService.findById(user.getId()).getName());
+        assertEquals("Replica", userService.findByEmail("user@mail.ru").getName());
+        assertTrue(replicaDataSource.isReplicaHealthy());
+    }
+
+    @Test
+    @DisplayName("После записи клиент читает свои данные с primary, остальные - с реплики")
+    void shouldPinWriterToPrimary() throws Exception {
+        MvcResult created = mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"writer@mail.ru\",\"name\":\"Writer\",\"age\":20}"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        Cookie pin = created.getResponse().getCookie(ReadYourWritesFilter.COOKIE_NAME);
+        assertNotNull(pin, "Изменяющий запрос должен закрепить клиента за primary");
+        long id = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asLong();
+
+        mockMvc.perform(get("/api/users/{id}", id).cookie(pin)).andExpect(status().isOk());
+        // реплика ещё не получила запись, клиент без закрепления её не видит
+        mockMvc.perform(get("/api/users/{id}", id)).andExpect(status().isNotFound());
+
+        Cookie expired = new Cookie(ReadYourWritesFilter.COOKIE_NAME, Long.toString(System.currentTimeMillis() - 1));
+        mockMvc.perform(get("/api/users/{id}", id).cookie(expired)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Недоступная реплика заменяется primary до успешной проверки")
+    void shouldFallBackToPrimaryWhenReplicaIsDown() throws Exception {
+        DataSource brokenReplica = new DriverManagerDataSource("jdbc:h2:mem:missing-replica;IFEXISTS=TRUE");
+        ReplicaDataSource dataSource = new ReplicaDataSource(primaryDataSource, brokenReplica, 1);
+        String primaryUrl;
+        try (Connection connection = primaryDataSource.getConnection()) {
+            primaryUrl = connection.getMetaData().getURL();
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            assertEquals(primaryUrl, connection.getMetaData().getURL());
+        }
+        assertFalse(dataSource.isReplicaHealthy());
+
+        dataSource.checkHealth();
+        assertFalse(dataSource.isReplicaHealthy());
+
+        ReplicaDataSource recovered = new ReplicaDataSource(primaryDataSource, replicaPoolDataSource, 1);
+        recovered.checkHealth();
+        assertTrue(recovered.isReplicaHealthy());
+    }
+}
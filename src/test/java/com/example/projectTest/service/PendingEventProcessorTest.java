@@ -0,0 +1,158 @@
+package com.example.projectTest.service;
+
+import com.example.projectTest.entity.PendingKafkaEvent;
+import com.example.projectTest.kafka.UserEventProducer;
+import com.example.projectTest.repository.PendingKafkaEventRepository;
+import com.example.projectTest.snapshot.UserSnapshotPublisher;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PendingEventProcessorTest {
+
+    @Mock
+    private PendingKafkaEventRepository repository;
+
+    @Mock
+    private UserEventProducer producer;
+
+    @Mock
+    private ObjectProvider<TransactionalPendingEventRelay> transactionalRelay;
+
+    @Mock
+    private UserSnapshotPublisher userSnapshotPublisher;
+
+    @InjectMocks
+    private PendingEventProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(processor, "ackTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(processor, "batchSize", 100);
+        ReflectionTestUtils.setField(processor, "maxAttempts", 3);
+        ReflectionTestUtils.setField(processor, "backoffInitialMs", 1000L);
+        ReflectionTestUtils.setField(processor, "backoffMaxMs", 60_000L);
+        ReflectionTestUtils.setField(processor, "replayBatchSize", 2);
+    }
+
+    @Test
+    @DisplayName("Без подтверждения брокера событие не помечается обработанным и откладывается")
+    void shouldRescheduleWithoutAck() throws Exception {
+        PendingKafkaEvent event = pendingEvent(0);
+        when(repository.findDue(any(), eq(Limit.of(100)))).thenReturn(List.of(event));
+        when(producer.sendAndAwait(any(), any())).thenThrow(new IllegalStateException("нет ack"));
+
+        LocalDateTime before = LocalDateTime.now();
+        processor.processPendingEvents();
+
+        assertFalse(event.isProcessed());
+        assertFalse(event.isDeadLetter());
+        assertEquals(1, event.getRetryCount());
+        assertTrue(event.getNextAttemptAt().isAfter(before.plusNanos(499_000_000)));
+        verify(producer).sendAndAwait(argThat(sent -> event.getEventId().equals(sent.getEventId())), any());
+    }
+
+    @Test
+    @DisplayName("После исчерпания попыток событие перемещается в dead letter")
+    void shouldMoveToDeadLetter() throws Exception {
+        PendingKafkaEvent event = pendingEvent(2);
+        when(repository.findDue(any(), any())).thenReturn(List.of(event));
+        when(producer.sendAndAwait(any(), any())).thenThrow(new IllegalStateException("нет ack"));
+
+        processor.processPendingEvents();
+
+        assertTrue(event.isDeadLetter());
+        assertEquals(3, event.getRetryCount());
+        verify(repository).save(event);
+    }
+
+    @AfterEach
+    void tearDown() {
+        processor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Пробуждение запускает отправку сразу, без ожидания опроса")
+    void shouldProcessImmediatelyOnWakeUp() {
+        PendingKafkaEvent event = pendingEvent(0);
+        when(repository.findDue(any(), any())).thenReturn(List.of(event));
+
+        processor.onPendingEventSaved(new PendingEventSavedEvent(event.getId()));
+
+        verify(repository, timeout(200)).save(argThat(PendingKafkaEvent::isProcessed));
+    }
+
+    @Test
+    @DisplayName("Закрытие circuit breaker будит отправку отложенных событий")
+    void shouldWakeUpWhenCircuitBreakerCloses() {
+        PendingEventProcessor pendingEventProcessor = mock(PendingEventProcessor.class);
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.ofDefaults();
+        new KafkaCircuitBreakerListener(registry, pendingEventProcessor).subscribe();
+        CircuitBreaker circuitBreaker = registry.circuitBreaker(UserEventPublisher.CIRCUIT_BREAKER);
+
+        circuitBreaker.transitionToOpenState();
+        verify(pendingEventProcessor, never()).wakeUp();
+
+        circuitBreaker.transitionToHalfOpenState();
+        circuitBreaker.transitionToClosedState();
+        verify(pendingEventProcessor).wakeUp();
+    }
+
+    @Test
+    @DisplayName("Задержка растёт экспоненциально со случайной составляющей и ограничена сверху")
+    void shouldBackoffExponentiallyWithJitter() {
+        for (int attempt = 1; attempt <= 6; attempt++) {
+            long delay = Math.min(60_000L, 1000L << (attempt - 1));
+            Duration backoff = processor.backoff(attempt);
+            assertTrue(backoff.toMillis() >= delay / 2 && backoff.toMillis() <= delay, "попытка " + attempt);
+        }
+        assertTrue(processor.backoff(100).toMillis() <= 60_000L);
+    }
+
+    @Test
+    @DisplayName("Dead letter возвращается в очередь ограниченными пачками")
+    void shouldReplayDeadLettersInBatches() {
+        when(repository.findDeadLetterIds(Limit.of(2))).thenReturn(List.of(1L, 2L), List.of(3L, 4L));
+        when(repository.findDeadLetterIds(Limit.of(1))).thenReturn(List.of(5L));
+        when(repository.resubmit(any(), any())).thenAnswer(invocation -> invocation.<List<Long>>getArgument(0).size());
+
+        assertEquals(5, processor.replayDeadLetters(5));
+
+        verify(repository).resubmit(eq(List.of(1L, 2L)), any());
+        verify(repository).resubmit(eq(List.of(3L, 4L)), any());
+        verify(repository).resubmit(eq(List.of(5L)), any());
+    }
+
+    private static PendingKafkaEvent pendingEvent(int retryCount) {
+        PendingKafkaEvent pending = new PendingKafkaEvent();
+        pending.setId(1L);
+        pending.setEventId(UUID.randomUUID());
+        pending.setUserId(1L);
+        pending.setTitle("UPDATED");
+        pending.setEmail("user@example.com");
+        pending.setRetryCount(retryCount);
+        return pending;
+    }
+}
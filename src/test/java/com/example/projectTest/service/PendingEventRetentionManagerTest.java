@@ -0,0 +1,100 @@
+package com.example.projectTest.service;
+
+import com.example.projectTest.repository.PendingKafkaEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PendingEventRetentionManagerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PendingKafkaEventRepository repository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PendingEventRetentionManager manager;
+
+    @BeforeEach
+    void setUp() {
+        manager = new PendingEventRetentionManager(jdbcTemplate, repository, transactionManager);
+        ReflectionTestUtils.setField(manager, "chunkSize", 2);
+        ReflectionTestUtils.setField(manager, "pauseMs", 1L);
+        ReflectionTestUtils.setField(manager, "daysAhead", 2);
+        ReflectionTestUtils.setField(manager, "dropDetached", true);
+    }
+
+    @Test
+    @DisplayName("Обработанные строки удаляются пачками, каждая отдельным запросом")
+    void shouldDeleteInChunks() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(7);
+        when(repository.findProcessedIdsBefore(cutoff, Limit.of(2)))
+                .thenReturn(List.of(1L, 2L), List.of(3L, 4L), List.of(5L));
+
+        assertEquals(5, manager.deleteProcessedInChunks(cutoff));
+
+        verify(repository).deleteAllByIdInBatch(List.of(1L, 2L));
+        verify(repository).deleteAllByIdInBatch(List.of(3L, 4L));
+        verify(repository).deleteAllByIdInBatch(List.of(5L));
+        verify(repository, times(3)).findProcessedIdsBefore(any(), any());
+    }
+
+    @Test
+    @DisplayName("Секции создаются на несколько дней вперёд")
+    void shouldCreateUpcomingPartitions() {
+        manager.createUpcomingPartitions(LocalDate.of(2026, 10, 19));
+
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS pending_kafka_events_p20261019 PARTITION OF " +
+                "pending_kafka_events FOR VALUES FROM ('2026-10-19') TO ('2026-10-20')");
+        verify(jdbcTemplate).execute(contains("pending_kafka_events_p20261020"));
+        verify(jdbcTemplate).execute(contains("pending_kafka_events_p20261021"));
+        verify(jdbcTemplate, times(3)).execute(anyString());
+    }
+
+    @Test
+    @DisplayName("Удаляются только устаревшие секции без неотправленных событий")
+    void shouldDropOnlyExpiredPartitionsWithoutLiveEvents() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("pending_kafka_events"))).thenReturn(List.of(
+                "pending_kafka_events_p20261001",
+                "pending_kafka_events_p20261002",
+                "pending_kafka_events_p20261019"));
+        when(jdbcTemplate.queryForObject(contains("pending_kafka_events_p20261001"), eq(Boolean.class))).thenReturn(false);
+        when(jdbcTemplate.queryForObject(contains("pending_kafka_events_p20261002"), eq(Boolean.class))).thenReturn(true);
+
+        manager.dropExpiredPartitions(LocalDate.of(2026, 10, 12));
+
+        verify(jdbcTemplate).execute("ALTER TABLE pending_kafka_events DETACH PARTITION pending_kafka_events_p20261001 CONCURRENTLY");
+        verify(jdbcTemplate).execute("DROP TABLE pending_kafka_events_p20261001");
+        verify(jdbcTemplate, never()).execute(contains("pending_kafka_events_p20261002"));
+        verify(jdbcTemplate, never()).execute(contains("pending_kafka_events_p20261019"));
+    }
+
+    @Test
+    @DisplayName("Имя секции содержит её день")
+    void shouldParsePartitionName() {
+        LocalDate day = LocalDate.of(2026, 1, 5);
+
+        assertEquals("pending_kafka_events_p20260105", PendingEventRetentionManager.partitionName(day));
+        assertEquals(day, PendingEventRetentionManager.partitionDay("pending_kafka_events_p20260105"));
+        assertNull(PendingEventRetentionManager.partitionDay("pending_kafka_events_legacy"));
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.projectTest.service;
+
+import com.example.projectTest.entity.PendingKafkaEvent;
+import com.example.projectTest.kafka.UserEvent;
+import com.example.projectTest.kafka.UserEventBinaryCodec;
+import com.example.projectTest.kafka.UserEventBinaryDeserializer;
+import com.example.projectTest.kafka.UserEventBinarySerializer;
+import com.example.projectTest.kafka.UserEventProducer;
+import com.example.projectTest.repository.PendingKafkaEventRepository;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.condition.EmbeddedKafkaCondition;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Падение посреди пачки при транзакционной повторной отправке отложенных событий:
+ * read_committed-потребитель не должен увидеть ни дубликатов, ни пропусков.
+ */
+@EmbeddedKafka(count = 1, partitions = 1, topics = TransactionalPendingEventRelayTest.TOPIC, brokerProperties = {
+        "transaction.state.log.replication.factor=1",
+        "transaction.state.log.min.isr=1"
+})
+public class TransactionalPendingEventRelayTest {
+
+    static final String TOPIC = "outbox-relay-test";
+    private static final int BATCH_SIZE = 10;
+
+    @Test
+    @DisplayName("Пачка, прерванная падением, доставляется ровно один раз")
+    void shouldDeliverInterruptedBatchExactlyOnce() {
+        EmbeddedKafkaBroker broker = EmbeddedKafkaCondition.getBroker();
+        Map<String, Object> producerProps = KafkaTestUtils.producerProps(broker);
+        producerProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        producerProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, UserEventBinarySerializer.class);
+        producerProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        DefaultKafkaProducerFactory<String, UserEvent> producerFactory = new DefaultKafkaProducerFactory<>(producerProps);
+        producerFactory.setTransactionIdPrefix("relay-test-");
+        CrashingKafkaTemplate kafkaTemplate = new CrashingKafkaTemplate(producerFactory, BATCH_SIZE / 2);
+
+        PendingKafkaEventRepository repository = mock(PendingKafkaEventRepository.class);
+        TransactionalPendingEventRelay relay = new TransactionalPendingEventRelay(kafkaTemplate, repository, TOPIC);
+
+        List<PendingKafkaEvent> batch = new ArrayList<>();
+        for (long userId = 1; userId <= BATCH_SIZE; userId++) {
+            batch.add(pendingEvent(userId));
+        }
+
+        try {
+            assertThrows(IllegalStateException.class, () -> relay.relay(batch, TransactionalPendingEventRelayTest::toUserEvent));
+            assertTrue(batch.stream().noneMatch(PendingKafkaEvent::isProcessed));
+            verify(repository, never()).saveAll(anyList());
+
+            relay.relay(batch, TransactionalPendingEventRelayTest::toUserEvent);
+            assertTrue(batch.stream().allMatch(PendingKafkaEvent::isProcessed));
+            verify(repository).saveAll(batch);
+        } finally {
+            producerFactory.destroy();
+        }
+
+        List<UUID> received = readCommittedEventIds(broker);
+        assertEquals(batch.stream().map(PendingKafkaEvent::getEventId).toList(), received,
+                "Потребитель должен получить каждое событие пачки ровно один раз и по порядку");
+    }
+
+    private static PendingKafkaEvent pendingEvent(long userId) {
+        UserEvent event = UserEvent.builder()
+                .title("UPDATED")
+                .email("user" + userId + "@example.com")
+                .userId(userId)
+                .version(1L)
+                .build();
+        PendingKafkaEvent pending = new PendingKafkaEvent();
+        pending.setId(userId);
+        pending.setEventId(UUID.randomUUID());
+        pending.setUserId(userId);
+        pending.setTitle(event.getTitle());
+        pending.setEmail(event.getEmail());
+        pending.setPayload(UserEventBinaryCodec.encode(event));
+        return pending;
+    }
+
+    private static UserEvent toUserEvent(PendingKafkaEvent pending) {
+        UserEvent event = UserEventBinaryCodec.decode(pending.getPayload());
+        event.setEventId(pending.getEventId());
+        return event;
+    }
+
+    private static List<UUID> readCommittedEventIds(EmbeddedKafkaBroker broker) {
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps(broker, "relay-test", false);
+        consumerProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        consumerProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, UserEventBinaryDeserializer.class);
+        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        consumerProps.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+
+        List<UUID> eventIds = new ArrayList<>();
+        try (Consumer<String, UserEvent> consumer =
+                     new DefaultKafkaConsumerFactory<String, UserEvent>(consumerProps).createConsumer()) {
+            consumer.subscribe(List.of(TOPIC));
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (eventIds.size() < BATCH_SIZE && System.currentTimeMillis() < deadline) {
+                collectEventIds(consumer.poll(Duration.ofMillis(500)), eventIds);
+            }
+            // Дополнительный опрос, чтобы заметить лишние записи сверх пачки
+            collectEventIds(consumer.poll(Duration.ofSeconds(2)), eventIds);
+        }
+        return eventIds;
+    }
+
+    private static void collectEventIds(ConsumerRecords<String, UserEvent> records, List<UUID> eventIds) {
+        for (ConsumerRecord<String, UserEvent> record : records) {
+            Header header = record.headers().lastHeader(UserEventProducer.EVENT_ID_HEADER);
+            eventIds.add(UUID.fromString(new String(header.value(), StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * Имитирует падение процесса: после заданного числа отправок в транзакции бросает исключение.
+     */
+    private static class CrashingKafkaTemplate extends KafkaTemplate<String, UserEvent> {
+
+        private final AtomicInteger sent = new AtomicInteger();
+        private final int crashAfter;
+
+        CrashingKafkaTemplate(DefaultKafkaProducerFactory<String, UserEvent> producerFactory, int crashAfter) {
+            super(producerFactory);
+            this.crashAfter = crashAfter;
+        }
+
+        @Override
+        public CompletableFuture<SendResult<String, UserEvent>> send(ProducerRecord<String, UserEvent> record) {
+            if (sent.incrementAndGet() == crashAfter + 1) {
+                throw new IllegalStateException("процесс упал посреди пачки");
+            }
+            return super.send(record);
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.example.projectTest.service;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UserDto;
+import com.example.projectTest.entity.User;
+import com.example.projectTest.kafka.UserEventProducer;
+import com.example.projectTest.repository.PendingKafkaEventRepository;
+import com.example.projectTest.repository.UserRepository;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Изоляция нагрузок bulkhead-ами: зависший брокер и переполненный поиск
+ * не должны влиять на задержку соседних операций.
+ */
+@Slf4j
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.config.name=standalone",
+        "resilience4j.bulkhead.instances.userLookup.max-concurrent-calls=2",
+        "resilience4j.bulkhead.instances.userLookup.max-wait-duration=0",
+        "resilience4j.bulkhead.instances.userMutation.max-concurrent-calls=16",
+        "resilience4j.bulkhead.instances.kafkaPublish.max-concurrent-calls=2"
+})
+public class UserBulkheadIsolationTest {
+
+    private static final long BROKER_DELAY_MS = 1500;
+    private static final int WRITERS = 10;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PendingKafkaEventRepository pendingEventRepository;
+
+    @Autowired
+    private BulkheadRegistry bulkheadRegistry;
+
+    @MockitoBean
+    private UserEventProducer userEventProducer;
+
+    @MockitoBean
+    private PendingEventProcessor pendingEventProcessor;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        pendingEventRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Медленный брокер не замедляет поиск и держит не больше слотов kafkaPublish")
+    void shouldKeepLookupsFastWhileBrokerHangs() throws Exception {
+        Long id = userRepository.save(User.builder().email("reader@mail.ru").name("Reader").age(30).build()).getId();
+        doAnswer(invocation -> {
+            Thread.sleep(BROKER_DELAY_MS);
+            return null;
+        }).when(userEventProducer).send(any());
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        long[] writeLatencies = new long[WRITERS];
+        try {
+            List<Future<UserDto>> writes = new ArrayList<>();
+            for (int i = 0; i < WRITERS; i++) {
+                int n = i;
+                writes.add(executor.submit(() -> {
+                    long start = System.nanoTime();
+                    UserDto created = userService.create(new CreateUserDto("writer" + n + "@mail.ru", "Writer", 20));
+                    writeLatencies[n] = System.nanoTime() - start;
+                    return created;
+                }));
+            }
+            Thread.sleep(100);
+
+            long[] readLatencies = new long[50];
+            for (int i = 0; i < readLatencies.length; i++) {
+                long start = System.nanoTime();
+                assertEquals("reader@mail.ru", userService.findById(id).getEmail());
+                readLatencies[i] = System.nanoTime() - start;
+            }
+
+            for (Future<UserDto> write : writes) {
+                assertNotNull(write.get(10, TimeUnit.SECONDS).getId());
+            }
+
+            Arrays.sort(readLatencies);
+            Arrays.sort(writeLatencies);
+            long fastWrites = Arrays.stream(writeLatencies)
+                    .filter(latency -> latency < TimeUnit.MILLISECONDS.toNanos(BROKER_DELAY_MS / 3))
+                    .count();
+            log.info("Брокер завис на {} мс: поиск max {} мкс, записи p50 {} мкс, max {} мкс",
+                    BROKER_DELAY_MS, TimeUnit.NANOSECONDS.toMicros(readLatencies[readLatencies.length - 1]),
+                    TimeUnit.NANOSECONDS.toMicros(writeLatencies[WRITERS / 2]),
+                    TimeUnit.NANOSECONDS.toMicros(writeLatencies[WRITERS - 1]));
+
+            assertTrue(readLatencies[readLatencies.length - 1] < TimeUnit.MILLISECONDS.toNanos(250),
+                    "Поиск не должен ждать зависший брокер");
+            assertTrue(fastWrites >= WRITERS - 2, "Ждать брокер должны только записи, получившие слот kafkaPublish");
+            assertTrue(pendingEventRepository.count() >= WRITERS - 2, "Вытесненные события должны лечь в pending_kafka_events");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Переполненный bulkhead поиска отвечает 503, а записи продолжают работать")
+    void shouldRejectLookupsWhenLookupBulkheadIsFull() throws Exception {
+        Long id = userRepository.save(User.builder().email("busy@mail.ru").name("Busy").age(30).build()).getId();
+        Bulkhead lookup = bulkheadRegistry.bulkhead(UserService.LOOKUP_BULKHEAD);
+        int permits = lookup.getBulkheadConfig().getMaxConcurrentCalls();
+        for (int i = 0; i < permits; i++) {
+            assertTrue(lookup.tryAcquirePermission());
+        }
+        try {
+            mockMvc.perform(get("/api/users/{id}", id))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+
+            mockMvc.perform(post("/api/users")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"email\":\"writer@mail.ru\",\"name\":\"Writer\",\"age\":20}"))
+                    .andExpect(status().isCreated());
+        } finally {
+            for (int i = 0; i < permits; i++) {
+                lookup.onComplete();
+            }
+        }
+
+        mockMvc.perform(get("/api/users/{id}", id)).andExpect(status().isOk());
+    }
+}
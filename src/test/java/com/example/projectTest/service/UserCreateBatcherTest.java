@@ -0,0 +1,216 @@
+package com.example.projectTest.service;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UserDto;
+import com.example.projectTest.entity.User;
+import com.example.projectTest.exception.DuplicateEmailException;
+import com.example.projectTest.mapper.UserMapper;
+import com.example.projectTest.repository.UserRepository;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Групповой commit создания пользователей: корректность ответа каждому вызывающему
+ * и замер пропускной способности и задержки при разных окнах накопления (@Tag("benchmark")).
+ */
+@Slf4j
+@SpringBootTest(properties = {
+        "spring.config.name=standalone",
+        "users.group-commit.enabled=true"
+})
+public class UserCreateBatcherTest {
+
+    private static final int THREADS = 32;
+    private static final int REQUESTS_PER_THREAD = 100;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BulkheadRegistry bulkheadRegistry;
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @MockitoBean
+    private PendingEventProcessor pendingEventProcessor;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Дубликаты в пачке и в БД отклоняются по отдельности, остальные строки создаются")
+    void shouldRejectDuplicatesPerRow() {
+        userRepository.save(User.builder().email("existing@mail.ru").name("Existing").age(30).build());
+        UserCreateBatcher batcher = new UserCreateBatcher(userRepository, userMapper, userEventPublisher, transactionManager);
+        List<UserCreateBatcher.PendingCreate> batch = List.of(
+                request("new1@mail.ru"),
+                request("existing@mail.ru"),
+                request("new2@mail.ru"),
+                request("new1@mail.ru"));
+
+        batcher.flush(batch);
+
+        assertEquals("new1@mail.ru", batch.get(0).result().join().getEmail());
+        assertDuplicate(batch.get(1));
+        assertEquals("new2@mail.ru", batch.get(2).result().join().getEmail());
+        assertDuplicate(batch.get(3));
+        assertEquals(3, userRepository.count());
+        verify(userEventPublisher, times(2)).publish(any());
+    }
+
+    @Test
+    @DisplayName("После остановки новые запросы на создание сразу отклоняются")
+    void shouldRejectAfterStop() {
+        UserCreateBatcher batcher = batcher(5, 100);
+        batcher.stop();
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> batcher.create(new CreateUserDto("late@mail.ru", "User", 20)));
+
+        assertEquals("Сервис останавливается", exception.getMessage());
+        assertEquals(0, userRepository.count());
+    }
+
+    @Test
+    @DisplayName("Без ответа группового commit вызывающий поток ждёт не дольше timeout-ms")
+    void shouldTimeOutWithoutFlusher() {
+        UserCreateBatcher batcher = new UserCreateBatcher(userRepository, userMapper, userEventPublisher, transactionManager);
+        ReflectionTestUtils.setField(batcher, "timeoutMs", 100L);
+
+        long start = System.nanoTime();
+        assertThrows(IllegalStateException.class, () -> batcher.create(new CreateUserDto("slow@mail.ru", "User", 20)));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+        assertEquals(0, userRepository.count());
+    }
+
+    @Test
+    @DisplayName("Создание через групповой commit не занимает слоты bulkhead userMutation")
+    void shouldNotHoldMutationBulkheadWhileWaitingForBatch() throws Exception {
+        Bulkhead mutation = bulkheadRegistry.bulkhead(UserService.MUTATION_BULKHEAD);
+        int permits = mutation.getBulkheadConfig().getMaxConcurrentCalls();
+        for (int i = 0; i < permits; i++) {
+            assertTrue(mutation.tryAcquirePermission());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<UserDto>> creates = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int n = i;
+                creates.add(executor.submit(() -> userService.create(new CreateUserDto("bulk" + n + "@mail.ru", "User", 20))));
+            }
+            for (Future<UserDto> create : creates) {
+                assertNotNull(create.get(30, TimeUnit.SECONDS).getId());
+            }
+        } finally {
+            executor.shutdownNow();
+            for (int i = 0; i < permits; i++) {
+                mutation.onComplete();
+            }
+        }
+        assertEquals(THREADS, userRepository.count());
+    }
+
+    @ParameterizedTest(name = "окно {0} мс")
+    @ValueSource(longs = {0, 1, 5, 20})
+    @Tag("benchmark")
+    @DisplayName("Пропускная способность и задержка создания при разных окнах группового commit")
+    void shouldMeasureThroughputAndLatency(long windowMs) throws Exception {
+        UserCreateBatcher batcher = windowMs == 0 ? null : batcher(windowMs, 200);
+        long[] latencies = new long[THREADS * REQUESTS_PER_THREAD];
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                        int n = thread * REQUESTS_PER_THREAD + i;
+                        CreateUserDto dto = new CreateUserDto("user" + n + "@mail.ru", "User", 20);
+                        long requestStart = System.nanoTime();
+                        // без окна - отдельный commit на каждую строку
+                        UserDto created = batcher == null
+                                ? userMapper.toUserDto(userRepository.save(userMapper.toEntity(dto)))
+                                : batcher.create(dto);
+                        latencies[n] = System.nanoTime() - requestStart;
+                        assertNotNull(created.getId());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(120, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+            if (batcher != null) {
+                batcher.stop();
+            }
+        }
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        Arrays.sort(latencies);
+        log.info("Окно {} мс: {} создано за {} мс, {} запросов/с, задержка p50 {} мкс, p99 {} мкс",
+                windowMs, latencies.length, elapsedMillis, latencies.length * 1000L / elapsedMillis,
+                TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length / 2]),
+                TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length * 99 / 100]));
+        assertEquals(latencies.length, userRepository.count());
+    }
+
+    private UserCreateBatcher batcher(long windowMs, int maxBatch) {
+        UserCreateBatcher batcher = new UserCreateBatcher(userRepository, userMapper, userEventPublisher, transactionManager);
+        ReflectionTestUtils.setField(batcher, "enabled", true);
+        ReflectionTestUtils.setField(batcher, "windowMs", windowMs);
+        ReflectionTestUtils.setField(batcher, "maxBatch", maxBatch);
+        ReflectionTestUtils.setField(batcher, "timeoutMs", 30_000L);
+        batcher.start();
+        return batcher;
+    }
+
+    private static UserCreateBatcher.PendingCreate request(String email) {
+        return new UserCreateBatcher.PendingCreate(new CreateUserDto(email, "User", 20), new CompletableFuture<>());
+    }
+
+    private static void assertDuplicate(UserCreateBatcher.PendingCreate request) {
+        Exception exception = assertThrows(Exception.class, () -> request.result().join());
+        assertInstanceOf(DuplicateEmailException.class, exception.getCause());
+    }
+}
@@ -7,15 +7,24 @@ import com.example.projectTest.entity.User;
 import com.example.projectTest.exception.DuplicateEmailException;
 import com.example.projectTest.exception.EmptyListException;
 import com.example.projectTest.exception.UserNotFoundException;
+import com.example.projectTest.kafka.UserEvent;
 import com.example.projectTest.mapper.UserMapper;
 import com.example.projectTest.repository.UserRepository;
+import com.example.projectTest.sharding.ShardRouter;
+import com.example.projectTest.sharding.ShardedEmailIndex;
+import com.example.projectTest.snapshot.UserSnapshotCache;
+import com.example.projectTest.statistics.UserStatistics;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.List;
 import java.util.Optional;
@@ -33,6 +42,30 @@ public class UserServiceTest {
     @Mock
     private UserMapper userMapper;
 
+    @Mock
+    private UserEventPublisher userEventPublisher;
+
+    @Mock
+    private UserCreateBatcher userCreateBatcher;
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(mock(ObjectProvider.class), mock(PlatformTransactionManager.class), 10_000);
+
+    @Mock
+    private ShardedEmailIndex shardedEmailIndex;
+
+    @Mock
+    private UserSnapshotCache userSnapshotCache;
+
+    @Mock
+    private UserStatistics userStatistics;
+
+    @Spy
+    private BulkheadRegistry bulkheadRegistry = BulkheadRegistry.ofDefaults();
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private UserService userService;
 
@@ -119,6 +152,21 @@ public class UserServiceTest {
             verify(userRepository, times(1)).findById(1L);
             verifyNoInteractions(userMapper);
         }
+
+        @Test
+        @DisplayName("Попадание в кэш снимков не открывает транзакцию")
+        void shouldFindInCacheWithoutTransaction() {
+            UserDto userDto = UserDto.builder()
+                    .id(1L)
+                    .email("test@mail.ru")
+                    .name("Test")
+                    .age(25)
+                    .build();
+            when(userSnapshotCache.findById(1L)).thenReturn(Optional.of(userDto));
+
+            assertEquals(userDto, userService.findById(1L));
+            verifyNoInteractions(transactionManager, userRepository);
+        }
     }
 
     //--------------Тестирование findByEmail---------------
@@ -238,9 +286,21 @@ public class UserServiceTest {
     class DeleteTests {
 
         @Test
+        @DisplayName("Удаление без повторной загрузки пользователя")
         void shouldDelete() {
+            User user = User.builder()
+                    .id(1L)
+                    .email("test@mail.ru")
+                    .name("Test")
+                    .age(25)
+                    .build();
+            when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
             userService.delete(1L);
-            verify(userRepository, times(1)).deleteById(1L);
+
+            verify(userRepository, times(1)).findById(1L);
+            verify(userRepository, times(1)).delete(user);
+            verify(userRepository, never()).deleteById(any());
         }
     }
 
@@ -284,6 +344,34 @@ public class UserServiceTest {
             verify(userMapper, times(1)).toUserDto(user);
         }
 
+        @Test
+        @DisplayName("Событие UPDATED с маской изменённых полей")
+        void shouldSendUpdatedEventWithChangedFields() {
+            Long id = 1L;
+            UpdateUserDto updateUserDto = UpdateUserDto.builder()
+                    .email("test@mail.ru")
+                    .name("New name")
+                    .age(30)
+                    .build();
+            User user = User.builder()
+                    .id(1L)
+                    .email("test@mail.ru")
+                    .name("Test")
+                    .age(25)
+                    .build();
+            UserEvent event = UserEvent.builder().title("UPDATED").userId(1L).build();
+
+            when(userRepository.findById(id)).thenReturn(Optional.of(user));
+            when(userMapper.toUserEvent(user, "UPDATED", UserEvent.NAME_CHANGED | UserEvent.AGE_CHANGED))
+                    .thenReturn(event);
+
+            userService.update(id, updateUserDto);
+
+            assertEquals("New name", user.getName());
+            assertEquals(30, user.getAge());
+            verify(userEventPublisher, times(1)).publish(event);
+        }
+
         @Test
         @DisplayName("Ошибка пользователь не найден")
         void shouldThrowUserNotFoundExceptionWhenUpdating() {
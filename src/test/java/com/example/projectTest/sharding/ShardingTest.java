@@ -0,0 +1,196 @@
+package com.example.projectTest.sharding;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UpdateUserDto;
+import com.example.projectTest.dto.UserDto;
+import com.example.projectTest.exception.DuplicateEmailException;
+import com.example.projectTest.exception.ShardMovingException;
+import com.example.projectTest.service.PendingEventProcessor;
+import com.example.projectTest.service.UserEventPublisher;
+import com.example.projectTest.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Шардирование users на трёх независимых базах H2.
+ */
+@SpringBootTest(properties = {
+        "spring.config.name=standalone",
+        "spring.datasource.url=jdbc:h2:mem:users-shard0;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "sharding.enabled=true",
+        "sharding.urls=jdbc:h2:mem:users-shard1;MODE=PostgreSQL;DB_CLOSE_DELAY=-1,jdbc:h2:mem:users-shard2;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "sharding.map-refresh-ms=3600000",
+        "sharding.map-max-age-ms=3600000",
+        "sharding.rebalance.grace-ms=20",
+        "sharding.rebalance.chunk-size=7",
+        // схемы шардов 1 и 2 создаёт сам тест уже после старта контекста
+        "user-statistics.initial-delay-ms=3600000"
+})
+public class ShardingTest {
+
+    private static boolean schemaCreated;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ShardDirectory directory;
+
+    @Autowired
+    private ShardRebalancer rebalancer;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectProvider<ShardDirectory> directoryProvider;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @MockitoBean
+    private PendingEventProcessor pendingEventProcessor;
+
+    @BeforeEach
+    void setUp() {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        for (int shard = 0; shard < directory.shardCount(); shard++) {
+            ShardRoutingDataSource.setCurrentShard(shard);
+            try {
+                // шард 0 создаёт Hibernate при старте, остальным схему выдаём сами
+                if (!schemaCreated && shard > 0) {
+                    sessionFactory.getSchemaManager().exportMappedObjects(false);
+                }
+                sessionFactory.getSchemaManager().truncateMappedObjects();
+            } finally {
+                ShardRoutingDataSource.setCurrentShard(null);
+            }
+        }
+        schemaCreated = true;
+        directory.jdbcTemplate(0).update("delete from user_shard_buckets");
+        directory.initialize();
+    }
+
+    @Test
+    @DisplayName("Пользователи распределяются по шардам, поиск по id и email идёт на один шард")
+    void shouldSpreadUsersAndRouteLookups() {
+        List<UserDto> created = createUsers(60);
+
+        for (int shard = 0; shard < directory.shardCount(); shard++) {
+            assertTrue(countUsers(shard) > 0, "Шард " + shard + " пуст");
+        }
+        assertEquals(60, IntStream.range(0, directory.shardCount()).map(this::countUsers).sum());
+        for (UserDto user : created) {
+            assertEquals(ShardKeys.bucketOfEmail(user.getEmail()), ShardKeys.bucketOfId(user.getId()));
+            assertEquals(user.getEmail(), userService.findById(user.getId()).getEmail());
+            assertEquals(user.getId(), userService.findByEmail(user.getEmail()).getId());
+        }
+        assertEquals(60, userService.findAll().size());
+        assertThrows(DuplicateEmailException.class,
+                () -> userService.create(new CreateUserDto(created.getFirst().getEmail(), "Copy", 20)));
+    }
+
+    @Test
+    @DisplayName("Email из другого бакета: пользователь остаётся на своём шарде и находится по новому адресу")
+    void shouldKeepUserOnHomeShardAfterEmailChange() {
+        UserDto user = userService.create(new CreateUserDto("home@mail.ru", "Home", 30));
+        String movedEmail = emailOnOtherShard(directory.shardOfBucket(ShardKeys.bucketOfId(user.getId())));
+
+        userService.update(user.getId(), new UpdateUserDto(movedEmail, null, null));
+
+        assertEquals(user.getId(), userService.findByEmail(movedEmail).getId());
+        assertEquals(movedEmail, userService.findById(user.getId()).getEmail());
+        assertThrows(DuplicateEmailException.class, () -> userService.create(new CreateUserDto(movedEmail, "Copy", 20)));
+        assertNotNull(userService.create(new CreateUserDto("home@mail.ru", "Second", 25)).getId());
+
+        userService.delete(user.getId());
+        assertNotNull(userService.create(new CreateUserDto(movedEmail, "Third", 25)).getId());
+    }
+
+    @Test
+    @DisplayName("Перенос диапазона бакетов: данные доступны по прежним id, записи на время переноса отклоняются")
+    void shouldMoveBucketRange() {
+        List<UserDto> created = createUsers(120);
+        int fromBucket = 0;
+        int toBucket = 199;
+        long inRange = created.stream().filter(user -> ShardKeys.bucketOfId(user.getId()) <= toBucket).count();
+        assertEquals(0, directory.shardOfBucket(fromBucket));
+
+        UserDto moving = created.stream().filter(user -> ShardKeys.bucketOfId(user.getId()) <= toBucket).findFirst().orElseThrow();
+        int movingBucket = ShardKeys.bucketOfId(moving.getId());
+        directory.assign(movingBucket, movingBucket, 0, true);
+        assertThrows(ShardMovingException.class,
+                () -> userService.update(moving.getId(), new UpdateUserDto(null, "Renamed", null)));
+        assertEquals(moving.getEmail(), userService.findById(moving.getId()).getEmail());
+        directory.assign(movingBucket, movingBucket, 0, false);
+
+        ShardRebalancer.MoveResult result = rebalancer.move(fromBucket, toBucket, 2);
+
+        assertEquals(inRange, result.users());
+        assertEquals(2, directory.shardOfBucket(fromBucket));
+        assertFalse(directory.isMoving(fromBucket));
+        assertEquals(0, (int) directory.jdbcTemplate(0).queryForObject(
+                "select count(*) from users where mod(id, 1024) between ? and ?", Integer.class, fromBucket, toBucket));
+        for (UserDto user : created) {
+            assertEquals(user.getEmail(), userService.findById(user.getId()).getEmail());
+            assertEquals(user.getId(), userService.findByEmail(user.getEmail()).getId());
+        }
+        assertEquals("Renamed", userService.update(moving.getId(), new UpdateUserDto(null, "Renamed", null)).getName());
+        assertEquals(created.size(), userService.findAll().size());
+    }
+
+    @Test
+    @DisplayName("Устаревшая карта шардов: записи отклоняются, чтения идут, после обновления записи снова проходят")
+    void shouldRejectWritesWithStaleMap() throws Exception {
+        ShardRouter router = new ShardRouter(directoryProvider, transactionManager, 50);
+        try {
+            Thread.sleep(100);
+
+            assertThrows(ShardMovingException.class, () -> router.onEmail("stale@mail.ru", true, () -> 1));
+            assertEquals(1, router.onEmail("stale@mail.ru", false, () -> 1));
+
+            directory.refresh();
+            assertEquals(1, router.onEmail("stale@mail.ru", true, () -> 1));
+        } finally {
+            router.shutdown();
+        }
+    }
+
+    private List<UserDto> createUsers(int count) {
+        List<UserDto> created = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            created.add(userService.create(new CreateUserDto("user" + i + "@mail.ru", "User", 20)));
+        }
+        return created;
+    }
+
+    private int countUsers(int shard) {
+        return directory.jdbcTemplate(shard).queryForObject("select count(*) from users", Integer.class);
+    }
+
+    private String emailOnOtherShard(int shard) {
+        for (int i = 0; ; i++) {
+            String email = "moved" + i + "@mail.ru";
+            if (directory.shardOfBucket(ShardKeys.bucketOfEmail(email)) != shard) {
+                return email;
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.projectTest.shutdown;
+
+import com.example.projectTest.entity.PendingKafkaEvent;
+import com.example.projectTest.kafka.UserEvent;
+import com.example.projectTest.kafka.UserEventProducer;
+import com.example.projectTest.repository.PendingKafkaEventRepository;
+import com.example.projectTest.service.PendingEventProcessor;
+import com.example.projectTest.service.TransactionalPendingEventRelay;
+import com.example.projectTest.service.UserEventPublisher;
+import com.example.projectTest.snapshot.UserSnapshotPublisher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Упорядоченная остановка: дожидается запросов и ack отправленных событий, отпускает
+ * недоработанную пачку отложенных событий и сохраняет события без ack в pending_kafka_events.
+ */
+@Slf4j
+class GracefulShutdownCoordinatorTest {
+
+    private static final int CHUNK_SIZE = 5;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final InFlightRequestFilter requestFilter = new InFlightRequestFilter();
+
+    private KafkaTemplate<String, UserEvent> kafkaTemplate;
+
+    private UserEventProducer userEventProducer;
+
+    private UserEventPublisher userEventPublisher;
+
+    private PendingKafkaEventRepository repository;
+
+    private UserEventProducer relayProducer;
+
+    private PendingEventProcessor pendingEventProcessor;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        userEventProducer = new UserEventProducer(kafkaTemplate);
+        ReflectionTestUtils.setField(userEventProducer, "topicName", "user-events-topic");
+        userEventPublisher = mock(UserEventPublisher.class);
+
+        repository = mock(PendingKafkaEventRepository.class);
+        relayProducer = mock(UserEventProducer.class);
+        ObjectProvider<TransactionalPendingEventRelay> transactionalRelay = mock(ObjectProvider.class);
+        pendingEventProcessor = new PendingEventProcessor(repository, relayProducer, transactionalRelay,
+                mock(UserSnapshotPublisher.class));
+        ReflectionTestUtils.setField(pendingEventProcessor, "ackTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(pendingEventProcessor, "batchSize", 100);
+        ReflectionTestUtils.setField(pendingEventProcessor, "maxAttempts", 10);
+        ReflectionTestUtils.setField(pendingEventProcessor, "backoffInitialMs", 1000L);
+        ReflectionTestUtils.setField(pendingEventProcessor, "backoffMaxMs", 60_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(pendingEventProcessor, "shutdown");
+    }
+
+    @Test
+    @DisplayName("Запрос дожидается, подтверждённые события учитываются, без ack - сохраняются, пачка отпускается")
+    void shouldDrainInOrder() throws Exception {
+        List<PendingKafkaEvent> chunk = chunk();
+        CountDownLatch relayStarted = new CountDownLatch(1);
+        when(repository.findDue(any(), eq(Limit.of(100)))).thenReturn(chunk);
+        when(relayProducer.sendAndAwait(any(), any())).thenAnswer(invocation -> {
+            relayStarted.countDown();
+            // ack текущего события приходит, когда остановка уже началась
+            Thread.sleep(1500);
+            return null;
+        });
+        pendingEventProcessor.wakeUp();
+        assertTrue(relayStarted.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<SendResult<String, UserEvent>> acknowledged = new CompletableFuture<>();
+        CompletableFuture<SendResult<String, UserEvent>> failed = new CompletableFuture<>();
+        CompletableFuture<SendResult<String, UserEvent>> buffered = new CompletableFuture<>();
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(acknowledged, failed, buffered);
+        List<UserEvent> events = List.of(event(1), event(2), event(3));
+        events.forEach(userEventProducer::send);
+        // события без ack сохраняются до остановки пачки, пока её текущее событие ещё отправляется
+        List<Boolean> relayFinishedBeforeStore = new ArrayList<>();
+        doAnswer(invocation -> relayFinishedBeforeStore.add(chunk.getFirst().isProcessed()))
+                .when(userEventPublisher).storeUnacknowledged(anyList());
+
+        GracefulShutdownCoordinator coordinator = coordinator(Duration.ofMillis(400), Duration.ofSeconds(5));
+        Thread request = Thread.ofPlatform().start(() -> {
+            try {
+                requestFilter.doFilter(new MockHttpServletRequest("PUT", "/api/users/1"), new MockHttpServletResponse(),
+                        new MockFilterChain() {
+                            @Override
+                            public void doFilter(ServletRequest request, ServletResponse response) {
+                                sleep(300);
+                            }
+                        });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (requestFilter.getActive() == 0) {
+            Thread.onSpinWait();
+        }
+
+        coordinator.onContextClosed(new ContextClosedEvent(new StaticApplicationContext()));
+        // ответы брокера приходят, пока координатор ждёт подтверждений
+        Thread.ofPlatform().start(() -> {
+            sleep(450);
+            acknowledged.complete(new SendResult<>(null, new RecordMetadata(
+                    new TopicPartition("user-events-topic", 0), 0, 0, 0, 0, 0)));
+            failed.completeExceptionally(new IllegalStateException("брокер недоступен"));
+        });
+
+        long start = System.nanoTime();
+        GracefulShutdownCoordinator.ShutdownReport report = coordinator.drain();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        request.join();
+
+        log.info("Остановка заняла {} мс: запросов дождались {}, подтверждено брокером {}, сохранено без ack {}, "
+                        + "отпущено из пачки {}", elapsedMs, report.requestsDrained(), report.eventsAcknowledged(),
+                report.eventsStored(), report.pendingEventsReleased());
+
+        assertEquals(new GracefulShutdownCoordinator.ShutdownReport(1, 0, 1, 2, CHUNK_SIZE - 1), report);
+        verify(userEventPublisher).storeUnacknowledged(argThat(stored -> stored.size() == 2
+                && stored.containsAll(List.of(events.get(1), events.get(2)))));
+        assertEquals(List.of(false), relayFinishedBeforeStore);
+
+        // текущее событие доработано, остальные строки не тронуты и достанутся другим узлам
+        verify(relayProducer, times(1)).sendAndAwait(any(), any());
+        assertTrue(chunk.getFirst().isProcessed());
+        verify(repository).save(chunk.getFirst());
+        assertTrue(chunk.stream().skip(1).noneMatch(PendingKafkaEvent::isProcessed));
+        assertTrue(chunk.stream().allMatch(event -> event.getRetryCount() == 0));
+
+        assertEquals(1.0, meterRegistry.get("users.shutdown.drained").tag("stage", "requests").counter().count());
+        assertEquals(1.0, meterRegistry.get("users.shutdown.drained").tag("stage", "kafka.acknowledged").counter().count());
+        assertEquals(2.0, meterRegistry.get("users.shutdown.drained").tag("stage", "kafka.stored").counter().count());
+        assertEquals(4.0, meterRegistry.get("users.shutdown.drained").tag("stage", "outbox.released").counter().count());
+
+        coordinator.start();
+        coordinator.stop();
+        assertFalse(coordinator.isRunning());
+        assertEquals(1, meterRegistry.get("users.shutdown.duration").timer().count());
+    }
+
+    @Test
+    @DisplayName("Зависшая отправка пачки прерывается по сроку без учёта попытки")
+    void shouldInterruptStuckRelay() throws Exception {
+        List<PendingKafkaEvent> chunk = chunk();
+        CountDownLatch relayStarted = new CountDownLatch(1);
+        when(repository.findDue(any(), eq(Limit.of(100)))).thenReturn(chunk);
+        when(relayProducer.sendAndAwait(any(), any())).thenAnswer(invocation -> {
+            relayStarted.countDown();
+            Thread.sleep(60_000);
+            return null;
+        });
+        pendingEventProcessor.wakeUp();
+        assertTrue(relayStarted.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        GracefulShutdownCoordinator.ShutdownReport report =
+                coordinator(Duration.ofMillis(200), Duration.ofMillis(300)).drain();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(CHUNK_SIZE, report.pendingEventsReleased());
+        assertEquals(0, report.eventsStored());
+        // ожидание запросов и ack пусты, пачка укладывается в свой срок вместе с прерыванием
+        assertTrue(elapsedMs < 1_000, "остановка должна уложиться в срок этапа, заняла " + elapsedMs + " мс");
+        assertTrue(chunk.stream().noneMatch(PendingKafkaEvent::isProcessed));
+        assertTrue(chunk.stream().allMatch(event -> event.getRetryCount() == 0));
+        verify(repository, never()).save(any());
+        verify(userEventPublisher, never()).storeUnacknowledged(anyList());
+    }
+
+    private GracefulShutdownCoordinator coordinator(Duration kafkaFlushTimeout, Duration outboxTimeout) {
+        return new GracefulShutdownCoordinator(requestFilter, userEventProducer, userEventPublisher,
+                pendingEventProcessor, meterRegistry, 5_000, kafkaFlushTimeout.toMillis(), outboxTimeout.toMillis(),
+                Duration.ofSeconds(30));
+    }
+
+    private static List<PendingKafkaEvent> chunk() {
+        List<PendingKafkaEvent> chunk = new ArrayList<>();
+        for (long id = 1; id <= CHUNK_SIZE; id++) {
+            PendingKafkaEvent pending = new PendingKafkaEvent();
+            pending.setId(id);
+            pending.setEventId(UUID.randomUUID());
+            pending.setUserId(id);
+            pending.setTitle("UPDATED");
+            pending.setEmail("user" + id + "@example.com");
+            chunk.add(pending);
+        }
+        return chunk;
+    }
+
+    private static UserEvent event(long userId) {
+        return UserEvent.builder()
+                .eventId(UUID.randomUUID())
+                .title("UPDATED")
+                .email("user" + userId + "@example.com")
+                .userId(userId)
+                .build();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.projectTest.snapshot;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UpdateUserDto;
+import com.example.projectTest.dto.UserDto;
+import com.example.projectTest.exception.UserNotFoundException;
+import com.example.projectTest.kafka.UserEvent;
+import com.example.projectTest.kafka.UserEventProducer;
+import com.example.projectTest.repository.UserRepository;
+import com.example.projectTest.service.PendingEventProcessor;
+import com.example.projectTest.service.UserService;
+import com.example.projectTest.support.SqlStatementCounter;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.health.contributor.Status;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.support.serializer.JacksonJsonDeserializer;
+import org.springframework.kafka.support.serializer.JacksonJsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Снимки пользователей в user-snapshots и прогрев локального кэша из них.
+ * Объём нагрузочного прогрева (@Tag("benchmark")) задаётся -Duser-snapshots.benchmark.users.
+ */
+@Slf4j
+@DirtiesContext
+@EmbeddedKafka(count = 1, partitions = 4, topics = {"user-snapshots", "user-snapshots-warmup", "user-snapshots-benchmark"})
+@SpringBootTest(properties = {
+        "spring.config.name=standalone",
+        "spring.datasource.url=jdbc:h2:mem:user-snapshots;DB_CLOSE_DELAY=-1",
+        "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "user-snapshots.enabled=true",
+        "user-snapshots.cache.enabled=true",
+        "logging.level.com.example.projectTest=WARN",
+        "logging.level.com.example.projectTest.snapshot.UserSnapshotCacheTest=INFO"
+})
+public class UserSnapshotCacheTest {
+
+    private static final int BENCHMARK_USERS = Integer.getInteger("user-snapshots.benchmark.users", 1_000_000);
+
+    @Autowired
+    private EmbeddedKafkaBroker broker;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserSnapshotCache userSnapshotCache;
+
+    @Autowired
+    private UserSnapshotHealthIndicator healthIndicator;
+
+    @Autowired
+    private ConsumerFactory<String, UserEvent> userSnapshotConsumerFactory;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private UserEventProducer userEventProducer;
+
+    @MockitoBean
+    private PendingEventProcessor pendingEventProcessor;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("Изменения пишут снимки и tombstone, поиск идёт из кэша без SQL, чужие снимки доходят до кэша")
+    void shouldPublishSnapshotsAndServeLookupsFromCache() throws Throwable {
+        assertTrue(userSnapshotCache.isReady());
+        assertEquals(Status.UP, healthIndicator.health().getStatus());
+
+        UserDto created = userService.create(new CreateUserDto("snapshot@mail.ru", "Snapshot", 30));
+        userService.update(created.getId(), new UpdateUserDto(null, "Snapshot Renamed", null));
+
+        SqlStatementCounter counter = new SqlStatementCounter(entityManagerFactory);
+        counter.assertStatements(0, () -> {
+            assertEquals("Snapshot Renamed", userService.findById(created.getId()).getName());
+            assertEquals(created.getId(), userService.findByEmail("snapshot@mail.ru").getId());
+        });
+
+        userService.delete(created.getId());
+        assertThrows(UserNotFoundException.class, () -> userService.findById(created.getId()));
+
+        List<ConsumerRecord<String, UserEvent>> records = readSnapshots(String.valueOf(created.getId()), 3);
+        assertEquals("Snapshot", records.get(0).value().getName());
+        assertEquals("Snapshot Renamed", records.get(1).value().getName());
+        assertTrue(records.get(1).value().getVersion() > records.get(0).value().getVersion());
+        assertNull(records.get(2).value());
+
+        // снимок, записанный другим узлом: в БД этого узла его нет, но кэш его видит
+        try (KafkaProducer<String, UserEvent> producer = producer()) {
+            producer.send(new ProducerRecord<>("user-snapshots", "777000", snapshot(777_000L, 1))).get();
+            waitUntil(() -> userSnapshotCache.findById(777_000L).isPresent());
+            assertEquals("remote777000@mail.ru", userService.findById(777_000L).getEmail());
+
+            producer.send(new ProducerRecord<>("user-snapshots", "777000", null)).get();
+            waitUntil(() -> userSnapshotCache.findById(777_000L).isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Прогрев кэша из топика снимков учитывает повторные снимки и tombstone")
+    void shouldWarmUpFromSnapshotTopic() throws Exception {
+        warmUp("user-snapshots-warmup", 10_000);
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Прогрев кэша из сжатого топика снимков")
+    void shouldMeasureWarmUpFromSnapshotTopic() throws Exception {
+        WarmUp warmUp = warmUp("user-snapshots-benchmark", BENCHMARK_USERS);
+        UserSnapshotLoader loader = warmUp.loader();
+        log.info("Снимков: {}, пользователей в кэше: {}, прогрев: {} мс, снимков/с: {}, память кэша: {} МБ",
+                loader.getRecordsRead(), warmUp.cache().size(), loader.getWarmupMillis(),
+                loader.getRecordsRead() * 1000L / Math.max(loader.getWarmupMillis(), 1),
+                warmUp.heapGrowth() / (1024 * 1024));
+    }
+
+    /**
+     * Пишет в топик снимки users пользователей, у части - повторные снимки и tombstone,
+     * и прогревает из него новый кэш.
+     */
+    private WarmUp warmUp(String topic, int users) throws Exception {
+        int updated = 0;
+        int deleted = 0;
+        try (KafkaProducer<String, UserEvent> producer = producer()) {
+            for (long id = 1; id <= users; id++) {
+                producer.send(new ProducerRecord<>(topic, String.valueOf(id), snapshot(id, 1)));
+                // в несжатом хвосте топика у части пользователей несколько снимков и tombstone
+                if (id % 10 == 0) {
+                    producer.send(new ProducerRecord<>(topic, String.valueOf(id), snapshot(id, 2)));
+                    updated++;
+                }
+                if (id % 100 == 0) {
+                    producer.send(new ProducerRecord<>(topic, String.valueOf(id), null));
+                    deleted++;
+                }
+            }
+            producer.flush();
+        }
+
+        UserSnapshotCache cache = new UserSnapshotCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        UserSnapshotLoader loader = new UserSnapshotLoader(cache, userSnapshotConsumerFactory);
+        ReflectionTestUtils.setField(loader, "topicName", topic);
+
+        long heapBefore = usedHeap();
+        loader.warmUp();
+        long heapAfter = usedHeap();
+        loader.stop();
+
+        assertFalse(loader.isFailed());
+        assertTrue(cache.isReady());
+        assertEquals(users + updated + deleted, loader.getRecordsRead());
+        assertEquals(users - deleted, cache.size());
+        assertEquals("Remote 10 v2", cache.findById(10L).orElseThrow().getName());
+        assertEquals(11L, cache.findByEmail("remote11@mail.ru").orElseThrow().getId());
+        assertTrue(cache.findById(100L).isEmpty());
+        return new WarmUp(loader, cache, heapAfter - heapBefore);
+    }
+
+    private List<ConsumerRecord<String, UserEvent>> readSnapshots(String key, int expected) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps(broker, "user-snapshots-test", false);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        List<ConsumerRecord<String, UserEvent>> records = new ArrayList<>();
+        try (Consumer<String, UserEvent> consumer = new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(),
+                new JacksonJsonDeserializer<>(UserEvent.class).ignoreTypeHeaders()).createConsumer()) {
+            consumer.subscribe(List.of("user-snapshots"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (records.size() < expected && System.nanoTime() < deadline) {
+                consumer.poll(Duration.ofMillis(500)).forEach(record -> {
+                    if (key.equals(record.key())) {
+                        records.add(record);
+                    }
+                });
+            }
+        }
+        assertEquals(expected, records.size());
+        return records;
+    }
+
+    private KafkaProducer<String, UserEvent> producer() {
+        Map<String, Object> props = new HashMap<>(KafkaTestUtils.producerProps(broker));
+        props.put(ProducerConfig.LINGER_MS_CONFIG, 20);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, 256 * 1024);
+        return new KafkaProducer<>(props, new StringSerializer(), new JacksonJsonSerializer<UserEvent>().noTypeInfo());
+    }
+
+    private static UserEvent snapshot(long id, long version) {
+        return UserEvent.builder()
+                .eventId(UUID.randomUUID())
+                .title("SNAPSHOT")
+                .userId(id)
+                .email("remote" + id + "@mail.ru")
+                .name(version > 1 ? "Remote " + id + " v" + version : "Remote " + id)
+                .age(20 + (int) (id % 50))
+                .createdAt(Instant.now())
+                .version(version)
+                .timestamp(Instant.now())
+                .build();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Условие не выполнилось за 30 с");
+            Thread.sleep(50);
+        }
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private record WarmUp(UserSnapshotLoader loader, UserSnapshotCache cache, long heapGrowth) {
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.projectTest.startup;
+
+import com.example.projectTest.service.PendingEventProcessor;
+import com.example.projectTest.service.UserEventPublisher;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Быстрый старт: springdoc не создаётся при старте, а досоздаётся после готовности приложения.
+ */
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.config.name=standalone",
+        "spring.datasource.url=jdbc:h2:mem:deferred-startup;DB_CLOSE_DELAY=-1",
+        "startup.deferred.enabled=true",
+        "spring.cloud.refresh.enabled=false"
+})
+public class DeferredStartupTest {
+
+    @Autowired
+    private DeferredInitializationPostProcessor postProcessor;
+
+    @Autowired
+    private ConfigurableListableBeanFactory beanFactory;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @MockitoBean
+    private PendingEventProcessor pendingEventProcessor;
+
+    @Test
+    @DisplayName("Бины springdoc ленивые при старте и создаются после готовности, /v3/api-docs работает")
+    void shouldDeferSpringdocUntilReady() throws Exception {
+        assertTrue(postProcessor.getDeferredBeanNames().contains("customOpenAPI"));
+        assertTrue(postProcessor.getDeferredBeanNames().contains("openApiResource"));
+        assertTrue(beanFactory.getBeanDefinition("openApiResource").isLazyInit());
+        assertFalse(postProcessor.getDeferredBeanNames().contains("userController"));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!postProcessor.getDeferredBeanNames().stream().allMatch(beanFactory::containsSingleton)) {
+            assertTrue(System.nanoTime() < deadline, "Отложенные бины не созданы за 30 с");
+            Thread.sleep(50);
+        }
+
+        mockMvc.perform(get("/v3/api-docs"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.info.title").value("User Management API"));
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.projectTest.statistics;
+
+import com.example.projectTest.dto.CreateUserDto;
+import com.example.projectTest.dto.UpdateUserDto;
+import com.example.projectTest.dto.UserDto;
+import com.example.projectTest.dto.UserStatisticsDto;
+import com.example.projectTest.bulkimport.UserImportService;
+import com.example.projectTest.entity.User;
+import com.example.projectTest.exception.DuplicateEmailException;
+import com.example.projectTest.kafka.UserCommand;
+import com.example.projectTest.kafka.UserCommandResult;
+import com.example.projectTest.repository.UserRepository;
+import com.example.projectTest.service.PendingEventProcessor;
+import com.example.projectTest.service.UserCommandProcessor;
+import com.example.projectTest.service.UserEventPublisher;
+import com.example.projectTest.service.UserService;
+import com.example.projectTest.support.SqlStatementCounter;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Статистика пользователей из счётчиков и её сверка с таблицей.
+ * Размер таблицы в замере (@Tag("benchmark")) задаётся -Dusers.statistics.benchmark.users.
+ */
+@Slf4j
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.config.name=standalone",
+        "spring.datasource.url=jdbc:h2:mem:user-statistics;DB_CLOSE_DELAY=-1",
+        "concurrency-limit.enabled=false",
+        // сверки вызывает сам тест
+        "user-statistics.initial-delay-ms=3600000"
+})
+public class UserStatisticsTest {
+
+    private static final int BENCHMARK_USERS = Integer.getInteger("users.statistics.benchmark.users", 100_000);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserStatistics userStatistics;
+
+    @Autowired
+    private UserStatisticsReconciler reconciler;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserCommandProcessor userCommandProcessor;
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @MockitoBean
+    private PendingEventProcessor pendingEventProcessor;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAllInBatch();
+        reconciler.reconcile();
+    }
+
+    @Test
+    @DisplayName("Счётчики следуют за create/update/delete без SQL на чтение, сверка находит и исправляет расхождение")
+    void shouldMaintainStatisticsIncrementally() throws Throwable {
+        String today = LocalDate.now(ZoneOffset.UTC).toString();
+        List<Long> ids = new ArrayList<>();
+        for (int age : new int[]{5, 25, 27, 64, 100}) {
+            ids.add(userService.create(new CreateUserDto("age" + age + "@mail.ru", "Age " + age, age)).getId());
+        }
+
+        new SqlStatementCounter(entityManagerFactory).assertStatements(0, () -> mockMvc.perform(get("/api/users/statistics"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalUsers").value(5))
+                .andExpect(jsonPath("$.averageAge").value(44.2))
+                .andExpect(jsonPath("$.ageHistogram['0-9']").value(1))
+                .andExpect(jsonPath("$.ageHistogram['20-29']").value(2))
+                .andExpect(jsonPath("$.ageHistogram['100+']").value(1))
+                .andExpect(jsonPath("$.signupsPerDay['" + today + "']").value(5)));
+
+        userService.update(ids.get(2), new UpdateUserDto(null, null, 35));
+        userService.delete(ids.get(0));
+        // откаченное изменение счётчики не трогает
+        assertThrows(DuplicateEmailException.class,
+                () -> userService.update(ids.get(3), new UpdateUserDto("age25@mail.ru", null, 70)));
+
+        UserStatisticsDto statistics = userStatistics.snapshot();
+        assertEquals(4, statistics.getTotalUsers());
+        assertEquals(0, statistics.getAgeHistogram().get("0-9"));
+        assertEquals(1, statistics.getAgeHistogram().get("20-29"));
+        assertEquals(1, statistics.getAgeHistogram().get("30-39"));
+        assertEquals(1, statistics.getAgeHistogram().get("60-69"));
+        assertEquals(0, statistics.getAgeHistogram().get("70-79"));
+        assertEquals(4, statistics.getSignupsPerDay().get(LocalDate.parse(today)));
+        assertEquals(0, reconciler.reconcile());
+
+        // параллельные изменения не теряются
+        try (ExecutorService executor = Executors.newFixedThreadPool(6)) {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < 6; writer++) {
+                int base = writer * 100;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 20; i++) {
+                        UserDto created = userService.create(new CreateUserDto(
+                                "parallel" + (base + i) + "@mail.ru", "Parallel", 18 + i));
+                        if (i % 4 == 0) {
+                            userService.delete(created.getId());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        }
+        assertEquals(4 + 6 * 15, userStatistics.snapshot().getTotalUsers());
+        assertEquals(0, reconciler.reconcile());
+
+        // вставка мимо UserService видна только после сверки
+        jdbcTemplate.update("insert into users (name, email, age, created_at, version) values (?, ?, ?, ?, 0)",
+                "Direct", "direct@mail.ru", 42, Timestamp.from(Instant.now()));
+        assertEquals(94, userStatistics.snapshot().getTotalUsers());
+        assertEquals(3, reconciler.reconcile());
+        mockMvc.perform(get("/api/users/statistics"))
+                .andExpect(jsonPath("$.totalUsers").value(95))
+                .andExpect(jsonPath("$.lastDrift").value(3))
+                .andExpect(jsonPath("$.ageHistogram['40-49']").value(1))
+                .andExpect(jsonPath("$.signupsPerDay['" + today + "']").value(95));
+    }
+
+    @Test
+    @DisplayName("Команды из Kafka и импорт CSV обновляют счётчики без сверки")
+    void shouldCountCommandsAndImport() {
+        List<UserCommandResult> created = userCommandProcessor.apply(List.of(
+                command(UserCommand.Type.CREATE, null, "command1@mail.ru", 15),
+                command(UserCommand.Type.CREATE, null, "command2@mail.ru", 25),
+                command(UserCommand.Type.CREATE, null, "command3@mail.ru", 35)));
+        userCommandProcessor.apply(List.of(
+                command(UserCommand.Type.DELETE, created.get(0).getUserId(), null, null),
+                command(UserCommand.Type.UPDATE, created.get(1).getUserId(), null, 55)));
+        userImportService.importCsv(new ByteArrayInputStream(
+                "email,name,age\nimport1@mail.ru,Import,41\nimport2@mail.ru,Import,42\n".getBytes(StandardCharsets.UTF_8)));
+
+        UserStatisticsDto statistics = userStatistics.snapshot();
+        assertEquals(4, statistics.getTotalUsers());
+        assertEquals(0, statistics.getAgeHistogram().get("10-19"));
+        assertEquals(0, statistics.getAgeHistogram().get("20-29"));
+        assertEquals(1, statistics.getAgeHistogram().get("30-39"));
+        assertEquals(2, statistics.getAgeHistogram().get("40-49"));
+        assertEquals(1, statistics.getAgeHistogram().get("50-59"));
+        assertEquals(0, reconciler.reconcile());
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Статистика из счётчиков против подсчёта по полному списку")
+    void shouldCompareWithClientSideCounting() throws Exception {
+        List<User> users = new ArrayList<>(BENCHMARK_USERS);
+        IntStream.range(0, BENCHMARK_USERS).forEach(i -> users.add(User.builder()
+                .email("stats" + i + "@mail.ru")
+                .name("Stats User " + i)
+                .age(i % 101)
+                .build()));
+        userRepository.insertAll(users);
+
+        long reconcileStart = System.nanoTime();
+        long drift = reconciler.reconcile();
+        long reconcileMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - reconcileStart);
+        assertEquals(BENCHMARK_USERS * 3L, drift);
+
+        int listIterations = 3;
+        long listStart = System.nanoTime();
+        long counted = 0;
+        for (int i = 0; i < listIterations; i++) {
+            byte[] body = mockMvc.perform(get("/api/users")).andReturn().getResponse().getContentAsByteArray();
+            JsonNode list = jsonMapper.readTree(body).findValue("userDtoList");
+            counted = list.size();
+        }
+        long listMicros = (System.nanoTime() - listStart) / 1000 / listIterations;
+
+        int statisticsIterations = 1000;
+        long statisticsStart = System.nanoTime();
+        long total = 0;
+        for (int i = 0; i < statisticsIterations; i++) {
+            byte[] body = mockMvc.perform(get("/api/users/statistics")).andReturn().getResponse().getContentAsByteArray();
+            total = jsonMapper.readTree(body).get("totalUsers").asLong();
+        }
+        long statisticsMicros = (System.nanoTime() - statisticsStart) / 1000 / statisticsIterations;
+
+        log.info("Пользователей: {}, сверка: {} мс, GET /api/users и подсчёт: {} мкс, GET /api/users/statistics: {} мкс",
+                BENCHMARK_USERS, reconcileMillis, listMicros, statisticsMicros);
+
+        assertEquals(BENCHMARK_USERS, counted);
+        assertEquals(BENCHMARK_USERS, total);
+        assertTrue(statisticsMicros < listMicros);
+    }
+
+    private static UserCommand command(UserCommand.Type type, Long userId, String email, Integer age) {
+        return UserCommand.builder()
+                .commandId(UUID.randomUUID())
+                .type(type)
+                .userId(userId)
+                .email(email)
+                .name(type == UserCommand.Type.CREATE ? "Command" : null)
+                .age(age)
+                .build();
+    }
+}
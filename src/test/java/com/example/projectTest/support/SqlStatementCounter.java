@@ -0,0 +1,40 @@
+package com.example.projectTest.support;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.function.Executable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Считает SQL-запросы, выполненные Hibernate, по его статистике.
+ * Используется в тестах, чтобы лишний запрос на горячем пути ронял сборку.
+ */
+public class SqlStatementCounter {
+
+    private final Statistics statistics;
+
+    public SqlStatementCounter(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.statistics.setStatisticsEnabled(true);
+    }
+
+    public void reset() {
+        statistics.clear();
+    }
+
+    public long count() {
+        return statistics.getPrepareStatementCount();
+    }
+
+    public void assertStatements(long expected, Executable action) throws Throwable {
+        reset();
+        action.execute();
+        assertEquals(expected, count(),
+                () -> "Ожидалось SQL-запросов: " + expected + ", выполнено: " + count()
+                        + " (загрузок сущностей: " + statistics.getEntityLoadCount()
+                        + ", запросов: " + statistics.getQueryExecutionCount()
+                        + ", flush: " + statistics.getFlushCount() + ")");
+    }
+}